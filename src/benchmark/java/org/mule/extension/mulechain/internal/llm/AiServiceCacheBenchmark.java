@@ -0,0 +1,65 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per call overhead of building the AI Services proxy on every operation call with reusing it from the
+ * {@link AiServiceCache}. The model answers immediately, so only the proxy overhead is measured. The benchmarks are only
+ * compiled with the benchmarks profile, run the main method from its test classpath:
+ * {@code mvn -Pbenchmarks test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.mule.extension.mulechain.internal.llm.AiServiceCacheBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AiServiceCacheBenchmark {
+
+  interface Assistant {
+
+    Result<String> chat(String userMessage);
+  }
+
+  private final ChatLanguageModel model = messages -> Response.from(AiMessage.from("answer"));
+
+  private final AiServiceCache cache = new AiServiceCache();
+
+  @Benchmark
+  public Result<String> createPerCall() {
+    return AiServices.create(Assistant.class, model).chat("question");
+  }
+
+  @Benchmark
+  public Result<String> cached() {
+    return cache.get(Assistant.class, model).chat("question");
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AiServiceCacheBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -8,10 +8,16 @@ public class LLMResponseAttributes implements Serializable {
 
   private final TokenUsage tokenUsage;
   private final HashMap<String, String> additionalAttributes;
+  private final boolean cacheHit;
 
   public LLMResponseAttributes(TokenUsage tokenUsage, HashMap<String, String> additionalAttributes) {
+    this(tokenUsage, additionalAttributes, false);
+  }
+
+  public LLMResponseAttributes(TokenUsage tokenUsage, HashMap<String, String> additionalAttributes, boolean cacheHit) {
     this.tokenUsage = tokenUsage;
     this.additionalAttributes = additionalAttributes;
+    this.cacheHit = cacheHit;
   }
 
   public TokenUsage getTokenUsage() {
@@ -21,4 +27,11 @@ public class LLMResponseAttributes implements Serializable {
   public Map<String, String> getAdditionalAttributes() {
     return additionalAttributes;
   }
+
+  /**
+   * @return true when the response was served from a response cache instead of the LLM
+   */
+  public boolean isCacheHit() {
+    return cacheHit;
+  }
 }
@@ -7,11 +7,17 @@ public class TokenUsage implements Serializable {
   private final int inputCount;
   private final int outputCount;
   private final int totalCount;
+  private final int cachedInputCount;
 
   public TokenUsage(int inputCount, int outputCount, int totalCount) {
+    this(inputCount, outputCount, totalCount, 0);
+  }
+
+  public TokenUsage(int inputCount, int outputCount, int totalCount, int cachedInputCount) {
     this.inputCount = inputCount;
     this.outputCount = outputCount;
     this.totalCount = totalCount;
+    this.cachedInputCount = cachedInputCount;
   }
 
   public int getInputCount() {
@@ -25,4 +31,12 @@ public class TokenUsage implements Serializable {
   public int getTotalCount() {
     return totalCount;
   }
+
+  /**
+   * @return input tokens read from the prompt cache of the provider, included in the input count. 0 when the provider
+   *         does not report them
+   */
+  public int getCachedInputCount() {
+    return cachedInputCount;
+  }
 }
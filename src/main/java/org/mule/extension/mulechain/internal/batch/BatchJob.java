@@ -0,0 +1,138 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.batch;
+
+import org.json.JSONObject;
+
+/**
+ * Batch of prompts submitted to the batch API of the provider, with the last state the provider reported for it.
+ */
+public class BatchJob {
+
+  public static final String COMPLETED = "completed";
+
+  private static final String JOB_ID = "jobId";
+  private static final String BATCH_ID = "batchId";
+  private static final String MODEL_NAME = "modelName";
+  private static final String STATUS = "status";
+  private static final String TOTAL = "total";
+  private static final String SUCCEEDED = "succeeded";
+  private static final String FAILED = "failed";
+  private static final String OUTPUT_FILE_ID = "outputFileId";
+  private static final String ERROR_FILE_ID = "errorFileId";
+  private static final String CREATED_AT = "createdAt";
+  private static final String UPDATED_AT = "updatedAt";
+
+  private final String jobId;
+  private final String batchId;
+  private final String modelName;
+  private final long createdAt;
+  private String status;
+  private int total;
+  private int succeeded;
+  private int failed;
+  private String outputFileId;
+  private String errorFileId;
+  private long updatedAt;
+
+  public BatchJob(String jobId, String batchId, String modelName, long createdAt) {
+    this.jobId = jobId;
+    this.batchId = batchId;
+    this.modelName = modelName;
+    this.createdAt = createdAt;
+    this.updatedAt = createdAt;
+  }
+
+  /**
+   * Updates the job with a batch object of the provider.
+   */
+  public void update(JSONObject batch) {
+    status = batch.optString("status", status);
+    JSONObject requestCounts = batch.optJSONObject("request_counts");
+    if (requestCounts != null) {
+      total = requestCounts.optInt("total", total);
+      succeeded = requestCounts.optInt("completed", succeeded);
+      failed = requestCounts.optInt("failed", failed);
+    }
+    outputFileId = batch.isNull("output_file_id") ? outputFileId : batch.optString("output_file_id");
+    errorFileId = batch.isNull("error_file_id") ? errorFileId : batch.optString("error_file_id");
+    updatedAt = System.currentTimeMillis();
+  }
+
+  public static BatchJob fromJson(String json) {
+    JSONObject object = new JSONObject(json);
+    BatchJob job = new BatchJob(object.getString(JOB_ID), object.getString(BATCH_ID), object.optString(MODEL_NAME, null),
+                                object.getLong(CREATED_AT));
+    job.status = object.optString(STATUS, null);
+    job.total = object.optInt(TOTAL);
+    job.succeeded = object.optInt(SUCCEEDED);
+    job.failed = object.optInt(FAILED);
+    job.outputFileId = object.optString(OUTPUT_FILE_ID, null);
+    job.errorFileId = object.optString(ERROR_FILE_ID, null);
+    job.updatedAt = object.getLong(UPDATED_AT);
+    return job;
+  }
+
+  public JSONObject toJson() {
+    JSONObject object = new JSONObject();
+    object.put(JOB_ID, jobId);
+    object.put(BATCH_ID, batchId);
+    object.put(MODEL_NAME, modelName);
+    object.put(STATUS, status);
+    object.put(TOTAL, total);
+    object.put(SUCCEEDED, succeeded);
+    object.put(FAILED, failed);
+    object.put(OUTPUT_FILE_ID, outputFileId);
+    object.put(ERROR_FILE_ID, errorFileId);
+    object.put(CREATED_AT, createdAt);
+    object.put(UPDATED_AT, updatedAt);
+    return object;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  /**
+   * @return id of the batch at the provider
+   */
+  public String getBatchId() {
+    return batchId;
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  /**
+   * @return status reported by the provider: validating, in_progress, finalizing, completed, failed, expired, cancelled...
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  public boolean isCompleted() {
+    return COMPLETED.equals(status);
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public int getSucceeded() {
+    return succeeded;
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public String getOutputFileId() {
+    return outputFileId;
+  }
+
+  public String getErrorFileId() {
+    return errorFileId;
+  }
+}
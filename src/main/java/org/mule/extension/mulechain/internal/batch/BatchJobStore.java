@@ -0,0 +1,64 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.batch;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mapdb.Serializer.STRING;
+
+/**
+ * Keeps the state of the batch jobs, so their results can be fetched after a restart when the jobs are kept in a file.
+ */
+public class BatchJobStore {
+
+  private final DB db;
+  private final Map<String, String> jobs;
+
+  /**
+   * @param dbFilePath file the jobs are kept in, null to only keep them in memory
+   */
+  public BatchJobStore(String dbFilePath) {
+    if (dbFilePath != null && !dbFilePath.isEmpty()) {
+      db = DBMaker.fileDB(dbFilePath)
+          .transactionEnable()
+          .fileLockDisable()
+          .make();
+      jobs = db.hashMap("batchJobs", STRING, STRING).createOrOpen();
+    } else {
+      db = null;
+      jobs = new ConcurrentHashMap<>();
+    }
+  }
+
+  /**
+   * @return the job, null when it is unknown
+   */
+  public BatchJob get(String jobId) {
+    String json = jobs.get(jobId);
+    return json != null ? BatchJob.fromJson(json) : null;
+  }
+
+  public void put(BatchJob job) {
+    if (db == null) {
+      jobs.put(job.getJobId(), job.toJson().toString());
+      return;
+    }
+    synchronized (db) {
+      jobs.put(job.getJobId(), job.toJson().toString());
+      db.commit();
+    }
+  }
+
+  public void close() {
+    if (db != null) {
+      synchronized (db) {
+        db.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.batch;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.mule.extension.mulechain.internal.constants.MuleChainConstants;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.llm.ModelParameters;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Client of the batch API of OpenAI, and of the providers and stub servers exposing the same API: the JSONL file of the
+ * requests is uploaded, then a batch is created from it and polled until its output file can be downloaded.
+ */
+public class OpenAiBatchClient {
+
+  public static final String CHAT_COMPLETIONS_ENDPOINT = "/v1/chat/completions";
+
+  private static final MediaType JSON = MediaType.get("application/json;charset=utf-8");
+  private static final MediaType JSONL = MediaType.get("application/jsonl");
+
+  private final OkHttpClient httpClient;
+  private final String baseUrl;
+  private final String apiKey;
+
+  /**
+   * @param httpClient client of the connection
+   * @param baseUrl    base URL of the API, such as https://api.openai.com/v1
+   * @param apiKey     key of the API
+   */
+  public OpenAiBatchClient(OkHttpClient httpClient, String baseUrl, String apiKey) {
+    this.httpClient = httpClient;
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.apiKey = apiKey;
+  }
+
+  /**
+   * @param jsonl one request per line
+   * @return the id of the uploaded file
+   */
+  public String uploadFile(String jsonl) {
+    RequestBody body = new MultipartBody.Builder()
+        .setType(MultipartBody.FORM)
+        .addFormDataPart("purpose", "batch")
+        .addFormDataPart("file", "batch.jsonl", RequestBody.create(jsonl, JSONL))
+        .build();
+    return new JSONObject(execute(request("/files").post(body).build())).getString("id");
+  }
+
+  /**
+   * @param inputFileId      file of the requests
+   * @param completionWindow time the provider has to complete the batch, such as 24h
+   * @return the batch object
+   */
+  public JSONObject createBatch(String inputFileId, String completionWindow) {
+    JSONObject payload = new JSONObject();
+    payload.put("input_file_id", inputFileId);
+    payload.put("endpoint", CHAT_COMPLETIONS_ENDPOINT);
+    payload.put("completion_window", completionWindow);
+    return new JSONObject(execute(request("/batches").post(RequestBody.create(payload.toString(), JSON)).build()));
+  }
+
+  /**
+   * @return the batch object, with its status, request counts and output files
+   */
+  public JSONObject getBatch(String batchId) {
+    return new JSONObject(execute(request("/batches/" + batchId).get().build()));
+  }
+
+  /**
+   * @return the content of the file, one result per line for the output files
+   */
+  public String getFileContent(String fileId) {
+    return execute(request("/files/" + fileId + "/content").get().build());
+  }
+
+  /**
+   * @param customIds  id of each request, returned with its result
+   * @param prompts    prompt of each request
+   * @param parameters model and generation parameters of the requests
+   * @return the JSONL file of the chat completion requests
+   */
+  public static String toJsonl(List<String> customIds, List<String> prompts, ModelParameters parameters) {
+    StringBuilder jsonl = new StringBuilder();
+    for (int i = 0; i < prompts.size(); i++) {
+      JSONObject message = new JSONObject();
+      message.put("role", "user");
+      message.put("content", prompts.get(i));
+      JSONObject body = new JSONObject();
+      body.put("model", parameters.getModelName());
+      body.put("messages", new JSONArray().put(message));
+      body.put("max_tokens", parameters.getMaxTokens());
+      body.put("temperature", parameters.getTemperature());
+      body.put("top_p", parameters.getTopP());
+      JSONObject request = new JSONObject();
+      request.put("custom_id", customIds.get(i));
+      request.put("method", "POST");
+      request.put("url", CHAT_COMPLETIONS_ENDPOINT);
+      request.put("body", body);
+      jsonl.append(request).append('\n');
+    }
+    return jsonl.toString();
+  }
+
+  /**
+   * @param line line of an output or error file
+   * @return the id of the request with its answer and token usage, or with its error
+   */
+  public static JSONObject toResult(JSONObject line) {
+    JSONObject result = new JSONObject();
+    result.put(MuleChainConstants.ID, line.optString("custom_id"));
+    JSONObject response = line.optJSONObject("response");
+    JSONObject body = response != null ? response.optJSONObject("body") : null;
+    if (line.optJSONObject("error") == null && response != null && response.optInt("status_code") == 200 && body != null) {
+      result.put(MuleChainConstants.RESPONSE, body.getJSONArray("choices").getJSONObject(0).getJSONObject("message")
+          .optString("content"));
+      JSONObject usage = body.optJSONObject("usage");
+      if (usage != null) {
+        JSONObject tokenUsage = new JSONObject();
+        tokenUsage.put(MuleChainConstants.INPUT_COUNT, usage.optInt("prompt_tokens"));
+        tokenUsage.put(MuleChainConstants.OUTPUT_COUNT, usage.optInt("completion_tokens"));
+        tokenUsage.put(MuleChainConstants.TOTAL_COUNT, usage.optInt("total_tokens"));
+        JSONObject promptTokensDetails = usage.optJSONObject("prompt_tokens_details");
+        tokenUsage.put(MuleChainConstants.CACHED_INPUT_COUNT,
+                       promptTokensDetails != null ? promptTokensDetails.optInt("cached_tokens") : 0);
+        result.put(MuleChainConstants.TOKEN_USAGE, tokenUsage);
+      }
+      return result;
+    }
+    JSONObject error = new JSONObject();
+    JSONObject lineError = line.optJSONObject("error");
+    JSONObject bodyError = body != null ? body.optJSONObject("error") : null;
+    JSONObject cause = lineError != null ? lineError : bodyError;
+    error.put(MuleChainConstants.TYPE, cause != null ? cause.optString("code", cause.optString("type"))
+        : MuleChainErrorType.AI_SERVICES_FAILURE.getType());
+    error.put(MuleChainConstants.MESSAGE, cause != null ? cause.optString("message")
+        : "Request failed with " + (response != null ? response.optInt("status_code") : 0));
+    result.put(MuleChainConstants.ERROR, error);
+    return result;
+  }
+
+  private Request.Builder request(String path) {
+    return new Request.Builder()
+        .url(baseUrl + path)
+        .header("Authorization", "Bearer " + apiKey);
+  }
+
+  private String execute(Request request) {
+    try (Response response = httpClient.newCall(request).execute()) {
+      String body = response.body() != null ? response.body().string() : "";
+      if (!response.isSuccessful()) {
+        throw new ModuleException(String.format("Batch API call %s %s failed with %d: %s", request.method(), request.url(),
+                                                response.code(), body),
+                                  response.code() == 429 ? MuleChainErrorType.RATE_LIMIT_EXCEEDED
+                                      : MuleChainErrorType.AI_SERVICES_FAILURE);
+      }
+      return body;
+    } catch (IOException e) {
+      throw new ModuleException("Unable to reach the batch API at " + request.url(), MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+}
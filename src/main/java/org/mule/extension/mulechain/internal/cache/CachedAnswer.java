@@ -0,0 +1,79 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import org.json.JSONObject;
+import org.mule.extension.mulechain.api.metadata.TokenUsage;
+
+/**
+ * Answer of the LLM kept by a response cache, along with the tokens it cost when it was generated.
+ */
+public class CachedAnswer {
+
+  private static final String CONTENT = "content";
+  private static final String INPUT_COUNT = "inputCount";
+  private static final String OUTPUT_COUNT = "outputCount";
+  private static final String CREATED_AT = "createdAt";
+
+  private final String content;
+  private final int inputCount;
+  private final int outputCount;
+  private final long createdAt;
+
+  public CachedAnswer(String content, int inputCount, int outputCount, long createdAt) {
+    this.content = content;
+    this.inputCount = inputCount;
+    this.outputCount = outputCount;
+    this.createdAt = createdAt;
+  }
+
+  public static CachedAnswer of(dev.langchain4j.service.Result<String> answer) {
+    return of(answer.content(), answer.tokenUsage());
+  }
+
+  /**
+   * @param content    what the cache returns, the answer or a whole operation response
+   * @param tokenUsage tokens the content cost, may be null
+   */
+  public static CachedAnswer of(String content, dev.langchain4j.model.output.TokenUsage tokenUsage) {
+    return new CachedAnswer(content,
+                            tokenUsage != null && tokenUsage.inputTokenCount() != null ? tokenUsage.inputTokenCount() : 0,
+                            tokenUsage != null && tokenUsage.outputTokenCount() != null ? tokenUsage.outputTokenCount() : 0,
+                            System.currentTimeMillis());
+  }
+
+  public static CachedAnswer fromJson(String json) {
+    JSONObject object = new JSONObject(json);
+    return new CachedAnswer(object.getString(CONTENT), object.optInt(INPUT_COUNT), object.optInt(OUTPUT_COUNT),
+                            object.getLong(CREATED_AT));
+  }
+
+  public String toJson() {
+    JSONObject object = new JSONObject();
+    object.put(CONTENT, content);
+    object.put(INPUT_COUNT, inputCount);
+    object.put(OUTPUT_COUNT, outputCount);
+    object.put(CREATED_AT, createdAt);
+    return object.toString();
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  /**
+   * @return the tokens the answer cost when it was generated
+   */
+  public TokenUsage getOriginalTokenUsage() {
+    return new TokenUsage(inputCount, outputCount, inputCount + outputCount);
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public boolean isExpired(long ttlMillis, long now) {
+    return ttlMillis > 0 && now - createdAt > ttlMillis;
+  }
+}
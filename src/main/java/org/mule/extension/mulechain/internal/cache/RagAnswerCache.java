@@ -0,0 +1,178 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Exact-match cache of RAG answers with their sources, per embedding store. The answers of a store are kept in a
+ * generation that is dropped whole when the store is modified: by the operations adding to it, which invalidate it, or
+ * by anything else rewriting its file, detected on lookup from the last modification time and size of the file. An
+ * answer is only cached in the generation of the store version it was computed from, so an answer computed from a store
+ * read before a modification is never served for the modified store.
+ */
+public class RagAnswerCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RagAnswerCache.class);
+
+  private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+  private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.]+$");
+
+  private final int maxEntriesPerStore;
+  private final ConcurrentMap<String, Generation> generations = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * @param maxEntriesPerStore answers kept per store, the least recently used ones are evicted
+   */
+  public RagAnswerCache(int maxEntriesPerStore) {
+    this.maxEntriesPerStore = maxEntriesPerStore;
+  }
+
+  /**
+   * @param storeName file of the store
+   * @param variant   everything else the answer depends on: model, generation and retrieval parameters
+   * @param question  question as asked, it is normalized
+   * @return the lookup, holding the cached answer on a hit
+   */
+  public Lookup lookup(String storeName, String variant, String question) {
+    String version = storeVersion(storeName);
+    Generation generation = generations.compute(storePath(storeName), (key, current) -> current != null
+        && current.version.equals(version) ? current : new Generation(version, maxEntriesPerStore));
+    String key = ResponseCache.key(variant, normalize(question));
+    CachedAnswer answer;
+    synchronized (generation.answers) {
+      answer = generation.answers.get(key);
+    }
+    (answer != null ? hits : misses).incrementAndGet();
+    return new Lookup(generation, key, answer);
+  }
+
+  /**
+   * Caches the answer computed after a miss, unless it was computed from another version of the store than the one looked
+   * up. An answer computed while the store was invalidated lands in the dropped generation and is never served.
+   *
+   * @param storeVersion {@link #storeVersion(String)} of the store the answer was computed from
+   */
+  public void put(Lookup lookup, String storeVersion, CachedAnswer answer) {
+    if (!lookup.generation.version.equals(storeVersion)) {
+      LOGGER.debug("RAG answer computed from the store version {} not cached for the version {}", storeVersion,
+                   lookup.generation.version);
+      return;
+    }
+    synchronized (lookup.generation.answers) {
+      lookup.generation.answers.put(lookup.key, answer);
+    }
+  }
+
+  /**
+   * Drops the answers of the store, called once the store is modified.
+   */
+  public void invalidate(String storeName) {
+    if (generations.remove(storePath(storeName)) != null) {
+      invalidations.incrementAndGet();
+      LOGGER.debug("RAG answers of the store {} invalidated", storeName);
+    }
+  }
+
+  /**
+   * @return the question without case, repeated whitespaces and trailing punctuation
+   */
+  static String normalize(String question) {
+    String normalized = WHITESPACES.matcher(question.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+  }
+
+  /**
+   * @return the version of the store file: its path, last modification time and size. Rewriting the file changes it, even
+   *         within the resolution of the modification time as adding to a store makes it larger.
+   */
+  public static String storeVersion(String storeName) {
+    File file = new File(storePath(storeName));
+    return file.getPath() + ":" + file.lastModified() + ":" + file.length();
+  }
+
+  private static String storePath(String storeName) {
+    return new File(storeName).getAbsoluteFile().toPath().normalize().toString();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getInvalidationCount() {
+    return invalidations.get();
+  }
+
+  /**
+   * @return answers cached for all the stores
+   */
+  public int size() {
+    int size = 0;
+    for (Generation generation : generations.values()) {
+      synchronized (generation.answers) {
+        size += generation.answers.size();
+      }
+    }
+    return size;
+  }
+
+  private static final class Generation {
+
+    private final String version;
+    private final Map<String, CachedAnswer> answers;
+
+    private Generation(String version, int maxEntries) {
+      this.version = version;
+      this.answers = new LinkedHashMap<String, CachedAnswer>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedAnswer> eldest) {
+          return size() > maxEntries;
+        }
+      };
+    }
+  }
+
+  /**
+   * Result of a lookup, the answer computed after a miss is cached with it.
+   */
+  public static final class Lookup {
+
+    private final Generation generation;
+    private final String key;
+    private final CachedAnswer answer;
+
+    private Lookup(Generation generation, String key, CachedAnswer answer) {
+      this.generation = generation;
+      this.key = key;
+      this.answer = answer;
+    }
+
+    public boolean isHit() {
+      return answer != null;
+    }
+
+    public CachedAnswer getAnswer() {
+      return answer;
+    }
+  }
+}
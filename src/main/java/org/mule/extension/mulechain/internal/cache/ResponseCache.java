@@ -0,0 +1,178 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mapdb.Serializer.STRING;
+
+/**
+ * Exact-match cache of LLM answers. Answers are kept in an in-memory LRU and, when a file is configured, in a MapDB
+ * file surviving restarts. Keys are hashes of everything the answer depends on: provider, model, generation parameters
+ * and the fully rendered prompt.
+ */
+public class ResponseCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+
+  private final long ttlMillis;
+  private final int maxDiskEntries;
+  private final Map<String, CachedAnswer> memory;
+  private final DB db;
+  private final Map<String, String> disk;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param maxEntries     answers kept in memory
+   * @param ttlMillis      answers older than this are not returned anymore, 0 or less keeps them forever
+   * @param dbFilePath     file of the persistent tier, null to only keep answers in memory
+   * @param maxDiskEntries answers kept in the file
+   */
+  public ResponseCache(int maxEntries, long ttlMillis, String dbFilePath, int maxDiskEntries) {
+    this.ttlMillis = ttlMillis;
+    this.maxDiskEntries = maxDiskEntries;
+    this.memory = new LinkedHashMap<String, CachedAnswer>(16, 0.75f, true) {
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedAnswer> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    if (dbFilePath != null && !dbFilePath.isEmpty()) {
+      db = DBMaker.fileDB(dbFilePath)
+          .transactionEnable()
+          .fileLockDisable()
+          .make();
+      disk = db.hashMap("responses", STRING, STRING).createOrOpen();
+    } else {
+      db = null;
+      disk = null;
+    }
+  }
+
+  /**
+   * @param parts everything the answer depends on
+   * @return the cache key of the parts
+   */
+  public static String key(String... parts) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String part : parts) {
+        byte[] bytes = String.valueOf(part).getBytes(StandardCharsets.UTF_8);
+        // length prefixed, so moving text between parts changes the key
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+      }
+      StringBuilder key = new StringBuilder();
+      for (byte b : digest.digest()) {
+        key.append(String.format("%02x", b));
+      }
+      return key.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * @return the cached answer, null when it is missing or expired
+   */
+  public CachedAnswer get(String key) {
+    long now = System.currentTimeMillis();
+    CachedAnswer answer;
+    synchronized (memory) {
+      answer = memory.get(key);
+      if (answer != null && answer.isExpired(ttlMillis, now)) {
+        memory.remove(key);
+        answer = null;
+      }
+    }
+    if (answer == null && disk != null) {
+      String json = disk.get(key);
+      if (json != null) {
+        CachedAnswer stored = CachedAnswer.fromJson(json);
+        if (!stored.isExpired(ttlMillis, now)) {
+          answer = stored;
+          synchronized (memory) {
+            memory.put(key, stored);
+          }
+        }
+      }
+    }
+    (answer != null ? hits : misses).incrementAndGet();
+    return answer;
+  }
+
+  public void put(String key, CachedAnswer answer) {
+    synchronized (memory) {
+      memory.put(key, answer);
+    }
+    if (disk != null) {
+      synchronized (db) {
+        disk.put(key, answer.toJson());
+        if (disk.size() > maxDiskEntries) {
+          trimDisk();
+        }
+        db.commit();
+      }
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public void close() {
+    if (db != null) {
+      synchronized (db) {
+        db.close();
+      }
+    }
+  }
+
+  /**
+   * Removes the expired answers, then the oldest ones, down to 90% of the limit so the file is not trimmed on every put.
+   */
+  private void trimDisk() {
+    long now = System.currentTimeMillis();
+    List<String> removed = new ArrayList<>();
+    List<Map.Entry<String, Long>> entries = new ArrayList<>();
+    for (Map.Entry<String, String> entry : disk.entrySet()) {
+      CachedAnswer answer = CachedAnswer.fromJson(entry.getValue());
+      if (answer.isExpired(ttlMillis, now)) {
+        removed.add(entry.getKey());
+      } else {
+        entries.add(new AbstractMap.SimpleEntry<>(entry.getKey(), answer.getCreatedAt()));
+      }
+    }
+    int target = (int) (maxDiskEntries * 0.9);
+    if (entries.size() > target) {
+      entries.sort(Map.Entry.comparingByValue());
+      for (Map.Entry<String, Long> entry : entries.subList(0, entries.size() - target)) {
+        removed.add(entry.getKey());
+      }
+    }
+    removed.forEach(disk::remove);
+    LOGGER.debug("Response cache file trimmed to {} answers", disk.size());
+  }
+}
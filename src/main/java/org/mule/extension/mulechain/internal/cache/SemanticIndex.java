@@ -0,0 +1,160 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Small approximate nearest neighbour index of normalized vectors. Vectors are bucketed by the signs of their projection
+ * on random hyperplanes, a lookup only compares the query with the vectors of its bucket and of the buckets one
+ * hyperplane away. Entries are namespaced and the least recently used ones are evicted when the index is full. Not
+ * thread-safe, callers synchronize.
+ */
+class SemanticIndex<T> {
+
+  private static final int HYPERPLANES = 12;
+
+  private final int maxEntries;
+  private final Random random = new Random(42);
+  private float[][] hyperplanes;
+
+  private final Map<String, List<Entry<T>>> buckets = new HashMap<>();
+  private final LinkedHashMap<Entry<T>, Boolean> recency = new LinkedHashMap<>(16, 0.75f, true);
+
+  SemanticIndex(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * @return the most similar entry of the namespace, null when the namespace has no candidate
+   */
+  Match<T> nearest(String namespace, float[] vector) {
+    int signature = signature(vector);
+    Entry<T> best = null;
+    double bestSimilarity = -1;
+    for (int probe = -1; probe < HYPERPLANES; probe++) {
+      int probed = probe < 0 ? signature : signature ^ (1 << probe);
+      List<Entry<T>> bucket = buckets.get(bucketKey(namespace, probed));
+      if (bucket == null) {
+        continue;
+      }
+      for (Entry<T> entry : bucket) {
+        double similarity = dot(vector, entry.vector);
+        if (similarity > bestSimilarity) {
+          best = entry;
+          bestSimilarity = similarity;
+        }
+      }
+    }
+    if (best == null) {
+      return null;
+    }
+    recency.get(best);
+    return new Match<>(best, bestSimilarity);
+  }
+
+  void add(String namespace, float[] vector, T value) {
+    Entry<T> entry = new Entry<>(bucketKey(namespace, signature(vector)), vector, value);
+    buckets.computeIfAbsent(entry.bucket, key -> new ArrayList<>()).add(entry);
+    recency.put(entry, Boolean.TRUE);
+    Iterator<Entry<T>> eldest = recency.keySet().iterator();
+    while (recency.size() > maxEntries && eldest.hasNext()) {
+      Entry<T> evicted = eldest.next();
+      eldest.remove();
+      removeFromBucket(evicted);
+    }
+  }
+
+  void remove(Entry<T> entry) {
+    if (recency.remove(entry) != null) {
+      removeFromBucket(entry);
+    }
+  }
+
+  int size() {
+    return recency.size();
+  }
+
+  private void removeFromBucket(Entry<T> entry) {
+    List<Entry<T>> bucket = buckets.get(entry.bucket);
+    if (bucket != null) {
+      bucket.remove(entry);
+      if (bucket.isEmpty()) {
+        buckets.remove(entry.bucket);
+      }
+    }
+  }
+
+  private int signature(float[] vector) {
+    if (hyperplanes == null) {
+      hyperplanes = new float[HYPERPLANES][vector.length];
+      for (float[] hyperplane : hyperplanes) {
+        for (int i = 0; i < hyperplane.length; i++) {
+          hyperplane[i] = (float) random.nextGaussian();
+        }
+      }
+    }
+    int signature = 0;
+    for (int i = 0; i < HYPERPLANES; i++) {
+      if (dot(vector, hyperplanes[i]) >= 0) {
+        signature |= 1 << i;
+      }
+    }
+    return signature;
+  }
+
+  private static String bucketKey(String namespace, int signature) {
+    return namespace + '#' + signature;
+  }
+
+  private static double dot(float[] a, float[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  static final class Entry<T> {
+
+    private final String bucket;
+    private final float[] vector;
+    private final T value;
+
+    private Entry(String bucket, float[] vector, T value) {
+      this.bucket = bucket;
+      this.vector = vector;
+      this.value = value;
+    }
+
+    T getValue() {
+      return value;
+    }
+  }
+
+  static final class Match<T> {
+
+    private final Entry<T> entry;
+    private final double similarity;
+
+    private Match(Entry<T> entry, double similarity) {
+      this.entry = entry;
+      this.similarity = similarity;
+    }
+
+    Entry<T> getEntry() {
+      return entry;
+    }
+
+    double getSimilarity() {
+      return similarity;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Semantic cache of LLM answers. Prompts are embedded with a local embedding model and an answer is reused when a
+ * previous prompt of the same namespace is similar enough. A sample of the hits can be verified against the model: the
+ * hit is a false hit when the fresh answer is not similar to the cached one, the cached answer is then replaced.
+ */
+public class SemanticResponseCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SemanticResponseCache.class);
+
+  private final EmbeddingModel embeddingModel;
+  private final double similarityThreshold;
+  private final long ttlMillis;
+  private final double verificationRate;
+  private final SemanticIndex<CachedAnswer> index;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong verifications = new AtomicLong();
+  private final AtomicLong falseHits = new AtomicLong();
+
+  /**
+   * @param embeddingModel      local model embedding the prompts
+   * @param similarityThreshold min cosine similarity between two prompts sharing an answer
+   * @param maxEntries          answers kept, the least recently used ones are evicted
+   * @param ttlMillis           answers older than this are not returned anymore, 0 or less keeps them forever
+   * @param verificationRate    share of the hits also sent to the model to detect false hits, between 0 and 1
+   */
+  public SemanticResponseCache(EmbeddingModel embeddingModel, double similarityThreshold, int maxEntries, long ttlMillis,
+                               double verificationRate) {
+    this.embeddingModel = embeddingModel;
+    this.similarityThreshold = similarityThreshold;
+    this.ttlMillis = ttlMillis;
+    this.verificationRate = verificationRate;
+    this.index = new SemanticIndex<>(maxEntries);
+  }
+
+  /**
+   * @param namespace answers are only shared within a namespace, it identifies the model and context answering
+   * @param prompt    fully rendered prompt
+   * @return the lookup, holding the cached answer on a hit
+   */
+  public Lookup lookup(String namespace, String prompt) {
+    float[] vector = embed(prompt);
+    SemanticIndex.Match<CachedAnswer> match;
+    synchronized (index) {
+      match = index.nearest(namespace, vector);
+      if (match != null && match.getEntry().getValue().isExpired(ttlMillis, System.currentTimeMillis())) {
+        index.remove(match.getEntry());
+        match = null;
+      }
+    }
+    if (match == null || match.getSimilarity() < similarityThreshold) {
+      misses.incrementAndGet();
+      return new Lookup(namespace, vector, null, match != null ? match.getSimilarity() : 0, false);
+    }
+    if (verificationRate > 0 && ThreadLocalRandom.current().nextDouble() < verificationRate) {
+      verifications.incrementAndGet();
+      return new Lookup(namespace, vector, match.getEntry(), match.getSimilarity(), true);
+    }
+    hits.incrementAndGet();
+    return new Lookup(namespace, vector, match.getEntry(), match.getSimilarity(), false);
+  }
+
+  /**
+   * Caches the answer the model gave after a miss or a verification.
+   */
+  public void put(Lookup lookup, CachedAnswer answer) {
+    if (lookup.verifying && !isSameAnswer(lookup.entry.getValue().getContent(), answer.getContent())) {
+      falseHits.incrementAndGet();
+      LOGGER.debug("False semantic cache hit with a similarity of {}", lookup.similarity);
+      synchronized (index) {
+        index.remove(lookup.entry);
+      }
+    } else if (lookup.verifying) {
+      return;
+    }
+    synchronized (index) {
+      index.add(lookup.namespace, lookup.vector, answer);
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getVerificationCount() {
+    return verifications.get();
+  }
+
+  public long getFalseHitCount() {
+    return falseHits.get();
+  }
+
+  public int size() {
+    synchronized (index) {
+      return index.size();
+    }
+  }
+
+  private boolean isSameAnswer(String cached, String fresh) {
+    if (cached.trim().equals(fresh.trim())) {
+      return true;
+    }
+    float[] cachedVector = embed(cached);
+    float[] freshVector = embed(fresh);
+    double similarity = 0;
+    for (int i = 0; i < cachedVector.length; i++) {
+      similarity += cachedVector[i] * freshVector[i];
+    }
+    return similarity >= similarityThreshold;
+  }
+
+  private float[] embed(String text) {
+    float[] vector = embeddingModel.embed(text).content().vector().clone();
+    double norm = 0;
+    for (float value : vector) {
+      norm += value * value;
+    }
+    norm = Math.sqrt(norm);
+    if (norm > 0) {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] /= norm;
+      }
+    }
+    return vector;
+  }
+
+  /**
+   * Result of a lookup, kept by the caller to cache the answer of the model on a miss.
+   */
+  public static final class Lookup {
+
+    private final String namespace;
+    private final float[] vector;
+    private final SemanticIndex.Entry<CachedAnswer> entry;
+    private final double similarity;
+    private final boolean verifying;
+
+    private Lookup(String namespace, float[] vector, SemanticIndex.Entry<CachedAnswer> entry, double similarity,
+                   boolean verifying) {
+      this.namespace = namespace;
+      this.vector = vector;
+      this.entry = entry;
+      this.similarity = similarity;
+      this.verifying = verifying;
+    }
+
+    /**
+     * @return true when the cached answer can be returned without calling the model
+     */
+    public boolean isHit() {
+      return entry != null && !verifying;
+    }
+
+    public CachedAnswer getAnswer() {
+      return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * @return similarity of the prompt with the nearest cached prompt
+     */
+    public double getSimilarity() {
+      return similarity;
+    }
+  }
+}
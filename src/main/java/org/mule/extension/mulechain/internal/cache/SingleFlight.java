@@ -0,0 +1,109 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: while a call is in flight, callers with the same key wait for its result
+ * instead of calling the provider again. Errors are shared the same way. Nothing is kept once the call completes, later
+ * callers call again.
+ */
+public class SingleFlight {
+
+  private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * @param key  identifies the call, callers with equal keys share the result
+   * @param call blocking call, only run by the first caller
+   * @return the result and whether it came from another caller's call
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Shared<T> execute(String key, Supplier<T> call) {
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.incrementAndGet();
+      return new Shared<>((T) await(existing), true);
+    }
+    calls.incrementAndGet();
+    try {
+      T result = call.get();
+      future.complete(result);
+      return new Shared<>(result, false);
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * @return calls that reached the provider
+   */
+  public long getCallCount() {
+    return calls.get();
+  }
+
+  /**
+   * @return calls that shared the result of an in-flight call
+   */
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  private static Object await(CompletableFuture<Object> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new CompletionException(cause);
+    }
+  }
+
+  /**
+   * Result of a call, possibly shared with other callers.
+   */
+  public static final class Shared<T> {
+
+    private final T value;
+    private final boolean coalesced;
+
+    private Shared(T value, boolean coalesced) {
+      this.value = value;
+      this.coalesced = coalesced;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public boolean isCoalesced() {
+      return coalesced;
+    }
+  }
+}
@@ -4,42 +4,96 @@
 package org.mule.extension.mulechain.internal.config;
 
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import org.mule.extension.mulechain.internal.batch.BatchJobStore;
+import org.mule.extension.mulechain.internal.cache.RagAnswerCache;
+import org.mule.extension.mulechain.internal.cache.ResponseCache;
+import org.mule.extension.mulechain.internal.cache.SemanticResponseCache;
+import org.mule.extension.mulechain.internal.cache.SingleFlight;
+import org.mule.extension.mulechain.internal.connection.LangchainLLMConnectionProvider;
+import org.mule.extension.mulechain.internal.execution.LLMCallExecutor;
+import org.mule.extension.mulechain.internal.helpers.ConfidenceSignal;
+import org.mule.extension.mulechain.internal.helpers.ConfidenceSignalProvider;
+import org.mule.extension.mulechain.internal.helpers.PromptRoute;
+import org.mule.extension.mulechain.internal.helpers.PromptRoutingStrategy;
+import org.mule.extension.mulechain.internal.helpers.PromptRoutingStrategyProvider;
+import org.mule.extension.mulechain.internal.helpers.RoutingTarget;
+import org.mule.extension.mulechain.internal.helpers.TokenizerHelper;
+import org.mule.extension.mulechain.internal.helpers.TruncationPolicy;
+import org.mule.extension.mulechain.internal.helpers.TruncationPolicyProvider;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.operation.LangchainBatchOperations;
 import org.mule.extension.mulechain.internal.operation.LangchainEmbeddingStoresOperations;
 import org.mule.extension.mulechain.internal.operation.LangchainImageModelsOperations;
 import org.mule.extension.mulechain.internal.llm.type.LangchainLLMType;
+import org.mule.extension.mulechain.internal.llm.AiServiceCache;
+import org.mule.extension.mulechain.internal.llm.ChatModelRegistry;
 import org.mule.extension.mulechain.internal.llm.ConfigTypeProvider;
 import org.mule.extension.mulechain.internal.operation.LangchainLLMOperations;
 import org.mule.extension.mulechain.internal.llm.LangchainLLMModelNameProvider;
 import org.mule.extension.mulechain.internal.llm.LangchainLLMTypeProvider;
+import org.mule.extension.mulechain.internal.llm.ModelCascade;
+import org.mule.extension.mulechain.internal.llm.ModelParameters;
+import org.mule.extension.mulechain.internal.llm.PromptRouter;
+import org.mule.extension.mulechain.internal.llm.TokenBudget;
 import org.mule.extension.mulechain.internal.llm.config.ConfigExtractor;
 import org.mule.extension.mulechain.internal.llm.config.ConfigType;
+import org.mule.extension.mulechain.internal.memory.ChatMemoryManager;
+import org.mule.extension.mulechain.internal.traffic.AdaptiveRateLimiter;
+import org.mule.extension.mulechain.internal.traffic.CircuitBreaker;
+import org.mule.extension.mulechain.internal.traffic.CircuitBreakingChatLanguageModel;
+import org.mule.extension.mulechain.internal.traffic.HedgingExecutor;
+import org.mule.extension.mulechain.internal.traffic.RateLimitedChatLanguageModel;
+import org.mule.extension.mulechain.internal.traffic.RoutingChatLanguageModel;
+import org.mule.runtime.api.lifecycle.Disposable;
 import org.mule.runtime.api.lifecycle.Initialisable;
 import org.mule.runtime.api.lifecycle.InitialisationException;
 import org.mule.runtime.api.meta.ExpressionSupport;
 import org.mule.runtime.extension.api.annotation.Configuration;
+import org.mule.runtime.extension.api.annotation.connectivity.ConnectionProviders;
 import org.mule.runtime.extension.api.annotation.Expression;
 import org.mule.runtime.extension.api.annotation.Operations;
+import org.mule.runtime.extension.api.annotation.param.NullSafe;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.RefName;
 import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Password;
 import org.mule.runtime.extension.api.annotation.param.display.Placement;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
 import org.mule.runtime.extension.api.annotation.values.OfValues;
+import org.mule.runtime.extension.api.exception.ModuleException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
+import static org.mule.runtime.api.i18n.I18nMessageFactory.createStaticMessage;
+
 /**
  * This class represents an extension configuration, values set in this class are commonly used across multiple
  * operations since they represent something core from the extension.
  */
 @Configuration(name = "config")
-@Operations({LangchainLLMOperations.class, LangchainEmbeddingStoresOperations.class, LangchainImageModelsOperations.class})
-public class LangchainLLMConfiguration implements Initialisable {
+@ConnectionProviders(LangchainLLMConnectionProvider.class)
+@Operations({LangchainLLMOperations.class, LangchainEmbeddingStoresOperations.class, LangchainImageModelsOperations.class,
+    LangchainBatchOperations.class})
+public class LangchainLLMConfiguration implements Initialisable, Disposable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LangchainLLMConfiguration.class);
 
+  @RefName
+  private String configName;
+
   @Parameter
   @Placement(order = 1, tab = Placement.DEFAULT_TAB)
   @DisplayName("LLM type")
@@ -91,10 +145,449 @@ public class LangchainLLMConfiguration implements Initialisable {
   @Optional(defaultValue = "500")
   private int maxTokens = 500;
 
+  @Parameter
+  @Placement(order = 1, tab = "Chat Memory")
+  @Optional(defaultValue = "0")
+  @DisplayName("Chat memory time to live")
+  @Summary("Chat memories not accessed for longer are deleted from their file. 0 keeps them forever")
+  private long chatMemoryTtl = 0;
+
+  @Parameter
+  @Placement(order = 2, tab = "Chat Memory")
+  @Optional(defaultValue = "DAYS")
+  @DisplayName("Chat memory time to live unit")
+  private TimeUnit chatMemoryTtlUnit = TimeUnit.DAYS;
+
+  @Parameter
+  @Placement(order = 3, tab = "Chat Memory")
+  @Optional(defaultValue = "10")
+  @Summary("Delay between two sweeps deleting the expired chat memories")
+  private long chatMemorySweepInterval = 10;
+
+  @Parameter
+  @Placement(order = 4, tab = "Chat Memory")
+  @Optional(defaultValue = "MINUTES")
+  private TimeUnit chatMemorySweepIntervalUnit = TimeUnit.MINUTES;
+
+  @Parameter
+  @Placement(order = 5, tab = "Chat Memory")
+  @Optional(defaultValue = "500")
+  @Summary("Max expired chat memories deleted per commit")
+  private int chatMemorySweepBatchSize = 500;
+
+  @Parameter
+  @Placement(order = 6, tab = "Chat Memory")
+  @Optional(defaultValue = "1")
+  @Summary("Number of files the memories of a dbFilePath are spread over, so commits of unrelated conversations run in "
+      + "parallel. Memories of an existing dbFilePath are moved to the stripes, the count must not change afterwards")
+  private int chatMemoryStripes = 1;
+
+  @Parameter
+  @Placement(order = 1, tab = "Async")
+  @Optional(defaultValue = "64")
+  @Summary("Max LLM calls of the async operations running at the same time, the others are queued")
+  private int asyncMaxConcurrency = 64;
+
+  @Parameter
+  @Placement(order = 2, tab = "Async")
+  @Optional(defaultValue = "1024")
+  @Summary("Max LLM calls of the async operations waiting for one of the running calls to complete, the others fail with "
+      + "RATE_LIMIT_EXCEEDED")
+  private int asyncMaxQueued = 1024;
+
+  @Parameter
+  @Placement(order = 3, tab = "Async")
+  @Optional(defaultValue = "false")
+  @Summary("Runs the LLM calls of the async operations on virtual threads when the Mule runtime runs on Java 21 or newer, "
+      + "falls back to a thread pool otherwise")
+  private boolean virtualThreads = false;
+
+  @Parameter
+  @Placement(order = 1, tab = "Response Cache")
+  @Optional(defaultValue = "false")
+  @Summary("Answers repeated prompts from a cache keyed by provider, model, generation parameters and rendered prompt")
+  private boolean responseCache = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "Response Cache")
+  @Optional(defaultValue = "1000")
+  @Summary("Answers kept in memory")
+  private int responseCacheMaxEntries = 1000;
+
+  @Parameter
+  @Placement(order = 3, tab = "Response Cache")
+  @Optional(defaultValue = "60")
+  @DisplayName("Response cache time to live")
+  @Summary("Cached answers older than this are not returned anymore. 0 keeps them forever")
+  private long responseCacheTtl = 60;
+
+  @Parameter
+  @Placement(order = 4, tab = "Response Cache")
+  @Optional(defaultValue = "MINUTES")
+  @DisplayName("Response cache time to live unit")
+  private TimeUnit responseCacheTtlUnit = TimeUnit.MINUTES;
+
+  @Parameter
+  @Placement(order = 5, tab = "Response Cache")
+  @Optional
+  @Summary("MapDB file keeping the answers across restarts. Answers are only kept in memory when empty")
+  private String responseCacheFilePath;
+
+  @Parameter
+  @Placement(order = 6, tab = "Response Cache")
+  @Optional(defaultValue = "10000")
+  @Summary("Answers kept in the response cache file")
+  private int responseCacheMaxFileEntries = 10000;
+
+  @Parameter
+  @Placement(order = 1, tab = "Semantic Cache")
+  @Optional(defaultValue = "false")
+  @Summary("Answers prompts similar to a previous prompt from a cache, prompts are compared with a local embedding model")
+  private boolean semanticCache = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "Semantic Cache")
+  @Optional(defaultValue = "0.92")
+  @Summary("Min cosine similarity between two prompts sharing an answer")
+  private double semanticCacheSimilarityThreshold = 0.92;
+
+  @Parameter
+  @Placement(order = 3, tab = "Semantic Cache")
+  @Optional(defaultValue = "1000")
+  @Summary("Answers kept, the least recently used ones are evicted")
+  private int semanticCacheMaxEntries = 1000;
+
+  @Parameter
+  @Placement(order = 4, tab = "Semantic Cache")
+  @Optional(defaultValue = "60")
+  @DisplayName("Semantic cache time to live")
+  @Summary("Cached answers older than this are not returned anymore. 0 keeps them forever")
+  private long semanticCacheTtl = 60;
+
+  @Parameter
+  @Placement(order = 5, tab = "Semantic Cache")
+  @Optional(defaultValue = "MINUTES")
+  @DisplayName("Semantic cache time to live unit")
+  private TimeUnit semanticCacheTtlUnit = TimeUnit.MINUTES;
+
+  @Parameter
+  @Placement(order = 6, tab = "Semantic Cache")
+  @Optional(defaultValue = "0.0")
+  @Summary("Share of the hits also answered by the model to count the false hits, between 0 and 1")
+  private double semanticCacheVerificationRate = 0.0;
+
+  @Parameter
+  @Placement(order = 1, tab = "RAG Answer Cache")
+  @Optional(defaultValue = "false")
+  @Summary("Answers questions repeated against an unchanged embedding store from a cache. The answers of a store are "
+      + "dropped when it is modified")
+  private boolean ragAnswerCache = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "RAG Answer Cache")
+  @Optional(defaultValue = "1000")
+  @Summary("Answers kept per store, the least recently used ones are evicted")
+  private int ragAnswerCacheMaxEntries = 1000;
+
+  @Parameter
+  @Placement(order = 1, tab = "Traffic")
+  @Optional(defaultValue = "false")
+  @Summary("Identical requests arriving while the same request is in flight share its provider call and result")
+  private boolean coalesceRequests = false;
+
+  @Parameter
+  @Placement(order = 1, tab = "Rate Limits")
+  @Optional(defaultValue = "false")
+  @Summary("Limits the calls to each model of the provider on the client side, calls wait for their permits in a queue")
+  private boolean rateLimiting = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "Rate Limits")
+  @Optional(defaultValue = "0")
+  @Summary("Max calls per minute to each model, 0 for no limit")
+  private long requestsPerMinute = 0;
+
+  @Parameter
+  @Placement(order = 3, tab = "Rate Limits")
+  @Optional(defaultValue = "0")
+  @Summary("Max prompt and answer tokens per minute to each model, 0 for no limit. Prompts are estimated with the tokenizer "
+      + "of the LLM type and the max tokens are reserved for the answer until the actual usage is known")
+  private long tokensPerMinute = 0;
+
+  @Parameter
+  @Placement(order = 4, tab = "Rate Limits")
+  @Optional(defaultValue = "16")
+  @Summary("Max calls in flight to each model. The actual limit adapts: it is halved when the provider answers 429, shrinks "
+      + "when calls are slower than the latency threshold and grows back while they succeed")
+  private int maxConcurrency = 16;
+
+  @Parameter
+  @Placement(order = 5, tab = "Rate Limits")
+  @Optional(defaultValue = "0")
+  @Summary("Calls slower than this shrink the concurrency limit, 0 to only react to 429 answers")
+  private long latencyThreshold = 0;
+
+  @Parameter
+  @Placement(order = 6, tab = "Rate Limits")
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit latencyThresholdUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 7, tab = "Rate Limits")
+  @Optional(defaultValue = "30")
+  @Summary("Max time a call waits for its permits before failing with RATE_LIMIT_EXCEEDED")
+  private long maxQueueWait = 30;
+
+  @Parameter
+  @Placement(order = 8, tab = "Rate Limits")
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit maxQueueWaitUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 1, tab = "Hedging")
+  @Optional(defaultValue = "false")
+  @Summary("Starts a second call to the model when the first one is slower than usual and keeps the first answer, failed "
+      + "calls are retried with a jittered backoff. Applies to the chat and prompt template operations")
+  private boolean hedging = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "Hedging")
+  @Optional(defaultValue = "95")
+  @Summary("Percentile of the recent latencies of the model after which a call is hedged")
+  private double hedgeLatencyPercentile = 95;
+
+  @Parameter
+  @Placement(order = 3, tab = "Hedging")
+  @Optional(defaultValue = "5")
+  @Summary("Hedging delay used until enough latencies of the model are recorded")
+  private long hedgeInitialDelay = 5;
+
+  @Parameter
+  @Placement(order = 4, tab = "Hedging")
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit hedgeInitialDelayUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 5, tab = "Hedging")
+  @Optional
+  @Summary("Model of the configured LLM type receiving the hedged calls, defaults to the model of the first call")
+  private String hedgeModelName;
+
+  @Parameter
+  @Placement(order = 6, tab = "Hedging")
+  @Optional(defaultValue = "3")
+  @Summary("Max rounds of calls, 1 to not retry")
+  private int maxAttempts = 3;
+
+  @Parameter
+  @Placement(order = 7, tab = "Hedging")
+  @Optional(defaultValue = "500")
+  @Summary("Base of the exponential backoff between two rounds, each retry waits a random delay up to the backoff")
+  private long retryBackoff = 500;
+
+  @Parameter
+  @Placement(order = 8, tab = "Hedging")
+  @Optional(defaultValue = "MILLISECONDS")
+  private TimeUnit retryBackoffUnit = TimeUnit.MILLISECONDS;
+
+  @Parameter
+  @Placement(order = 9, tab = "Hedging")
+  @Optional(defaultValue = "120")
+  @Summary("Max time spent calling the model, hedges and retries included")
+  private long totalDeadline = 120;
+
+  @Parameter
+  @Placement(order = 10, tab = "Hedging")
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit totalDeadlineUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 11, tab = "Hedging")
+  @Optional(defaultValue = "128")
+  @Summary("Max calls running at the same time, hedges included. Calls are not hedged once it is reached, and fail with "
+      + "RATE_LIMIT_EXCEEDED when they cannot start")
+  private int hedgeMaxConcurrency = 128;
+
+  @Parameter
+  @Placement(order = 1, tab = "Routing")
+  @Optional
+  @NullSafe
+  @Summary("Other provider models the calls to the model of this configuration are routed to. Calls go to the fastest "
+      + "healthy targets, by observed latency and error rate, and fail over to the others")
+  private List<RoutingTarget> routingTargets;
+
+  @Parameter
+  @Placement(order = 2, tab = "Routing")
+  @Optional(defaultValue = "1")
+  @Summary("Share of the traffic of the model of this configuration relative to the routing targets")
+  private double routingWeight = 1;
+
+  @Parameter
+  @Placement(order = 1, tab = "Circuit Breaker")
+  @Optional(defaultValue = "false")
+  @Summary("Fails the calls to a model, or to the moderation API, immediately with CIRCUIT_OPEN once it failed repeatedly, "
+      + "instead of waiting for the timeout. Routing targets always have a circuit breaker")
+  private boolean circuitBreaker = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "Circuit Breaker")
+  @Optional(defaultValue = "5")
+  @Summary("Consecutive failures after which the circuit opens and the endpoint is not called for the open interval")
+  private int circuitBreakerFailureThreshold = 5;
+
+  @Parameter
+  @Placement(order = 3, tab = "Circuit Breaker")
+  @Optional(defaultValue = "30")
+  private long circuitBreakerOpenInterval = 30;
+
+  @Parameter
+  @Placement(order = 4, tab = "Circuit Breaker")
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit circuitBreakerOpenIntervalUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 5, tab = "Circuit Breaker")
+  @Optional(defaultValue = "1")
+  @Summary("Successful probe calls closing the circuit once the open interval elapsed")
+  private int circuitBreakerHalfOpenProbes = 1;
+
+  @Parameter
+  @Placement(order = 1, tab = "Cascade")
+  @Optional(defaultValue = "false")
+  @Summary("Answers the chat and prompt template operations with the fast model first and escalates to the model of the "
+      + "configuration only when the fast answer is not confident enough")
+  private boolean cascade = false;
+
+  @Parameter
+  @Placement(order = 2, tab = "Cascade")
+  @Optional
+  @Summary("Smaller model of the configured LLM type answering first")
+  private String cascadeFastModelName;
+
+  @Parameter
+  @Placement(order = 3, tab = "Cascade")
+  @Optional(defaultValue = "selfReported")
+  @OfValues(ConfidenceSignalProvider.class)
+  @Summary("selfReported asks the fast model to rate its answer, jsonValidity trusts answers that are valid JSON")
+  private String cascadeConfidenceSignal = ConfidenceSignal.SELF_REPORTED.getValue();
+
+  @Parameter
+  @Placement(order = 4, tab = "Cascade")
+  @Optional(defaultValue = "0.7")
+  @Summary("Min confidence, between 0 and 1, of a fast answer to not escalate it")
+  private double cascadeConfidenceThreshold = 0.7;
+
+  @Parameter
+  @Placement(order = 1, tab = "Prompt Routing")
+  @Optional
+  @NullSafe
+  @Summary("Models the chat and prompt template operations send each prompt to, by similarity of the prompt with the "
+      + "examples of the routes. The prompts are classified with a local embedding model, without calling an LLM")
+  private List<PromptRoute> promptRoutes;
+
+  @Parameter
+  @Placement(order = 2, tab = "Prompt Routing")
+  @Optional(defaultValue = "nearestCentroid")
+  @OfValues(PromptRoutingStrategyProvider.class)
+  private String promptRoutingStrategy = PromptRoutingStrategy.NEAREST_CENTROID.getValue();
+
+  @Parameter
+  @Placement(order = 3, tab = "Prompt Routing")
+  @Optional(defaultValue = "5")
+  @Summary("Nearest examples voting for the route of a prompt with the kNearestNeighbours strategy")
+  private int promptRoutingNeighbours = 5;
+
+  @Parameter
+  @Placement(order = 1, tab = "Prompt Caching")
+  @Optional(defaultValue = "false")
+  @Summary("Sends the template and instructions of the prompt template operation as a system message ahead of the dataset, "
+      + "so providers caching prompt prefixes reuse them. Anthropic models also mark the system message as a cache breakpoint")
+  private boolean promptCaching = false;
+
+  @Parameter
+  @Placement(order = 1, tab = "Batch")
+  @Optional
+  @Summary("Base URL of the OpenAI compatible batch API, such as a local stub server. Defaults to the API of the LLM type")
+  private String batchBaseUrl;
+
+  @Parameter
+  @Placement(order = 2, tab = "Batch")
+  @Optional(defaultValue = "24h")
+  @Summary("Time the provider has to complete a batch")
+  private String batchCompletionWindow = "24h";
+
+  @Parameter
+  @Placement(order = 3, tab = "Batch")
+  @Optional
+  @Summary("File keeping the state of the batch jobs, so their results can be fetched after a restart. Defaults to a file "
+      + "named after the configuration in the working directory of the app")
+  private String batchJobsFilePath;
+
+  @Parameter
+  @Placement(order = 4, tab = "Batch")
+  @Optional
+  @Password
+  @Summary("Key of the batch API. Defaults to the OPENAI_API_KEY or GROQ_API_KEY of the configuration file, it is required "
+      + "for a batch base URL of another LLM type")
+  private String batchApiKey;
+
+  @Parameter
+  @Placement(order = 1, tab = "Token Budget")
+  @Optional(defaultValue = "0")
+  @Summary("Max estimated input tokens of the prompt template and RAG prompts, their dataset or retrieved context is cut to "
+      + "fit them before the call. 0 for no limit, the input tokens are still estimated")
+  private int maxInputTokens = 0;
+
+  @Parameter
+  @Placement(order = 2, tab = "Token Budget")
+  @Optional(defaultValue = "middleOut")
+  @OfValues(TruncationPolicyProvider.class)
+  @Summary("How the dataset exceeding the max input tokens is cut. Retrieved segments are kept by relevance, only the "
+      + "segment at the edge of the budget is cut this way")
+  private String truncationPolicy = TruncationPolicy.MIDDLE_OUT.getValue();
+
   private ConfigExtractor configExtractor;
 
   private ChatLanguageModel model;
 
+  private final ChatMemoryManager chatMemoryManager = new ChatMemoryManager();
+
+  private final AiServiceCache aiServiceCache = new AiServiceCache();
+
+  private final ChatModelRegistry chatModelRegistry = new ChatModelRegistry();
+
+  private LLMCallExecutor llmCallExecutor;
+
+  private ResponseCache exactResponseCache;
+
+  private SemanticResponseCache semanticResponseCache;
+
+  private RagAnswerCache ragAnswers;
+
+  private SingleFlight singleFlight;
+
+  private HedgingExecutor hedgingExecutor;
+
+  private final ConcurrentMap<String, AdaptiveRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<List<Object>, ChatLanguageModel> decoratedModels = new ConcurrentHashMap<>();
+
+  private volatile RoutingChatLanguageModel router;
+
+  private ModelCascade modelCascade;
+
+  private BatchJobStore batchJobStore;
+
+  private volatile TokenBudget tokenBudget;
+
+  private PromptRouter promptRouter;
+
+  private EmbeddingModel localEmbeddingModel;
+
+  private final ConcurrentMap<String, ConfigExtractor> configExtractors = new ConcurrentHashMap<>();
+
   public String getLlmType() {
     return llmType;
   }
@@ -132,28 +625,406 @@ public class LangchainLLMConfiguration implements Initialisable {
     return maxTokens;
   }
 
+  public boolean isPromptCaching() {
+    return promptCaching;
+  }
+
   public ConfigExtractor getConfigExtractor() {
     return configExtractor;
   }
 
   public ChatLanguageModel getModel() {
-    return model;
+    return getModel(null);
+  }
+
+  public ChatMemoryManager getChatMemoryManager() {
+    return chatMemoryManager;
+  }
+
+  public AiServiceCache getAiServiceCache() {
+    return aiServiceCache;
+  }
+
+  public LLMCallExecutor getLlmCallExecutor() {
+    return llmCallExecutor;
+  }
+
+  /**
+   * @return the exact-match response cache, null when it is disabled
+   */
+  public ResponseCache getResponseCache() {
+    return exactResponseCache;
+  }
+
+  /**
+   * @return the semantic response cache, null when it is disabled
+   */
+  public SemanticResponseCache getSemanticResponseCache() {
+    return semanticResponseCache;
+  }
+
+  /**
+   * @return the RAG answer cache, null when it is disabled
+   */
+  public RagAnswerCache getRagAnswerCache() {
+    return ragAnswers;
+  }
+
+  /**
+   * @return coalesces identical concurrent requests, null when it is disabled
+   */
+  public SingleFlight getSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * @param modelName name of the model to use instead of the configured one, null for the configured one
+   * @return the model name and generation parameters the model is built with
+   */
+  public ModelParameters getModelParameters(String modelName) {
+    ModelParameters parameters = ModelParameters.from(this);
+    return modelName == null ? parameters : parameters.withModelName(modelName);
+  }
+
+  /**
+   * @return runs the calls with hedging and retries, null when hedging is disabled
+   */
+  public HedgingExecutor getHedgingExecutor() {
+    return hedgingExecutor;
+  }
+
+  /**
+   * @param modelName model of the first call, null for the configured one
+   * @return the model receiving the hedged calls
+   */
+  public ChatLanguageModel getHedgeModel(String modelName) {
+    return getModel(hedgeModelName != null ? hedgeModelName : modelName);
+  }
+
+  /**
+   * @return escalates the unconfident answers of the fast model, null when the cascade is disabled
+   */
+  public ModelCascade getModelCascade() {
+    return modelCascade;
+  }
+
+  /**
+   * @return the model answering first in the cascade
+   */
+  public ChatLanguageModel getCascadeFastModel() {
+    return getModel(cascadeFastModelName);
+  }
+
+  public String getCascadeFastModelName() {
+    return cascadeFastModelName;
+  }
+
+  /**
+   * @return picks the model of each prompt, null without prompt routes
+   */
+  public PromptRouter getPromptRouter() {
+    return promptRouter;
+  }
+
+  /**
+   * @return the base URL of the batch API, the configured one or the one of the LLM type
+   */
+  public String getBatchBaseUrl() {
+    if (batchBaseUrl != null) {
+      return batchBaseUrl;
+    }
+    switch (LangchainLLMType.fromValue(llmType)) {
+      case OPENAI:
+        return "https://api.openai.com/v1";
+      case GROQAI_OPENAI:
+        return "https://api.groq.com/openai/v1";
+      default:
+        throw new ModuleException("Batch jobs require an OpenAI compatible LLM type or a batch base URL, not " + llmType,
+                                  MuleChainErrorType.AI_SERVICES_FAILURE);
+    }
+  }
+
+  /**
+   * @return the key of the batch API, the one of the LLM type unless it is set
+   */
+  public String getBatchApiKey() {
+    String apiKey = batchApiKey != null ? batchApiKey : configExtractor.extractValue(batchApiKeyName());
+    if (apiKey == null || apiKey.isEmpty()) {
+      throw new ModuleException("Batch jobs require a batch API key, set it or " + batchApiKeyName()
+          + " in the configuration file", MuleChainErrorType.VALIDATION_FAILURE);
+    }
+    return apiKey;
+  }
+
+  private String batchApiKeyName() {
+    return LangchainLLMType.GROQAI_OPENAI.getValue().equals(llmType) ? "GROQ_API_KEY" : "OPENAI_API_KEY";
+  }
+
+  public String getBatchCompletionWindow() {
+    return batchCompletionWindow;
+  }
+
+  public BatchJobStore getBatchJobStore() {
+    return batchJobStore;
+  }
+
+  /**
+   * Created on first use, once the LLM type and model of the configuration are populated, so it estimates with their
+   * tokenizer.
+   */
+  public TokenBudget getTokenBudget() {
+    if (tokenBudget == null) {
+      synchronized (this) {
+        if (tokenBudget == null) {
+          tokenBudget = new TokenBudget(TokenizerHelper.getTokenizer(this), maxInputTokens,
+                                        TruncationPolicy.fromValue(truncationPolicy));
+        }
+      }
+    }
+    return tokenBudget;
+  }
+
+  public boolean isRateLimiting() {
+    return rateLimiting;
+  }
+
+  /**
+   * @return the rate limiters of the models called so far, by LLM type and model name. Empty when rate limiting is disabled
+   */
+  public Map<String, AdaptiveRateLimiter> getRateLimiters() {
+    return Collections.unmodifiableMap(rateLimiters);
+  }
+
+  /**
+   * @param modelName model of the configured LLM type, null for the configured one
+   * @return the rate limiter of the model when rate limiting is enabled, null otherwise
+   */
+  public AdaptiveRateLimiter getRateLimiter(String modelName) {
+    return rateLimiting ? getOrCreateRateLimiter(llmType + ":" + (modelName != null ? modelName : this.modelName)) : null;
+  }
+
+  private AdaptiveRateLimiter getOrCreateRateLimiter(String name) {
+    return rateLimiters.computeIfAbsent(name, key -> new AdaptiveRateLimiter(requestsPerMinute, tokensPerMinute, maxConcurrency,
+                                                                             latencyThresholdUnit.toNanos(latencyThreshold),
+                                                                             maxQueueWaitUnit.toNanos(maxQueueWait)));
+  }
+
+  public boolean isCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * @return the circuit breakers of the endpoints called so far, by LLM type and model name or by API
+   */
+  public Map<String, CircuitBreaker> getCircuitBreakers() {
+    return Collections.unmodifiableMap(circuitBreakers);
+  }
+
+  /**
+   * @param name endpoint protected by the breaker
+   * @return the breaker of the endpoint when circuit breaking is enabled, null otherwise
+   */
+  public CircuitBreaker getCircuitBreaker(String name) {
+    return circuitBreaker ? getOrCreateCircuitBreaker(name) : null;
+  }
+
+  private CircuitBreaker getOrCreateCircuitBreaker(String name) {
+    return circuitBreakers.computeIfAbsent(name, key -> new CircuitBreaker(circuitBreakerFailureThreshold,
+                                                                           circuitBreakerOpenIntervalUnit
+                                                                               .toNanos(circuitBreakerOpenInterval),
+                                                                           circuitBreakerHalfOpenProbes));
+  }
+
+  /**
+   * @return routes the calls between the model of this configuration and the routing targets, null without targets
+   */
+  public RoutingChatLanguageModel getRouter() {
+    if (router == null && routingTargets != null && !routingTargets.isEmpty() && model != null) {
+      synchronized (this) {
+        if (router == null) {
+          router = createRouter();
+        }
+      }
+    }
+    return router;
+  }
+
+  /**
+   * @param modelName name of the model to use instead of the configured one, with the same generation parameters. The
+   *                  calls to the configured model are routed when routing targets are configured, the calls to another
+   *                  model are not
+   * @return the model of this provider, created on first use and kept by this configuration, within its rate limits
+   */
+  public ChatLanguageModel getModel(String modelName) {
+    if (modelName == null || modelName.equals(this.modelName)) {
+      RoutingChatLanguageModel routingModel = getRouter();
+      return routingModel != null ? routingModel : decorate(llmType, ModelParameters.from(this), model, circuitBreaker);
+    }
+    ModelParameters parameters = getModelParameters(modelName);
+    return decorate(llmType, parameters, chatModelRegistry.getModel(LangchainLLMType.fromValue(llmType), configType, filePath,
+                                                                    configExtractor, parameters),
+                    circuitBreaker);
+  }
+
+  /**
+   * @param modelLlmType LLM type of the model, its credentials are read like the ones of this configuration
+   * @param modelName    name of the model, with the generation parameters of this configuration
+   * @return the model kept by the configuration, created on first use, within the rate limits of this configuration
+   */
+  public ChatLanguageModel getModel(String modelLlmType, String modelName) {
+    if (modelLlmType.equals(llmType)) {
+      return getModel(modelName);
+    }
+    ModelParameters parameters = getModelParameters(modelName);
+    return decorate(modelLlmType, parameters, getProviderModel(modelLlmType, parameters), circuitBreaker);
+  }
+
+  private ChatLanguageModel getProviderModel(String modelLlmType, ModelParameters parameters) {
+    ConfigExtractor modelConfigExtractor = configExtractors
+        .computeIfAbsent(modelLlmType, key -> ConfigType.fromValue(configType).getConfigExtractorFunction().apply(filePath, key));
+    return chatModelRegistry.getModel(LangchainLLMType.fromValue(modelLlmType), configType, filePath, modelConfigExtractor,
+                                      parameters);
+  }
+
+  /**
+   * The router checks the circuit breakers of its targets itself, the targets are not wrapped in one.
+   */
+  private RoutingChatLanguageModel createRouter() {
+    List<RoutingChatLanguageModel.Target> targets = new ArrayList<>();
+    String name = llmType + ":" + modelName;
+    targets.add(new RoutingChatLanguageModel.Target(name, decorate(llmType, ModelParameters.from(this), model, false),
+                                                    routingWeight, getOrCreateCircuitBreaker(name)));
+    for (RoutingTarget routingTarget : routingTargets) {
+      ModelParameters parameters = getModelParameters(routingTarget.getModelName());
+      ChatLanguageModel targetModel = getProviderModel(routingTarget.getLlmType(), parameters);
+      String targetName = routingTarget.getLlmType() + ":" + routingTarget.getModelName();
+      targets.add(new RoutingChatLanguageModel.Target(targetName, decorate(routingTarget.getLlmType(), parameters, targetModel,
+                                                                           false),
+                                                      routingTarget.getWeight(), getOrCreateCircuitBreaker(targetName)));
+    }
+    LOGGER.debug("Routing the calls of {}:{} between {} targets", llmType, modelName, targets.size());
+    return new RoutingChatLanguageModel(targets);
+  }
+
+  /**
+   * Wraps the model in its rate limiter, then in its circuit breaker so open circuits fail without waiting for permits. The
+   * decorated models are kept so the AI Services cached for a model keep matching it.
+   */
+  private ChatLanguageModel decorate(String modelLlmType, ModelParameters parameters, ChatLanguageModel sharedModel,
+                                     boolean withCircuitBreaker) {
+    if ((!rateLimiting && !withCircuitBreaker) || sharedModel == null) {
+      return sharedModel;
+    }
+    String name = modelLlmType + ":" + parameters.getModelName();
+    return decoratedModels.computeIfAbsent(Arrays.asList(modelLlmType, parameters, withCircuitBreaker), key -> {
+      ChatLanguageModel decoratedModel = sharedModel;
+      if (rateLimiting) {
+        AdaptiveRateLimiter rateLimiter = getOrCreateRateLimiter(name);
+        decoratedModel = new RateLimitedChatLanguageModel(decoratedModel, rateLimiter,
+                                                          TokenizerHelper.getTokenizer(modelLlmType, parameters.getModelName()),
+                                                          parameters.getMaxTokens());
+      }
+      if (withCircuitBreaker) {
+        decoratedModel = new CircuitBreakingChatLanguageModel(decoratedModel, name, getOrCreateCircuitBreaker(name));
+      }
+      return decoratedModel;
+    });
   }
 
   private ChatLanguageModel createModel(ConfigExtractor configExtractor) {
     LangchainLLMType type = LangchainLLMType.fromValue(llmType);
-    LOGGER.debug("Creating Model of LLMType: {}", llmType);
-    return type.getConfigBiFunction().apply(configExtractor, this);
+    LOGGER.debug("Getting Model of LLMType: {}", llmType);
+    return chatModelRegistry.getModel(type, configType, filePath, configExtractor, ModelParameters.from(this));
   }
 
   @Override
   public void initialise() throws InitialisationException {
     if (configType != null) {
       ConfigType config = ConfigType.fromValue(configType);
-      configExtractor = config.getConfigExtractorFunction().apply(this);
+      configExtractor = config.getConfigExtractorFunction().apply(filePath, llmType);
       model = createModel(configExtractor);
+      chatMemoryManager.configureStripes(chatMemoryStripes);
+      chatMemoryManager.configureExpiry(chatMemoryTtlUnit.toMillis(chatMemoryTtl),
+                                        chatMemorySweepIntervalUnit.toMillis(chatMemorySweepInterval),
+                                        chatMemorySweepBatchSize);
     } else {
       LOGGER.warn("Initialisation is called before the values are populated");
     }
+    if (llmCallExecutor == null) {
+      llmCallExecutor = LLMCallExecutor.create(Math.max(1, asyncMaxConcurrency), Math.max(0, asyncMaxQueued),
+                                              virtualThreads);
+    }
+    if (responseCache && exactResponseCache == null) {
+      exactResponseCache = new ResponseCache(responseCacheMaxEntries, responseCacheTtlUnit.toMillis(responseCacheTtl),
+                                             responseCacheFilePath, responseCacheMaxFileEntries);
+    }
+    if (hedging && hedgingExecutor == null) {
+      hedgingExecutor = new HedgingExecutor(hedgeLatencyPercentile, hedgeInitialDelayUnit.toNanos(hedgeInitialDelay),
+                                            maxAttempts, retryBackoffUnit.toNanos(retryBackoff),
+                                            totalDeadlineUnit.toNanos(totalDeadline), hedgeMaxConcurrency);
+    }
+    if (cascade && modelCascade == null) {
+      if (cascadeFastModelName == null) {
+        LOGGER.warn("The cascade is enabled without a fast model, the calls are not cascaded");
+      } else {
+        modelCascade = new ModelCascade(ConfidenceSignal.fromValue(cascadeConfidenceSignal), cascadeConfidenceThreshold);
+      }
+    }
+    if (promptRoutes != null && !promptRoutes.isEmpty() && promptRouter == null) {
+      promptRouter = new PromptRouter(getLocalEmbeddingModel(), promptRoutes,
+                                      PromptRoutingStrategy.fromValue(promptRoutingStrategy), promptRoutingNeighbours);
+    }
+    if (batchBaseUrl != null && batchApiKey == null && !isOpenAiCompatible()) {
+      throw new InitialisationException(createStaticMessage("The batch base URL of the " + llmType + " LLM type requires "
+          + "a batch API key"), this);
+    }
+    if (batchJobStore == null) {
+      batchJobStore = new BatchJobStore(batchJobsFilePath != null ? batchJobsFilePath
+          : new File(System.getProperty("user.dir"), "mulechain-batch-jobs-" + configName + ".db").getAbsolutePath());
+    }
+    if (ragAnswerCache && ragAnswers == null) {
+      ragAnswers = new RagAnswerCache(ragAnswerCacheMaxEntries);
+    }
+    if (coalesceRequests && singleFlight == null) {
+      singleFlight = new SingleFlight();
+    }
+    if (semanticCache && semanticResponseCache == null) {
+      semanticResponseCache = new SemanticResponseCache(getLocalEmbeddingModel(), semanticCacheSimilarityThreshold,
+                                                        semanticCacheMaxEntries,
+                                                        semanticCacheTtlUnit.toMillis(semanticCacheTtl),
+                                                        semanticCacheVerificationRate);
+    }
+  }
+
+  private boolean isOpenAiCompatible() {
+    return LangchainLLMType.OPENAI.getValue().equals(llmType) || LangchainLLMType.GROQAI_OPENAI.getValue().equals(llmType);
+  }
+
+  /**
+   * The embedding model runs in process, its ONNX session is shared by the semantic cache and the prompt router.
+   */
+  private EmbeddingModel getLocalEmbeddingModel() {
+    if (localEmbeddingModel == null) {
+      localEmbeddingModel = new AllMiniLmL6V2EmbeddingModel();
+    }
+    return localEmbeddingModel;
+  }
+
+  @Override
+  public void dispose() {
+    if (llmCallExecutor != null) {
+      llmCallExecutor.shutdown();
+    }
+    if (hedgingExecutor != null) {
+      hedgingExecutor.shutdown();
+    }
+    if (exactResponseCache != null) {
+      exactResponseCache.close();
+    }
+    if (batchJobStore != null) {
+      batchJobStore.close();
+    }
+    chatMemoryManager.close();
+    chatModelRegistry.clear();
   }
 }
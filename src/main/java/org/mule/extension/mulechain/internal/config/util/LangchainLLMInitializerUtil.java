@@ -10,7 +10,7 @@ import dev.langchain4j.model.huggingface.HuggingFaceChatModel;
 import dev.langchain4j.model.mistralai.MistralAiChatModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
-import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
+import org.mule.extension.mulechain.internal.llm.ModelParameters;
 import org.mule.extension.mulechain.internal.llm.config.ConfigExtractor;
 
 import static java.time.Duration.ofSeconds;
@@ -19,15 +19,15 @@ public final class LangchainLLMInitializerUtil {
 
   private LangchainLLMInitializerUtil() {}
 
-  public static OpenAiChatModel createOpenAiChatModel(ConfigExtractor configExtractor, LangchainLLMConfiguration configuration) {
+  public static OpenAiChatModel createOpenAiChatModel(ConfigExtractor configExtractor, ModelParameters parameters) {
     String openaiApiKey = configExtractor.extractValue("OPENAI_API_KEY");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return OpenAiChatModel.builder()
         .apiKey(openaiApiKey)
-        .modelName(configuration.getModelName())
-        .maxTokens(configuration.getMaxTokens())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .modelName(parameters.getModelName())
+        .maxTokens(parameters.getMaxTokens())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
         .logRequests(true)
         .logResponses(true)
@@ -36,16 +36,16 @@ public final class LangchainLLMInitializerUtil {
   }
 
   public static OpenAiChatModel createGroqOpenAiChatModel(ConfigExtractor configExtractor,
-                                                          LangchainLLMConfiguration configuration) {
+                                                          ModelParameters parameters) {
     String groqApiKey = configExtractor.extractValue("GROQ_API_KEY");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return OpenAiChatModel.builder()
         .baseUrl("https://api.groq.com/openai/v1")
         .apiKey(groqApiKey)
-        .modelName(configuration.getModelName())
-        .maxTokens(configuration.getMaxTokens())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .modelName(parameters.getModelName())
+        .maxTokens(parameters.getMaxTokens())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
         .logRequests(true)
         .logResponses(true)
@@ -55,79 +55,80 @@ public final class LangchainLLMInitializerUtil {
 
 
   public static MistralAiChatModel createMistralAiChatModel(ConfigExtractor configExtractor,
-                                                            LangchainLLMConfiguration configuration) {
+                                                            ModelParameters parameters) {
     String mistralAiApiKey = configExtractor.extractValue("MISTRAL_AI_API_KEY");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return MistralAiChatModel.builder()
         //.apiKey(configuration.getLlmApiKey())
         .apiKey(mistralAiApiKey)
-        .modelName(configuration.getModelName())
-        .maxTokens(configuration.getMaxTokens())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .modelName(parameters.getModelName())
+        .maxTokens(parameters.getMaxTokens())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
         .logRequests(true)
         .logResponses(true)
         .build();
   }
 
-  public static OllamaChatModel createOllamaChatModel(ConfigExtractor configExtractor, LangchainLLMConfiguration configuration) {
+  public static OllamaChatModel createOllamaChatModel(ConfigExtractor configExtractor, ModelParameters parameters) {
     String ollamaBaseUrl = configExtractor.extractValue("OLLAMA_BASE_URL");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return OllamaChatModel.builder()
         //.baseUrl(configuration.getLlmApiKey())
         .baseUrl(ollamaBaseUrl)
-        .modelName(configuration.getModelName())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .modelName(parameters.getModelName())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
         .build();
   }
 
 
   public static HuggingFaceChatModel createHuggingFaceChatModel(ConfigExtractor configExtractor,
-                                                                LangchainLLMConfiguration configuration) {
+                                                                ModelParameters parameters) {
     String huggingFaceApiKey = configExtractor.extractValue("HUGGING_FACE_API_KEY");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return HuggingFaceChatModel.builder()
         .accessToken(huggingFaceApiKey)
-        .modelId(configuration.getModelName())
+        .modelId(parameters.getModelName())
         .timeout(ofSeconds(durationInSec))
-        .temperature(configuration.getTemperature())
-        .maxNewTokens(configuration.getMaxTokens())
+        .temperature(parameters.getTemperature())
+        .maxNewTokens(parameters.getMaxTokens())
         .waitForModel(true)
         .build();
   }
 
 
   public static GoogleAiGeminiChatModel createGoogleGeminiChatModel(ConfigExtractor configExtractor,
-                                                                    LangchainLLMConfiguration configuration) {
+                                                                    ModelParameters parameters) {
     String geminiAiKey = configExtractor.extractValue("GEMINI_AI_KEY");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return GoogleAiGeminiChatModel.builder()
         .apiKey(geminiAiKey)
-        .modelName(configuration.getModelName())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .modelName(parameters.getModelName())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
-        .maxOutputTokens(configuration.getMaxTokens())
+        .maxOutputTokens(parameters.getMaxTokens())
         .logRequestsAndResponses(false)
         .build();
   }
 
 
   public static AnthropicChatModel createAnthropicChatModel(ConfigExtractor configExtractor,
-                                                            LangchainLLMConfiguration configuration) {
+                                                            ModelParameters parameters) {
     String anthropicApiKey = configExtractor.extractValue("ANTHROPIC_API_KEY");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return AnthropicChatModel.builder()
         //.apiKey(configuration.getLlmApiKey())
         .apiKey(anthropicApiKey)
-        .modelName(configuration.getModelName())
-        .maxTokens(configuration.getMaxTokens())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .modelName(parameters.getModelName())
+        .maxTokens(parameters.getMaxTokens())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
+        .cacheSystemMessages(parameters.isPromptCaching())
         .logRequests(true)
         .logResponses(true)
         .build();
@@ -135,18 +136,18 @@ public final class LangchainLLMInitializerUtil {
 
 
   public static AzureOpenAiChatModel createAzureOpenAiChatModel(ConfigExtractor configExtractor,
-                                                                LangchainLLMConfiguration configuration) {
+                                                                ModelParameters parameters) {
     String azureOpenaiKey = configExtractor.extractValue("AZURE_OPENAI_KEY");
     String azureOpenaiEndpoint = configExtractor.extractValue("AZURE_OPENAI_ENDPOINT");
     String azureOpenaiDeploymentName = configExtractor.extractValue("AZURE_OPENAI_DEPLOYMENT_NAME");
-    long durationInSec = configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout());
+    long durationInSec = parameters.getTimeoutInSeconds();
     return AzureOpenAiChatModel.builder()
         .apiKey(azureOpenaiKey)
         .endpoint(azureOpenaiEndpoint)
         .deploymentName(azureOpenaiDeploymentName)
-        .maxTokens(configuration.getMaxTokens())
-        .temperature(configuration.getTemperature())
-        .topP(configuration.getTopP())
+        .maxTokens(parameters.getMaxTokens())
+        .temperature(parameters.getTemperature())
+        .topP(parameters.getTopP())
         .timeout(ofSeconds(durationInSec))
         .logRequestsAndResponses(true)
         .build();
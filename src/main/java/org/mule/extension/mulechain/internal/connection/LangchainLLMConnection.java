@@ -0,0 +1,39 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.connection;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Connection of a configuration to the LLM provider APIs. It holds a pooled HTTP client, so calls made by the operations
+ * reuse warm connections instead of opening new ones. The client is thread-safe and shared by all the operations of the
+ * configuration.
+ */
+public class LangchainLLMConnection {
+
+  private final OkHttpClient httpClient;
+
+  private volatile boolean closed;
+
+  public LangchainLLMConnection(OkHttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  public OkHttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Stops the dispatcher threads and closes the pooled connections.
+   */
+  public void close() {
+    closed = true;
+    httpClient.dispatcher().executorService().shutdown();
+    httpClient.connectionPool().evictAll();
+  }
+}
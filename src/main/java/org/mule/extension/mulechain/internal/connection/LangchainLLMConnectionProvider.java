@@ -0,0 +1,125 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.connection;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.mule.runtime.api.connection.CachedConnectionProvider;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.api.connection.ConnectionValidationResult;
+import org.mule.runtime.extension.api.annotation.Alias;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides one pooled HTTP client per configuration. The connection is cached, every operation of the configuration
+ * shares it until it fails validation and Mule reconnects.
+ */
+@Alias("llm")
+@DisplayName("LLM Connection")
+public class LangchainLLMConnectionProvider implements CachedConnectionProvider<LangchainLLMConnection> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LangchainLLMConnectionProvider.class);
+
+  @Parameter
+  @Placement(order = 1, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "64")
+  @Summary("Max requests running at the same time, and per host")
+  private int maxConnections = 64;
+
+  @Parameter
+  @Placement(order = 2, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "10")
+  @Summary("Max idle connections kept open for reuse")
+  private int maxIdleConnections = 10;
+
+  @Parameter
+  @Placement(order = 3, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "5")
+  @Summary("How long an idle connection is kept open")
+  private long keepAlive = 5;
+
+  @Parameter
+  @Placement(order = 4, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "MINUTES")
+  private TimeUnit keepAliveUnit = TimeUnit.MINUTES;
+
+  @Parameter
+  @Placement(order = 5, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "10")
+  private long connectTimeout = 10;
+
+  @Parameter
+  @Placement(order = 6, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit connectTimeoutUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 7, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "60")
+  private long readTimeout = 60;
+
+  @Parameter
+  @Placement(order = 8, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "SECONDS")
+  private TimeUnit readTimeoutUnit = TimeUnit.SECONDS;
+
+  @Parameter
+  @Placement(order = 9, tab = Placement.ADVANCED_TAB)
+  @Optional(defaultValue = "true")
+  @DisplayName("HTTP/2")
+  @Summary("Negotiates HTTP/2 with the servers supporting it, HTTP/1.1 is used otherwise")
+  private boolean http2 = true;
+
+  @Override
+  public LangchainLLMConnection connect() throws ConnectionException {
+    try {
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(maxConnections);
+      dispatcher.setMaxRequestsPerHost(maxConnections);
+      OkHttpClient httpClient = new OkHttpClient.Builder()
+          .dispatcher(dispatcher)
+          .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive, keepAliveUnit))
+          .connectTimeout(connectTimeout, connectTimeoutUnit)
+          .readTimeout(readTimeout, readTimeoutUnit)
+          .writeTimeout(readTimeout, readTimeoutUnit)
+          .protocols(http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1))
+          .retryOnConnectionFailure(true)
+          .build();
+      LOGGER.debug("LLM connection created with {} max connections", maxConnections);
+      return new LangchainLLMConnection(httpClient);
+    } catch (RuntimeException e) {
+      throw new ConnectionException("Unable to create the LLM connection", e);
+    }
+  }
+
+  @Override
+  public void disconnect(LangchainLLMConnection connection) {
+    try {
+      connection.close();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Error while closing the LLM connection", e);
+    }
+  }
+
+  @Override
+  public ConnectionValidationResult validate(LangchainLLMConnection connection) {
+    if (connection.isClosed()) {
+      return ConnectionValidationResult.failure("The LLM connection is closed",
+                                                new ConnectionException("The LLM connection is closed"));
+    }
+    return ConnectionValidationResult.success();
+  }
+}
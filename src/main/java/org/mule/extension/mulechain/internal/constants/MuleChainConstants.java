@@ -17,6 +17,14 @@ public class MuleChainConstants {
   public static final String MEMORY_NAME = "memoryName";
   public static final String DB_FILE_PATH = "dbFilePath";
   public static final String MAX_MESSAGES = "maxMessages";
+  public static final String MEMORY_WINDOW_TYPE = "memoryWindowType";
+  public static final String MAX_TOKENS_IN_MEMORY = "maxTokensInMemory";
+  public static final String EVICTED_MESSAGES = "evictedMessages";
+  public static final String TOKENS_SENT = "tokensSent";
+  public static final String SUMMARIZE_EVICTED_MESSAGES = "summarizeEvictedMessages";
+  public static final String RETRIEVED_PAST_TURNS = "retrievedPastTurns";
+  public static final String MEMORY_COUNT = "memoryCount";
+  public static final String FILE_SIZE = "fileSize";
   public static final String TOOLS_USED = "toolsUsed";
   public static final String TOOL_EXECUTION_REQUESTS = "toolExecutionRequests";
   public static final String STATUS = "status";
@@ -43,6 +51,69 @@ public class MuleChainConstants {
   public static final String PAGES = "pages";
   public static final String SENTIMENT_SCORE = "sentimentScore";
   public static final String SENTIMENT_CATEGORY = "sentimentCategory";
+  public static final String SEMANTIC_SIMILARITY = "semanticSimilarity";
+  public static final String RESPONSE_CACHE = "responseCache";
+  public static final String SEMANTIC_CACHE = "semanticCache";
+  public static final String ENABLED = "enabled";
+  public static final String HITS = "hits";
+  public static final String MISSES = "misses";
+  public static final String VERIFICATIONS = "verifications";
+  public static final String FALSE_HITS = "falseHits";
+  public static final String SIZE = "size";
+  public static final String COALESCED = "coalesced";
+  public static final String COALESCING = "coalescing";
+  public static final String CALLS = "calls";
+  public static final String IN_FLIGHT = "inFlight";
+  public static final String RATE_LIMITERS = "rateLimiters";
+  public static final String CONCURRENCY_LIMIT = "concurrencyLimit";
+  public static final String QUEUED = "queued";
+  public static final String AVAILABLE_REQUESTS = "availableRequests";
+  public static final String AVAILABLE_TOKENS = "availableTokens";
+  public static final String ACQUIRED = "acquired";
+  public static final String REJECTED = "rejected";
+  public static final String THROTTLED = "throttled";
+  public static final String ATTEMPT = "attempt";
+  public static final String ATTEMPTS = "attempts";
+  public static final String HEDGED = "hedged";
+  public static final String TIER = "tier";
+  public static final String CONFIDENCE = "confidence";
+  public static final String FAST_ANSWERS = "fastAnswers";
+  public static final String ESCALATIONS = "escalations";
+  public static final String ROUTING = "routing";
+  public static final String TARGETS = "targets";
+  public static final String NAME = "name";
+  public static final String WEIGHT = "weight";
+  public static final String LATENCY_EWMA_MILLIS = "latencyEwmaMillis";
+  public static final String ERROR_RATE = "errorRate";
+  public static final String CIRCUIT_STATE = "circuitState";
+  public static final String CONSECUTIVE_FAILURES = "consecutiveFailures";
+  public static final String CIRCUIT_BREAKERS = "circuitBreakers";
+  public static final String STATE = "state";
+  public static final String OPENED = "opened";
+  public static final String ROUTE = "route";
+  public static final String ROUTE_SIMILARITY = "routeSimilarity";
+  public static final String ROUTING_NANOS = "routingNanos";
+  public static final String ROUTES = "routes";
+  public static final String LLM_TYPE = "llmType";
+  public static final String MODEL_NAME = "modelName";
+  public static final String EXAMPLES = "examples";
+  public static final String ROUTED = "routed";
+  public static final String MEAN_ROUTING_NANOS = "meanRoutingNanos";
+  public static final String CACHED_EMBEDDINGS = "cachedEmbeddings";
+  public static final String RESULTS = "results";
+  public static final String INDEX = "index";
+  public static final String TOKEN_USAGE = "tokenUsage";
+  public static final String ERROR = "error";
+  public static final String TYPE = "type";
+  public static final String MESSAGE = "message";
+  public static final String SUCCEEDED = "succeeded";
+  public static final String FAILED = "failed";
+  public static final String ID = "id";
+  public static final String CACHED_INPUT_COUNT = "cachedInputCount";
+  public static final String ESTIMATED_INPUT_TOKENS = "estimatedInputTokens";
+  public static final String TRUNCATED_TOKENS = "truncatedTokens";
+  public static final String RAG_ANSWER_CACHE = "ragAnswerCache";
+  public static final String INVALIDATIONS = "invalidations";
 
   public static class EmbeddingConstants {
 
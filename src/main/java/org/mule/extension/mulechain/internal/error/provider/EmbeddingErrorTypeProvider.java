@@ -12,10 +12,13 @@ import java.util.Set;
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableSet;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.AI_SERVICES_FAILURE;
+import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.CIRCUIT_OPEN;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.EMBEDDING_OPERATIONS_FAILURE;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.FILE_HANDLING_FAILURE;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.RAG_FAILURE;
+import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.RATE_LIMIT_EXCEEDED;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.TOOLS_OPERATION_FAILURE;
+import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.VALIDATION_FAILURE;
 
 public class EmbeddingErrorTypeProvider implements ErrorTypeProvider {
 
@@ -23,6 +26,7 @@ public class EmbeddingErrorTypeProvider implements ErrorTypeProvider {
   @Override
   public Set<ErrorTypeDefinition> getErrorTypes() {
     return unmodifiableSet(new HashSet<>(asList(EMBEDDING_OPERATIONS_FAILURE, AI_SERVICES_FAILURE, RAG_FAILURE,
-                                                FILE_HANDLING_FAILURE, TOOLS_OPERATION_FAILURE)));
+                                                FILE_HANDLING_FAILURE, TOOLS_OPERATION_FAILURE, RATE_LIMIT_EXCEEDED, CIRCUIT_OPEN,
+                                                VALIDATION_FAILURE)));
   }
 }
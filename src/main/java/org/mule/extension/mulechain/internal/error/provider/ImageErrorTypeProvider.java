@@ -11,10 +11,12 @@ import java.util.Set;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableSet;
+import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.CIRCUIT_OPEN;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.FILE_HANDLING_FAILURE;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.IMAGE_ANALYSIS_FAILURE;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.IMAGE_GENERATION_FAILURE;
 import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.IMAGE_PROCESSING_FAILURE;
+import static org.mule.extension.mulechain.internal.error.MuleChainErrorType.RATE_LIMIT_EXCEEDED;
 
 public class ImageErrorTypeProvider implements ErrorTypeProvider {
 
@@ -22,6 +24,6 @@ public class ImageErrorTypeProvider implements ErrorTypeProvider {
   @Override
   public Set<ErrorTypeDefinition> getErrorTypes() {
     return unmodifiableSet(new HashSet<>(asList(IMAGE_ANALYSIS_FAILURE, IMAGE_GENERATION_FAILURE, IMAGE_PROCESSING_FAILURE,
-                                                FILE_HANDLING_FAILURE)));
+                                                FILE_HANDLING_FAILURE, RATE_LIMIT_EXCEEDED, CIRCUIT_OPEN)));
   }
 }
@@ -0,0 +1,122 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs a batch of blocking calls, a bounded number of them at a time. The bound is the parallelism of the batch, lowered
+ * to the current concurrency limit of the rate limiter of the model, so the calls of a large batch do not pile up in the
+ * queue of the rate limiter. A failed call fails its item only.
+ */
+public class BulkExecutor {
+
+  private final LLMCallExecutor executor;
+  private final int parallelism;
+  private final IntSupplier concurrencyLimit;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition itemCompleted = lock.newCondition();
+
+  /**
+   * @param executor         runs the calls, within its own concurrency bound
+   * @param parallelism      max calls running at the same time
+   * @param concurrencyLimit current concurrency limit of the provider, read before each call is started
+   */
+  public BulkExecutor(LLMCallExecutor executor, int parallelism, IntSupplier concurrencyLimit) {
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+    this.concurrencyLimit = concurrencyLimit;
+  }
+
+  /**
+   * @param calls calls of the batch
+   * @return the items, in the order the calls completed
+   * @throws InterruptedException when the caller is interrupted, the calls already started keep running
+   */
+  public <T> List<Item<T>> execute(List<Supplier<T>> calls) throws InterruptedException {
+    List<Item<T>> completed = new ArrayList<>(calls.size());
+    int[] inFlight = new int[1];
+    for (int i = 0; i < calls.size(); i++) {
+      lock.lockInterruptibly();
+      try {
+        while (inFlight[0] >= currentLimit()) {
+          itemCompleted.await();
+        }
+        inFlight[0]++;
+      } finally {
+        lock.unlock();
+      }
+      int index = i;
+      executor.execute(calls.get(i), (value, failure) -> complete(completed, new Item<>(index, value, failure), inFlight));
+    }
+    lock.lockInterruptibly();
+    try {
+      while (completed.size() < calls.size()) {
+        itemCompleted.await();
+      }
+      return completed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private <T> void complete(List<Item<T>> completed, Item<T> item, int[] inFlight) {
+    lock.lock();
+    try {
+      completed.add(item);
+      inFlight[0]--;
+      itemCompleted.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int currentLimit() {
+    return Math.max(1, Math.min(parallelism, concurrencyLimit.getAsInt()));
+  }
+
+  /**
+   * Outcome of one call of the batch.
+   */
+  public static final class Item<T> {
+
+    private final int index;
+    private final T value;
+    private final Throwable failure;
+
+    private Item(int index, T value, Throwable failure) {
+      this.index = index;
+      this.value = value;
+      this.failure = failure;
+    }
+
+    /**
+     * @return position of the call in the batch
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    /**
+     * @return the error of the call, null when it succeeded
+     */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    public boolean isSuccess() {
+      return failure == null;
+    }
+  }
+}
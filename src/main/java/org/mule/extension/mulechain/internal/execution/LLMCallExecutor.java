@@ -0,0 +1,211 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.execution;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking LLM calls of the async operations outside of the Mule worker threads. The operation returns as soon
+ * as the call is queued and completes its callback from the executor thread, so the flow thread is released for the
+ * whole model latency.
+ * <p>
+ * On Java 21+ runtimes the calls can run on virtual threads instead of a fixed pool, a semaphore then bounds how many
+ * of them call the provider at the same time. Older runtimes fall back to the pool.
+ * <p>
+ * Either way a bounded number of calls wait for their turn, further calls are rejected with RATE_LIMIT_EXCEEDED instead
+ * of piling up while the provider is slow.
+ */
+public class LLMCallExecutor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LLMCallExecutor.class);
+
+  private final ExecutorService executor;
+  private final Semaphore permits;
+  private final Semaphore admissions;
+
+  private LLMCallExecutor(ExecutorService executor, Semaphore permits, Semaphore admissions) {
+    this.executor = executor;
+    this.permits = permits;
+    this.admissions = admissions;
+  }
+
+  /**
+   * @param maxConcurrency max calls running at the same time, the others wait
+   * @param maxQueued      max calls waiting, the others are rejected
+   * @param virtualThreads runs the calls on virtual threads when the runtime supports them
+   */
+  public static LLMCallExecutor create(int maxConcurrency, int maxQueued, boolean virtualThreads) {
+    if (virtualThreads) {
+      ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+      if (virtualThreadExecutor != null) {
+        LOGGER.info("LLM calls run on virtual threads, {} at a time", maxConcurrency);
+        // a virtual thread is started per call, the calls running or waiting for a permit are bounded instead of a queue
+        return new LLMCallExecutor(virtualThreadExecutor, new Semaphore(maxConcurrency),
+                                   new Semaphore(maxConcurrency + maxQueued));
+      }
+      LOGGER.info("Virtual threads require Java 21 or newer, LLM calls run on a pool of {} threads", maxConcurrency);
+    }
+    return new LLMCallExecutor(newPlatformThreadPool(maxConcurrency, maxQueued), null, null);
+  }
+
+  public boolean isVirtualThreads() {
+    return permits != null;
+  }
+
+  /**
+   * Runs the call and completes the callback with its result or error.
+   *
+   * @param call     blocking call building the operation result
+   * @param callback callback of the async operation
+   */
+  public <A> void submit(Supplier<Result<InputStream, A>> call, CompletionCallback<InputStream, A> callback) {
+    try {
+      schedule(() -> {
+        Result<InputStream, A> result;
+        try {
+          result = callWithPermit(call);
+        } catch (Throwable t) {
+          callback.error(t);
+          return;
+        }
+        callback.success(result);
+      });
+    } catch (RejectedExecutionException e) {
+      callback.error(rejection(e));
+    }
+  }
+
+  /**
+   * Runs the call like the calls of the async operations, within the same concurrency bound, and completes it with its
+   * result or error.
+   *
+   * @param call       blocking call
+   * @param completion receives the result of the call, or its error, always called once
+   */
+  public <T> void execute(Supplier<T> call, BiConsumer<T, Throwable> completion) {
+    try {
+      schedule(() -> {
+        T result;
+        try {
+          result = callWithPermit(call);
+        } catch (Throwable t) {
+          completion.accept(null, t);
+          return;
+        }
+        completion.accept(result, null);
+      });
+    } catch (RejectedExecutionException e) {
+      completion.accept(null, rejection(e));
+    }
+  }
+
+  private void schedule(Runnable task) {
+    if (admissions == null) {
+      executor.execute(task);
+      return;
+    }
+    if (!admissions.tryAcquire()) {
+      throw new RejectedExecutionException("Too many LLM calls waiting");
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          admissions.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      admissions.release();
+      throw e;
+    }
+  }
+
+  private ModuleException rejection(RejectedExecutionException e) {
+    if (executor.isShutdown()) {
+      return new ModuleException("The LLM call could not be scheduled", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+    return new ModuleException("Too many LLM calls are waiting for the provider, the call is rejected",
+                               MuleChainErrorType.RATE_LIMIT_EXCEEDED, e);
+  }
+
+  private <T> T callWithPermit(Supplier<T> call) throws InterruptedException {
+    if (permits == null) {
+      return call.get();
+    }
+    // parking a virtual thread is cheap, waiting calls do not hold a carrier thread
+    permits.acquire();
+    try {
+      return call.get();
+    } finally {
+      permits.release();
+    }
+  }
+
+  private static ExecutorService newPlatformThreadPool(int maxConcurrency, int maxQueued) {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                                                     queue(maxQueued), runnable -> {
+                                                       Thread thread = new Thread(runnable, "mulechain-llm-call-"
+                                                           + threadCount.incrementAndGet());
+                                                       thread.setDaemon(true);
+                                                       return thread;
+                                                     });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  private static BlockingQueue<Runnable> queue(int maxQueued) {
+    // a queue needs a capacity, a hand off rejects any call finding every thread busy
+    return maxQueued > 0 ? new ArrayBlockingQueue<>(maxQueued) : new SynchronousQueue<>();
+  }
+
+  /**
+   * The connector is compiled for Java 8, so the Java 21 factory is looked up by reflection.
+   *
+   * @return a virtual thread per task executor, null when the runtime has no virtual threads
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.debug("Virtual threads are not available", e);
+      return null;
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+        LOGGER.warn("LLM calls still running after 30 seconds, interrupting them");
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import dev.langchain4j.model.output.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * Reads the input tokens served from the prompt cache of the provider. The token usages of the providers reporting them
+ * are subclasses of {@link TokenUsage}: Anthropic reports the cache reads and OpenAI the cached tokens of the input
+ * details. The accessors are looked up once per token usage class, usages without them count no cached tokens.
+ */
+public final class CachedTokenCounter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachedTokenCounter.class);
+
+  private static final ClassValue<Method[]> ACCESSORS = new ClassValue<Method[]>() {
+
+    @Override
+    protected Method[] computeValue(Class<?> type) {
+      Method cacheRead = find(type, "cacheReadInputTokens");
+      if (cacheRead != null) {
+        return new Method[] {cacheRead};
+      }
+      Method inputDetails = find(type, "inputTokensDetails");
+      Method cachedTokens = inputDetails != null ? find(inputDetails.getReturnType(), "cachedTokens") : null;
+      return cachedTokens != null ? new Method[] {inputDetails, cachedTokens} : new Method[0];
+    }
+  };
+
+  private CachedTokenCounter() {}
+
+  /**
+   * @return the cached input tokens of the usage, 0 when the provider does not report them
+   */
+  public static int cachedInputTokens(TokenUsage tokenUsage) {
+    if (tokenUsage == null || tokenUsage.getClass() == TokenUsage.class) {
+      return 0;
+    }
+    Object value = tokenUsage;
+    try {
+      for (Method accessor : ACCESSORS.get(tokenUsage.getClass())) {
+        value = value != null ? accessor.invoke(value) : null;
+      }
+    } catch (ReflectiveOperationException e) {
+      LOGGER.debug("Unable to read the cached tokens of {}", tokenUsage.getClass().getName(), e);
+      return 0;
+    }
+    return value instanceof Integer ? (Integer) value : 0;
+  }
+
+  private static Method find(Class<?> type, String name) {
+    try {
+      return type.getMethod(name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
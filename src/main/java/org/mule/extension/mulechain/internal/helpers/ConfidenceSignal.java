@@ -0,0 +1,43 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.Arrays;
+
+/**
+ * How the confidence of the answer of the fast model of a cascade is evaluated.
+ */
+public enum ConfidenceSignal {
+
+  /**
+   * The fast model is asked to end its answer with its confidence between 0 and 1
+   */
+  SELF_REPORTED("selfReported"),
+  /**
+   * Answers parsing as a JSON object or array are confident, the others are escalated
+   */
+  JSON_VALIDITY("jsonValidity");
+
+  private final String value;
+
+  ConfidenceSignal(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static ConfidenceSignal fromValue(String value) {
+    return Arrays.stream(ConfidenceSignal.values())
+        .filter(confidenceSignal -> confidenceSignal.value.equals(value))
+        .findFirst()
+        .orElseThrow(() -> new ModuleException("Unsupported Confidence Signal: " + value,
+                                               MuleChainErrorType.AI_SERVICES_FAILURE));
+  }
+
+}
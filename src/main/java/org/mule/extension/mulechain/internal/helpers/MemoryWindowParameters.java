@@ -0,0 +1,81 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.runtime.api.meta.ExpressionSupport;
+import org.mule.runtime.extension.api.annotation.Expression;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.values.OfValues;
+
+public class MemoryWindowParameters {
+
+  @Parameter
+  @Expression(ExpressionSupport.SUPPORTED)
+  @OfValues(MemoryWindowTypeProvider.class)
+  @Optional(defaultValue = "messages")
+  @Summary("Bounds the memory sent to the LLM either by message count (maxMessages) or by token budget (maxTokensInMemory)")
+  private String memoryWindowType;
+
+  @Parameter
+  @Expression(ExpressionSupport.SUPPORTED)
+  @Optional(defaultValue = "2000")
+  @DisplayName("Max tokens in memory")
+  @Summary("Token budget of the most recent messages kept in memory, used when the memory window type is 'tokens'")
+  private int maxTokensInMemory;
+
+  @Parameter
+  @Expression(ExpressionSupport.SUPPORTED)
+  @Optional(defaultValue = "false")
+  @Summary("Summarizes evicted messages in the background into a running summary sent along with the memory")
+  private boolean summarizeEvictedMessages;
+
+  @Parameter
+  @Expression(ExpressionSupport.SUPPORTED)
+  @Optional(defaultValue = "false")
+  @Summary("Indexes evicted messages with the local embedding model and sends the past turns relevant to the prompt along "
+      + "with the memory")
+  private boolean longTermMemory;
+
+  @Parameter
+  @Expression(ExpressionSupport.SUPPORTED)
+  @Optional(defaultValue = "3")
+  @DisplayName("Long term max results")
+  @Summary("Max past turns retrieved from the long term memory")
+  private int longTermMaxResults;
+
+  @Parameter
+  @Expression(ExpressionSupport.SUPPORTED)
+  @Optional(defaultValue = "0.7")
+  @DisplayName("Long term min score")
+  @Summary("Min relevance score of the past turns retrieved from the long term memory")
+  private double longTermMinScore;
+
+  public String getMemoryWindowType() {
+    return memoryWindowType;
+  }
+
+  public int getMaxTokensInMemory() {
+    return maxTokensInMemory;
+  }
+
+  public boolean isSummarizeEvictedMessages() {
+    return summarizeEvictedMessages;
+  }
+
+  public boolean isLongTermMemory() {
+    return longTermMemory;
+  }
+
+  public int getLongTermMaxResults() {
+    return longTermMaxResults;
+  }
+
+  public double getLongTermMinScore() {
+    return longTermMinScore;
+  }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.Arrays;
+
+public enum MemoryWindowType {
+
+  MESSAGES("messages"), TOKENS("tokens");
+
+  private final String value;
+
+  MemoryWindowType(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static MemoryWindowType fromValue(String value) {
+    return Arrays.stream(MemoryWindowType.values())
+        .filter(memoryWindowType -> memoryWindowType.value.equals(value))
+        .findFirst()
+        .orElseThrow(() -> new ModuleException("Unsupported Memory Window Type: " + value,
+                                               MuleChainErrorType.AI_SERVICES_FAILURE));
+  }
+
+}
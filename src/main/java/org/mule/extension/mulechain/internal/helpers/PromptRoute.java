@@ -0,0 +1,83 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.extension.mulechain.internal.llm.LangchainLLMTypeProvider;
+import org.mule.runtime.extension.api.annotation.param.NullSafe;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.values.OfValues;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Model the prompts similar to the examples of the route are sent to. Its credentials are read like the ones of the
+ * configuration, from the same environment or configuration file.
+ */
+public class PromptRoute {
+
+  @Parameter
+  @Summary("Name of the route, reported in the attributes of the routed calls")
+  private String label;
+
+  @Parameter
+  @DisplayName("LLM type")
+  @OfValues(LangchainLLMTypeProvider.class)
+  private String llmType;
+
+  @Parameter
+  private String modelName;
+
+  @Parameter
+  @Optional
+  @NullSafe
+  @Summary("Typical prompts of the route")
+  private List<String> examples;
+
+  public PromptRoute() {}
+
+  public PromptRoute(String label, String llmType, String modelName, List<String> examples) {
+    this.label = label;
+    this.llmType = llmType;
+    this.modelName = modelName;
+    this.examples = examples;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public String getLlmType() {
+    return llmType;
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  public List<String> getExamples() {
+    return examples;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PromptRoute)) {
+      return false;
+    }
+    PromptRoute that = (PromptRoute) o;
+    return Objects.equals(label, that.label) && Objects.equals(llmType, that.llmType)
+        && Objects.equals(modelName, that.modelName) && Objects.equals(examples, that.examples);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(label, llmType, modelName, examples);
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.Arrays;
+
+/**
+ * How a prompt is classified against the examples of the prompt routes.
+ */
+public enum PromptRoutingStrategy {
+
+  /**
+   * The route whose examples have the nearest mean embedding wins
+   */
+  NEAREST_CENTROID("nearestCentroid"),
+  /**
+   * The route with the most examples among the k nearest ones wins, ties go to the nearest example
+   */
+  K_NEAREST_NEIGHBOURS("kNearestNeighbours");
+
+  private final String value;
+
+  PromptRoutingStrategy(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static PromptRoutingStrategy fromValue(String value) {
+    return Arrays.stream(PromptRoutingStrategy.values())
+        .filter(strategy -> strategy.value.equals(value))
+        .findFirst()
+        .orElseThrow(() -> new ModuleException("Unsupported Prompt Routing Strategy: " + value,
+                                               MuleChainErrorType.AI_SERVICES_FAILURE));
+  }
+
+}
@@ -23,10 +23,7 @@ public final class ResponseHelper {
                                                                              dev.langchain4j.service.Result<?> result,
                                                                              Map<String, String> responseAttributes) {
 
-    TokenUsage tokenUsage = result.tokenUsage() != null ? new TokenUsage(result.tokenUsage().inputTokenCount(),
-                                                                         result.tokenUsage().outputTokenCount(),
-                                                                         result.tokenUsage().totalTokenCount())
-        : null;
+    TokenUsage tokenUsage = toTokenUsage(result.tokenUsage());
 
     return createLLMResponse(response, tokenUsage, responseAttributes);
   }
@@ -34,19 +31,30 @@ public final class ResponseHelper {
   public static Result<InputStream, LLMResponseAttributes> createLLMResponse(String response,
                                                                              Response<?> result,
                                                                              Map<String, String> responseAttributes) {
-    TokenUsage tokenUsage = result.tokenUsage() != null ? new TokenUsage(result.tokenUsage().inputTokenCount(),
-                                                                         result.tokenUsage().outputTokenCount(),
-                                                                         result.tokenUsage().totalTokenCount())
-        : null;
+    TokenUsage tokenUsage = toTokenUsage(result.tokenUsage());
     return createLLMResponse(response, tokenUsage, responseAttributes);
   }
 
+  private static TokenUsage toTokenUsage(dev.langchain4j.model.output.TokenUsage tokenUsage) {
+    return tokenUsage != null ? new TokenUsage(tokenUsage.inputTokenCount(), tokenUsage.outputTokenCount(),
+                                               tokenUsage.totalTokenCount(),
+                                               CachedTokenCounter.cachedInputTokens(tokenUsage))
+        : null;
+  }
+
   public static Result<InputStream, LLMResponseAttributes> createLLMResponse(String response,
                                                                              TokenUsage tokenUsage,
                                                                              Map<String, String> responseAttributes) {
+    return createLLMResponse(response, tokenUsage, responseAttributes, false);
+  }
+
+  public static Result<InputStream, LLMResponseAttributes> createLLMResponse(String response,
+                                                                             TokenUsage tokenUsage,
+                                                                             Map<String, String> responseAttributes,
+                                                                             boolean cacheHit) {
 
     return Result.<InputStream, LLMResponseAttributes>builder()
-        .attributes(new LLMResponseAttributes(tokenUsage, (HashMap<String, String>) responseAttributes))
+        .attributes(new LLMResponseAttributes(tokenUsage, (HashMap<String, String>) responseAttributes, cacheHit))
         .attributesMediaType(org.mule.runtime.api.metadata.MediaType.APPLICATION_JAVA)
         .output(toInputStream(response, StandardCharsets.UTF_8))
         .mediaType(org.mule.runtime.api.metadata.MediaType.APPLICATION_JSON)
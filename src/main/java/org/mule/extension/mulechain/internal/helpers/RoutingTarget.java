@@ -0,0 +1,63 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.extension.mulechain.internal.llm.LangchainLLMTypeProvider;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.values.OfValues;
+
+import java.util.Objects;
+
+/**
+ * Provider model the calls of a configuration may be routed to, in addition to the model of the configuration. Its
+ * credentials are read like the ones of the configuration, from the same environment or configuration file.
+ */
+public class RoutingTarget {
+
+  @Parameter
+  @DisplayName("LLM type")
+  @OfValues(LangchainLLMTypeProvider.class)
+  private String llmType;
+
+  @Parameter
+  private String modelName;
+
+  @Parameter
+  @Optional(defaultValue = "1")
+  @Summary("Share of the traffic relative to the other targets, before their latencies and error rates are known")
+  private double weight = 1;
+
+  public String getLlmType() {
+    return llmType;
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  public double getWeight() {
+    return weight;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RoutingTarget)) {
+      return false;
+    }
+    RoutingTarget that = (RoutingTarget) o;
+    return Double.compare(weight, that.weight) == 0 && Objects.equals(llmType, that.llmType)
+        && Objects.equals(modelName, that.modelName);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(llmType, modelName, weight);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
+import org.mule.extension.mulechain.internal.llm.type.LangchainLLMType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides token estimators per LLM type. Tokenizers load their encodings on creation, so they are built once and shared.
+ */
+public final class TokenizerHelper {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TokenizerHelper.class);
+
+  private static final Map<String, Tokenizer> TOKENIZERS = new ConcurrentHashMap<>();
+
+  private TokenizerHelper() {}
+
+  public static Tokenizer getTokenizer(LangchainLLMConfiguration configuration) {
+    return getTokenizer(configuration.getLlmType(), configuration.getModelName());
+  }
+
+  public static Tokenizer getTokenizer(String llmType, String modelName) {
+    if (!isOpenAiCompatible(llmType) || modelName == null) {
+      return TOKENIZERS.computeIfAbsent(llmType, key -> new OpenAiTokenizer());
+    }
+    return TOKENIZERS.computeIfAbsent(llmType + ":" + modelName, key -> createOpenAiTokenizer(modelName));
+  }
+
+  private static boolean isOpenAiCompatible(String llmType) {
+    return LangchainLLMType.OPENAI.getValue().equals(llmType) || LangchainLLMType.AZURE_OPENAI.getValue().equals(llmType);
+  }
+
+  private static Tokenizer createOpenAiTokenizer(String modelName) {
+    try {
+      return new OpenAiTokenizer(modelName);
+    } catch (RuntimeException e) {
+      LOGGER.debug("No encoding known for model {}, falling back to the default tokenizer", modelName);
+      return new OpenAiTokenizer();
+    }
+  }
+}
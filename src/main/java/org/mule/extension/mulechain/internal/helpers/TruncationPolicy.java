@@ -0,0 +1,51 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.Arrays;
+
+/**
+ * How a prompt exceeding the max input tokens is cut to fit them.
+ */
+public enum TruncationPolicy {
+
+  /**
+   * The beginning is kept, the end is cut
+   */
+  HEAD("head"),
+  /**
+   * The end is kept, the beginning is cut
+   */
+  TAIL("tail"),
+  /**
+   * The beginning and the end are kept, the middle is cut
+   */
+  MIDDLE_OUT("middleOut"),
+  /**
+   * The retrieved segments with the lowest scores are dropped whole, other texts are cut like with {@link #HEAD}
+   */
+  DROP_LOWEST_SCORING("dropLowestScoring");
+
+  private final String value;
+
+  TruncationPolicy(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static TruncationPolicy fromValue(String value) {
+    return Arrays.stream(TruncationPolicy.values())
+        .filter(policy -> policy.value.equals(value))
+        .findFirst()
+        .orElseThrow(() -> new ModuleException("Unsupported Truncation Policy: " + value,
+                                               MuleChainErrorType.AI_SERVICES_FAILURE));
+  }
+
+}
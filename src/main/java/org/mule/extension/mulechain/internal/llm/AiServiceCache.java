@@ -0,0 +1,152 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.service.AiServices;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the AI Services proxies of a configuration, so the reflection, proxy generation and annotation scanning done by
+ * {@link AiServices} happen once per model, interface and variant instead of on every operation call. Only proxies
+ * without chat memory may be cached, they are stateless and safe to share between threads.
+ */
+public class AiServiceCache {
+
+  private static final int MAX_SERVICES = 64;
+
+  private final Map<ServiceKey, Object> services = new LinkedHashMap<ServiceKey, Object>(16, 0.75f, true) {
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ServiceKey, Object> eldest) {
+      return size() > MAX_SERVICES;
+    }
+  };
+
+  /**
+   * @return the proxy of the interface backed by the model only
+   */
+  public <T> T get(Class<T> serviceInterface, ChatLanguageModel model) {
+    return get(serviceInterface, model, null, () -> AiServices.create(serviceInterface, model));
+  }
+
+  /**
+   * @param serviceInterface interface implemented by the proxy
+   * @param model            model backing the proxy
+   * @param variant          identifies what else the proxy is built with (retriever, tools...), compared by equality
+   * @param factory          builds the proxy when it is not cached yet
+   * @return the cached or newly built proxy
+   */
+  public <T> T get(Class<T> serviceInterface, ChatLanguageModel model, Object variant, Supplier<T> factory) {
+    ServiceKey key = new ServiceKey(serviceInterface, model, variant);
+    synchronized (services) {
+      Object service = services.get(key);
+      if (service != null) {
+        return serviceInterface.cast(service);
+      }
+    }
+    // built outside of the lock, concurrent misses may build twice but the first one wins
+    T service = factory.get();
+    synchronized (services) {
+      Object existing = services.putIfAbsent(key, service);
+      return existing != null ? serviceInterface.cast(existing) : service;
+    }
+  }
+
+  /**
+   * Same as {@link #get(Class, ChatLanguageModel, Object, Supplier)}, for proxies built on a resource changing over time,
+   * such as an embedding store file: the proxy built on another version of the resource is replaced, not kept along.
+   *
+   * @param version version of the resource the factory builds the proxy on, compared by equality
+   */
+  public <T> T get(Class<T> serviceInterface, ChatLanguageModel model, Object variant, Object version, Supplier<T> factory) {
+    ServiceKey key = new ServiceKey(serviceInterface, model, variant);
+    synchronized (services) {
+      Object service = services.get(key);
+      if (service instanceof Versioned && Objects.equals(((Versioned) service).version, version)) {
+        return serviceInterface.cast(((Versioned) service).service);
+      }
+    }
+    T service = factory.get();
+    synchronized (services) {
+      Object existing = services.get(key);
+      if (existing instanceof Versioned && Objects.equals(((Versioned) existing).version, version)) {
+        return serviceInterface.cast(((Versioned) existing).service);
+      }
+      services.put(key, new Versioned(version, service));
+      return service;
+    }
+  }
+
+  /**
+   * @return a variant compared by identity, for objects whose equality is expensive or not meaningful (embedding stores)
+   */
+  public static Object identityOf(Object object) {
+    return new Identity(object);
+  }
+
+  private static final class ServiceKey {
+
+    private final Class<?> serviceInterface;
+    private final ChatLanguageModel model;
+    private final Object variant;
+
+    private ServiceKey(Class<?> serviceInterface, ChatLanguageModel model, Object variant) {
+      this.serviceInterface = serviceInterface;
+      this.model = model;
+      this.variant = variant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ServiceKey)) {
+        return false;
+      }
+      ServiceKey that = (ServiceKey) o;
+      return serviceInterface == that.serviceInterface && model == that.model && Objects.equals(variant, that.variant);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(serviceInterface, System.identityHashCode(model), variant);
+    }
+  }
+
+  private static final class Versioned {
+
+    private final Object version;
+    private final Object service;
+
+    private Versioned(Object version, Object service) {
+      this.version = version;
+      this.service = service;
+    }
+  }
+
+  private static final class Identity {
+
+    private final Object object;
+
+    private Identity(Object object) {
+      this.object = object;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Identity && ((Identity) o).object == object;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object);
+    }
+  }
+}
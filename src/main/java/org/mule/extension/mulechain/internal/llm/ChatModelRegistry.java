@@ -0,0 +1,112 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.mule.extension.mulechain.internal.llm.config.ConfigExtractor;
+import org.mule.extension.mulechain.internal.llm.type.LangchainLLMType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the chat models of a configuration. Models are created lazily with the factory of their {@link LangchainLLMType}
+ * and kept per provider, credentials source, model name and generation parameters, so operations selecting a model name
+ * per request, and the routing and hedging targets, reuse the model and its HTTP client once it has been created.
+ * <p>
+ * The registry belongs to its configuration and is cleared when the configuration is disposed, models are not shared
+ * between configurations. The least recently used models are dropped when the registry is full.
+ */
+public class ChatModelRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChatModelRegistry.class);
+
+  static final int MAX_MODELS = 128;
+
+  private final Map<ModelKey, ChatLanguageModel> models = new LinkedHashMap<ModelKey, ChatLanguageModel>(16, 0.75f, true) {
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ModelKey, ChatLanguageModel> eldest) {
+      if (size() > MAX_MODELS) {
+        LOGGER.debug("Dropping least recently used model {}", eldest.getKey().parameters);
+        return true;
+      }
+      return false;
+    }
+  };
+
+  /**
+   * @param llmType         provider of the model
+   * @param configType      where the credentials are read from
+   * @param filePath        file the credentials are read from, when configType is a file
+   * @param configExtractor reads the credentials, only used when the model is created
+   * @param parameters      model name and generation parameters
+   * @return the model kept by the registry
+   */
+  public ChatLanguageModel getModel(LangchainLLMType llmType, String configType, String filePath,
+                                    ConfigExtractor configExtractor, ModelParameters parameters) {
+    ModelKey key = new ModelKey(llmType, configType, filePath, parameters);
+    synchronized (models) {
+      ChatLanguageModel model = models.get(key);
+      if (model != null) {
+        return model;
+      }
+    }
+    // created outside of the lock, concurrent misses may create twice but the first one wins
+    LOGGER.debug("Creating Model of LLMType: {} with {}", llmType, parameters);
+    ChatLanguageModel model = llmType.getConfigBiFunction().apply(configExtractor, parameters);
+    synchronized (models) {
+      ChatLanguageModel existing = models.putIfAbsent(key, model);
+      return existing != null ? existing : model;
+    }
+  }
+
+  public int size() {
+    synchronized (models) {
+      return models.size();
+    }
+  }
+
+  public void clear() {
+    synchronized (models) {
+      models.clear();
+    }
+  }
+
+  private static final class ModelKey {
+
+    private final LangchainLLMType llmType;
+    private final String configType;
+    private final String filePath;
+    private final ModelParameters parameters;
+
+    private ModelKey(LangchainLLMType llmType, String configType, String filePath, ModelParameters parameters) {
+      this.llmType = llmType;
+      this.configType = configType;
+      this.filePath = filePath;
+      this.parameters = parameters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ModelKey)) {
+        return false;
+      }
+      ModelKey that = (ModelKey) o;
+      return llmType == that.llmType && Objects.equals(configType, that.configType) && Objects.equals(filePath, that.filePath)
+          && parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(llmType, configType, filePath, parameters);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retrieves the context of a RAG prompt within a budget: the most relevant segments above the min score, without the
+ * near duplicates of a more relevant segment, as long as their tokens fit the max context tokens. More candidates than
+ * results are searched, so the duplicates removed leave room for other segments. The context then goes through the
+ * {@link TokenBudget} of the configuration, so the whole prompt fits the max input tokens.
+ */
+public class ContextPlanner implements ContentRetriever {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ContextPlanner.class);
+
+  /**
+   * Candidates searched per result
+   */
+  static final int CANDIDATES_PER_RESULT = 3;
+
+  private final EmbeddingStore<TextSegment> store;
+  private final EmbeddingModel embeddingModel;
+  private final TokenBudget tokenBudget;
+  private final int maxResults;
+  private final double minScore;
+  private final int maxContextTokens;
+  private final double duplicateSimilarity;
+
+  /**
+   * @param store               store searched
+   * @param embeddingModel      model the store was embedded with
+   * @param tokenBudget         estimates the tokens of the segments and fits the prompt to the max input tokens
+   * @param maxResults          max segments injected
+   * @param minScore            min relevance score of the injected segments
+   * @param maxContextTokens    max estimated tokens of the injected segments, 0 for no limit
+   * @param duplicateSimilarity cosine similarity above which a segment duplicates a more relevant one, 1 keeps them all
+   */
+  public ContextPlanner(EmbeddingStore<TextSegment> store, EmbeddingModel embeddingModel, TokenBudget tokenBudget,
+                        int maxResults, double minScore, int maxContextTokens, double duplicateSimilarity) {
+    this.store = store;
+    this.embeddingModel = embeddingModel;
+    this.tokenBudget = tokenBudget;
+    this.maxResults = Math.max(1, maxResults);
+    this.minScore = minScore;
+    this.maxContextTokens = maxContextTokens;
+    this.duplicateSimilarity = duplicateSimilarity;
+  }
+
+  @Override
+  public List<Content> retrieve(Query query) {
+    Embedding queryEmbedding = embeddingModel.embed(query.text()).content();
+    List<EmbeddingMatch<TextSegment>> candidates = store.search(EmbeddingSearchRequest.builder()
+        .queryEmbedding(queryEmbedding)
+        .maxResults(maxResults * CANDIDATES_PER_RESULT)
+        .minScore(minScore)
+        .build()).matches();
+    return tokenBudget.fitContext(query.text(), plan(candidates));
+  }
+
+  /**
+   * @param candidates matches of the query, most relevant first
+   * @return the contents injected in the prompt, most relevant first
+   */
+  List<Content> plan(List<EmbeddingMatch<TextSegment>> candidates) {
+    List<Content> contents = new ArrayList<>(maxResults);
+    List<Embedding> keptEmbeddings = new ArrayList<>(maxResults);
+    int contextTokens = 0;
+    int duplicates = 0;
+    for (EmbeddingMatch<TextSegment> candidate : candidates) {
+      if (contents.size() == maxResults) {
+        break;
+      }
+      if (isDuplicate(candidate.embedding(), keptEmbeddings)) {
+        duplicates++;
+        continue;
+      }
+      int tokens = tokenBudget.estimate(candidate.embedded().text());
+      if (maxContextTokens > 0 && contextTokens + tokens > maxContextTokens) {
+        // a less relevant but shorter segment may still fit
+        continue;
+      }
+      contextTokens += tokens;
+      keptEmbeddings.add(candidate.embedding());
+      contents.add(Content.from(candidate.embedded()));
+    }
+    LOGGER.debug("Context of {} segments and {} tokens planned from {} candidates, {} near duplicates removed",
+                 contents.size(), contextTokens, candidates.size(), duplicates);
+    return contents;
+  }
+
+  private boolean isDuplicate(Embedding embedding, List<Embedding> keptEmbeddings) {
+    if (embedding == null || duplicateSimilarity >= 1) {
+      return false;
+    }
+    for (Embedding kept : keptEmbeddings) {
+      if (kept != null && CosineSimilarity.between(embedding, kept) > duplicateSimilarity) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.Result;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mule.extension.mulechain.internal.helpers.ConfidenceSignal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers with a fast model first and escalates to the strong model only when the fast answer is not confident enough.
+ * Escalated answers cost the tokens of both calls.
+ */
+public class ModelCascade {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ModelCascade.class);
+
+  public static final String FAST_TIER = "fast";
+  public static final String STRONG_TIER = "strong";
+
+  private static final String SELF_REPORTED_INSTRUCTION = System.lineSeparator() + System.lineSeparator()
+      + "After your answer, add a last line with only 'Confidence: ' followed by how confident you are that your answer is "
+      + "correct and complete, as a number between 0 and 1.";
+
+  private static final Pattern CONFIDENCE_LINE =
+      Pattern.compile("(?im)^[ \\t*_]*confidence[ \\t*_]*[:=][ \\t*_]*([01](?:\\.\\d+)?)[ \\t*_.]*$");
+
+  private static final Pattern JSON_FENCE = Pattern.compile("(?s)^\\s*```(?:json)?\\s*(.*?)\\s*```\\s*$");
+
+  private final ConfidenceSignal confidenceSignal;
+  private final double confidenceThreshold;
+
+  private final AtomicLong fastAnswers = new AtomicLong();
+  private final AtomicLong escalations = new AtomicLong();
+
+  /**
+   * @param confidenceSignal    how the confidence of the fast answer is evaluated
+   * @param confidenceThreshold min confidence of a fast answer, between 0 and 1
+   */
+  public ModelCascade(ConfidenceSignal confidenceSignal, double confidenceThreshold) {
+    this.confidenceSignal = confidenceSignal;
+    this.confidenceThreshold = confidenceThreshold;
+  }
+
+  /**
+   * @param prompt     rendered prompt
+   * @param fastTier   answers a prompt with the fast model
+   * @param strongTier answers the original prompt with the strong model
+   * @return the answer of the fast model when confident, of the strong model otherwise
+   */
+  public Outcome execute(String prompt, Function<String, Result<String>> fastTier, Supplier<Result<String>> strongTier) {
+    String fastPrompt = confidenceSignal == ConfidenceSignal.SELF_REPORTED ? prompt + SELF_REPORTED_INSTRUCTION : prompt;
+    Result<String> fastAnswer = fastTier.apply(fastPrompt);
+    Evaluation evaluation = evaluate(fastAnswer.content());
+    if (evaluation.confidence >= confidenceThreshold) {
+      fastAnswers.incrementAndGet();
+      Result<String> answer = Result.<String>builder()
+          .content(evaluation.content)
+          .tokenUsage(fastAnswer.tokenUsage())
+          .sources(fastAnswer.sources())
+          .build();
+      return new Outcome(answer, FAST_TIER, evaluation.confidence);
+    }
+    LOGGER.debug("Escalating to the strong model, the fast answer has a confidence of {}", evaluation.confidence);
+    escalations.incrementAndGet();
+    Result<String> strongAnswer = strongTier.get();
+    Result<String> answer = Result.<String>builder()
+        .content(strongAnswer.content())
+        .tokenUsage(sum(fastAnswer.tokenUsage(), strongAnswer.tokenUsage()))
+        .sources(strongAnswer.sources())
+        .build();
+    return new Outcome(answer, STRONG_TIER, evaluation.confidence);
+  }
+
+  Evaluation evaluate(String answer) {
+    if (answer == null) {
+      return new Evaluation(null, 0);
+    }
+    if (confidenceSignal == ConfidenceSignal.JSON_VALIDITY) {
+      return new Evaluation(answer, isJson(answer) ? 1 : 0);
+    }
+    Matcher matcher = CONFIDENCE_LINE.matcher(answer);
+    int start = -1;
+    double confidence = 0;
+    while (matcher.find()) {
+      // the last one is the one asked for, the answer itself may mention a confidence
+      start = matcher.start();
+      confidence = Double.parseDouble(matcher.group(1));
+    }
+    return start < 0 ? new Evaluation(answer, 0) : new Evaluation(answer.substring(0, start).trim(), confidence);
+  }
+
+  private static boolean isJson(String answer) {
+    Matcher fence = JSON_FENCE.matcher(answer);
+    String json = fence.matches() ? fence.group(1) : answer.trim();
+    try {
+      if (json.startsWith("[")) {
+        new JSONArray(json);
+      } else {
+        new JSONObject(json);
+      }
+      return true;
+    } catch (JSONException e) {
+      return false;
+    }
+  }
+
+  private static TokenUsage sum(TokenUsage first, TokenUsage second) {
+    if (first == null) {
+      return second;
+    }
+    return first.add(second);
+  }
+
+  /**
+   * @return answers given by the fast model
+   */
+  public long getFastAnswerCount() {
+    return fastAnswers.get();
+  }
+
+  /**
+   * @return answers escalated to the strong model
+   */
+  public long getEscalationCount() {
+    return escalations.get();
+  }
+
+  static final class Evaluation {
+
+    final String content;
+    final double confidence;
+
+    private Evaluation(String content, double confidence) {
+      this.content = content;
+      this.confidence = confidence;
+    }
+  }
+
+  /**
+   * Answer of the cascade with the tier that gave it.
+   */
+  public static final class Outcome {
+
+    private final Result<String> answer;
+    private final String tier;
+    private final double confidence;
+
+    private Outcome(Result<String> answer, String tier, double confidence) {
+      this.answer = answer;
+      this.tier = tier;
+      this.confidence = confidence;
+    }
+
+    public Result<String> getAnswer() {
+      return answer;
+    }
+
+    /**
+     * @return fast or strong
+     */
+    public String getTier() {
+      return tier;
+    }
+
+    /**
+     * @return confidence of the fast answer
+     */
+    public double getConfidence() {
+      return confidence;
+    }
+  }
+}
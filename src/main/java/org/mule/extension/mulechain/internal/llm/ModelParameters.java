@@ -0,0 +1,102 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
+
+import java.util.Objects;
+
+/**
+ * Model name and generation parameters a chat model is built with. Two models built with equal parameters behave the
+ * same, so the parameters are used to reuse the models of a configuration.
+ */
+public final class ModelParameters {
+
+  private final String modelName;
+  private final int maxTokens;
+  private final double temperature;
+  private final double topP;
+  private final long timeoutInSeconds;
+  private final boolean promptCaching;
+
+  public ModelParameters(String modelName, int maxTokens, double temperature, double topP, long timeoutInSeconds) {
+    this(modelName, maxTokens, temperature, topP, timeoutInSeconds, false);
+  }
+
+  /**
+   * @param promptCaching asks the providers supporting explicit cache breakpoints to cache the system messages
+   */
+  public ModelParameters(String modelName, int maxTokens, double temperature, double topP, long timeoutInSeconds,
+                         boolean promptCaching) {
+    this.modelName = modelName;
+    this.maxTokens = maxTokens;
+    this.temperature = temperature;
+    this.topP = topP;
+    this.timeoutInSeconds = timeoutInSeconds;
+    this.promptCaching = promptCaching;
+  }
+
+  public static ModelParameters from(LangchainLLMConfiguration configuration) {
+    return new ModelParameters(configuration.getModelName(), configuration.getMaxTokens(), configuration.getTemperature(),
+                               configuration.getTopP(),
+                               configuration.getLlmTimeoutUnit().toSeconds(configuration.getLlmTimeout()),
+                               configuration.isPromptCaching());
+  }
+
+  /**
+   * @return the same parameters with another model name
+   */
+  public ModelParameters withModelName(String modelName) {
+    return new ModelParameters(modelName, maxTokens, temperature, topP, timeoutInSeconds, promptCaching);
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  public int getMaxTokens() {
+    return maxTokens;
+  }
+
+  public double getTemperature() {
+    return temperature;
+  }
+
+  public double getTopP() {
+    return topP;
+  }
+
+  public long getTimeoutInSeconds() {
+    return timeoutInSeconds;
+  }
+
+  public boolean isPromptCaching() {
+    return promptCaching;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ModelParameters)) {
+      return false;
+    }
+    ModelParameters that = (ModelParameters) o;
+    return maxTokens == that.maxTokens && Double.compare(temperature, that.temperature) == 0
+        && Double.compare(topP, that.topP) == 0 && timeoutInSeconds == that.timeoutInSeconds
+        && promptCaching == that.promptCaching && Objects.equals(modelName, that.modelName);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(modelName, maxTokens, temperature, topP, timeoutInSeconds, promptCaching);
+  }
+
+  @Override
+  public String toString() {
+    return modelName + "(maxTokens=" + maxTokens + ", temperature=" + temperature + ", topP=" + topP + ", timeout="
+        + timeoutInSeconds + "s" + (promptCaching ? ", promptCaching" : "") + ")";
+  }
+}
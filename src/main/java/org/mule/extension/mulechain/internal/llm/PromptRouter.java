@@ -0,0 +1,284 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.helpers.PromptRoute;
+import org.mule.extension.mulechain.internal.helpers.PromptRoutingStrategy;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Picks the model of a prompt without calling an LLM: the prompt is embedded with a local embedding model and classified
+ * against the examples of the routes, either by nearest centroid or by k nearest neighbours. The examples are embedded
+ * once, when the router is created, so a classification costs one embedding of the prompt plus a scan of a few vectors.
+ * <p>
+ * Embedding a prompt with the bundled MiniLM model takes milliseconds, far more than the scan. Only a prompt routed
+ * again, as is common for templated and retried prompts, is classified in microseconds, its vector being kept in a
+ * small LRU.
+ */
+public class PromptRouter {
+
+  /**
+   * Only the beginning of long prompts is embedded, it is enough to classify them and bounds the embedding time.
+   */
+  static final int MAX_EMBEDDED_CHARS = 1000;
+
+  static final int MAX_CACHED_PROMPTS = 1024;
+
+  private final EmbeddingModel embeddingModel;
+  private final PromptRoutingStrategy strategy;
+  private final int neighbours;
+  private final List<PromptRoute> routes;
+  private final float[][] centroids;
+  private final float[][] exampleVectors;
+  private final int[] exampleRoutes;
+  private final Map<String, float[]> promptVectors = new LinkedHashMap<String, float[]>(16, 0.75f, true) {
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+      return size() > MAX_CACHED_PROMPTS;
+    }
+  };
+
+  private final AtomicLongArray routed;
+  private final AtomicLong classifications = new AtomicLong();
+  private final AtomicLong classificationNanos = new AtomicLong();
+  private final AtomicLong cachedEmbeddings = new AtomicLong();
+
+  /**
+   * @param embeddingModel local model embedding the prompts and the examples
+   * @param routes         routes with their examples, routes without examples are never picked
+   * @param strategy       how the prompts are classified
+   * @param neighbours     examples voting with {@link PromptRoutingStrategy#K_NEAREST_NEIGHBOURS}
+   */
+  public PromptRouter(EmbeddingModel embeddingModel, List<PromptRoute> routes, PromptRoutingStrategy strategy, int neighbours) {
+    this.embeddingModel = embeddingModel;
+    this.strategy = strategy;
+    this.neighbours = Math.max(1, neighbours);
+    this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+    this.centroids = new float[this.routes.size()][];
+    this.routed = new AtomicLongArray(this.routes.size());
+    List<float[]> vectors = new ArrayList<>();
+    List<Integer> vectorRoutes = new ArrayList<>();
+    for (int i = 0; i < this.routes.size(); i++) {
+      List<String> examples = this.routes.get(i).getExamples();
+      if (examples == null || examples.isEmpty()) {
+        continue;
+      }
+      List<TextSegment> segments = new ArrayList<>();
+      for (String example : examples) {
+        segments.add(TextSegment.from(truncate(example)));
+      }
+      float[] centroid = null;
+      for (Embedding embedding : embeddingModel.embedAll(segments).content()) {
+        float[] vector = normalize(embedding.vector().clone());
+        vectors.add(vector);
+        vectorRoutes.add(i);
+        if (centroid == null) {
+          centroid = new float[vector.length];
+        }
+        for (int d = 0; d < vector.length; d++) {
+          centroid[d] += vector[d];
+        }
+      }
+      centroids[i] = normalize(centroid);
+    }
+    if (vectors.isEmpty()) {
+      throw new ModuleException("None of the prompt routes has examples", MuleChainErrorType.AI_SERVICES_FAILURE);
+    }
+    this.exampleVectors = vectors.toArray(new float[0][]);
+    this.exampleRoutes = new int[vectorRoutes.size()];
+    for (int i = 0; i < exampleRoutes.length; i++) {
+      exampleRoutes[i] = vectorRoutes.get(i);
+    }
+  }
+
+  /**
+   * @param prompt fully rendered prompt
+   * @return the route of the prompt
+   */
+  public Classification classify(String prompt) {
+    long start = System.nanoTime();
+    float[] vector = embed(truncate(prompt));
+    int route;
+    double similarity;
+    if (strategy == PromptRoutingStrategy.NEAREST_CENTROID) {
+      route = -1;
+      similarity = -1;
+      for (int i = 0; i < centroids.length; i++) {
+        if (centroids[i] != null) {
+          double centroidSimilarity = dot(centroids[i], vector);
+          if (centroidSimilarity > similarity) {
+            similarity = centroidSimilarity;
+            route = i;
+          }
+        }
+      }
+    } else {
+      int[] nearest = nearestExamples(vector);
+      int[] votes = new int[routes.size()];
+      double[] bestSimilarity = new double[routes.size()];
+      route = exampleRoutes[nearest[0]];
+      for (int example : nearest) {
+        int exampleRoute = exampleRoutes[example];
+        double exampleSimilarity = dot(exampleVectors[example], vector);
+        if (votes[exampleRoute]++ == 0) {
+          bestSimilarity[exampleRoute] = exampleSimilarity;
+        }
+        // the examples come nearest first, so on a tie the route of the nearest example wins
+        if (votes[exampleRoute] > votes[route]) {
+          route = exampleRoute;
+        }
+      }
+      similarity = bestSimilarity[route];
+    }
+    long nanos = System.nanoTime() - start;
+    routed.incrementAndGet(route);
+    classifications.incrementAndGet();
+    classificationNanos.addAndGet(nanos);
+    return new Classification(routes.get(route), similarity, nanos);
+  }
+
+  /**
+   * @return the normalized vector of the prompt, not to be modified as it may be shared with other classifications
+   */
+  private float[] embed(String prompt) {
+    float[] vector;
+    synchronized (promptVectors) {
+      vector = promptVectors.get(prompt);
+    }
+    if (vector != null) {
+      cachedEmbeddings.incrementAndGet();
+      return vector;
+    }
+    // embedded outside the lock, two threads embedding the same new prompt at once both compute the same vector
+    vector = normalize(embeddingModel.embed(prompt).content().vector().clone());
+    synchronized (promptVectors) {
+      promptVectors.put(prompt, vector);
+    }
+    return vector;
+  }
+
+  /**
+   * @return the indexes of the nearest examples, nearest first
+   */
+  private int[] nearestExamples(float[] vector) {
+    int k = Math.min(neighbours, exampleVectors.length);
+    int[] nearest = new int[k];
+    double[] similarities = new double[k];
+    int found = 0;
+    for (int example = 0; example < exampleVectors.length; example++) {
+      double similarity = dot(exampleVectors[example], vector);
+      if (found < k || similarity > similarities[found - 1]) {
+        int position = found < k ? found++ : k - 1;
+        while (position > 0 && similarities[position - 1] < similarity) {
+          similarities[position] = similarities[position - 1];
+          nearest[position] = nearest[position - 1];
+          position--;
+        }
+        similarities[position] = similarity;
+        nearest[position] = example;
+      }
+    }
+    return nearest;
+  }
+
+  public List<PromptRoute> getRoutes() {
+    return routes;
+  }
+
+  /**
+   * @param route index of the route in {@link #getRoutes()}
+   * @return prompts sent to the route so far
+   */
+  public long getRoutedCount(int route) {
+    return routed.get(route);
+  }
+
+  /**
+   * @return mean time spent embedding and classifying a prompt, in nanoseconds
+   */
+  public long getMeanClassificationNanos() {
+    long count = classifications.get();
+    return count == 0 ? 0 : classificationNanos.get() / count;
+  }
+
+  /**
+   * @return classifications that reused the vector of a prompt routed before instead of embedding it
+   */
+  public long getCachedEmbeddingCount() {
+    return cachedEmbeddings.get();
+  }
+
+  private static String truncate(String text) {
+    return text.length() > MAX_EMBEDDED_CHARS ? text.substring(0, MAX_EMBEDDED_CHARS) : text;
+  }
+
+  private static float[] normalize(float[] vector) {
+    double norm = 0;
+    for (float value : vector) {
+      norm += value * value;
+    }
+    norm = Math.sqrt(norm);
+    if (norm > 0) {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] /= norm;
+      }
+    }
+    return vector;
+  }
+
+  private static double dot(float[] a, float[] b) {
+    double dot = 0;
+    for (int i = 0; i < a.length; i++) {
+      dot += a[i] * b[i];
+    }
+    return dot;
+  }
+
+  /**
+   * Route picked for a prompt.
+   */
+  public static final class Classification {
+
+    private final PromptRoute route;
+    private final double similarity;
+    private final long nanos;
+
+    private Classification(PromptRoute route, double similarity, long nanos) {
+      this.route = route;
+      this.similarity = similarity;
+      this.nanos = nanos;
+    }
+
+    public PromptRoute getRoute() {
+      return route;
+    }
+
+    /**
+     * @return cosine similarity of the prompt with the centroid, or the nearest example, of the route
+     */
+    public double getSimilarity() {
+      return similarity;
+    }
+
+    /**
+     * @return time spent embedding and classifying the prompt
+     */
+    public long getNanos() {
+      return nanos;
+    }
+  }
+}
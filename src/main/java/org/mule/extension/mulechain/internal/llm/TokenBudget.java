@@ -0,0 +1,206 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.rag.content.Content;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.helpers.TruncationPolicy;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates the input tokens of a prompt before it is sent and cuts its variable part, the dataset of a template or the
+ * retrieved context, so the prompt fits the max input tokens. Oversized prompts are then neither slow nor rejected by the
+ * provider after a full round trip. With no max input tokens, prompts are estimated but never cut.
+ */
+public class TokenBudget {
+
+  /**
+   * Replaces the middle of the texts cut with {@link TruncationPolicy#MIDDLE_OUT}
+   */
+  static final String CUT_MARKER = "\n[...]\n";
+
+  /**
+   * Text the retrieval augmentor adds around the retrieved contents, see the default content injector of langchain4j
+   */
+  private static final String CONTENT_INJECTION = "\n\nAnswer using the following information:\n";
+  private static final String CONTENT_SEPARATOR = "\n\n";
+
+  /**
+   * The tokens of a text are not proportional to its characters, so a cut text is shortened again until it fits
+   */
+  private static final int MAX_CUT_ATTEMPTS = 8;
+
+  private final Tokenizer tokenizer;
+  private final int maxInputTokens;
+  private final TruncationPolicy policy;
+
+  /**
+   * @param tokenizer      tokenizer of the LLM type
+   * @param maxInputTokens max estimated input tokens of a prompt, 0 for no limit
+   * @param policy         how the prompts exceeding the max input tokens are cut
+   */
+  public TokenBudget(Tokenizer tokenizer, int maxInputTokens, TruncationPolicy policy) {
+    this.tokenizer = tokenizer;
+    this.maxInputTokens = maxInputTokens;
+    this.policy = policy;
+  }
+
+  public int estimate(String text) {
+    return text == null || text.isEmpty() ? 0 : tokenizer.estimateTokenCountInText(text);
+  }
+
+  /**
+   * @param text        variable part of the prompt
+   * @param fixedTokens estimated tokens of the rest of the prompt
+   * @return the text, cut when the prompt exceeds the max input tokens
+   */
+  public Fit fit(String text, int fixedTokens) {
+    int tokens = estimate(text);
+    if (maxInputTokens <= 0 || fixedTokens + tokens <= maxInputTokens) {
+      return new Fit(text, tokens, 0);
+    }
+    String fitted = cut(text, tokens, requireBudget(fixedTokens));
+    int fittedTokens = estimate(fitted);
+    return new Fit(fitted, fittedTokens, Math.max(0, tokens - fittedTokens));
+  }
+
+  /**
+   * The contents stay in score order whatever the policy: the most relevant contents are kept whole while they fit, and
+   * the policy only applies to the first content exceeding the budget, cut at its head, tail or middle, or dropped with
+   * {@link TruncationPolicy#DROP_LOWEST_SCORING}. The less relevant contents after it are dropped.
+   *
+   * @param question retrieval query, sent along with the contents
+   * @param contents retrieved contents, highest score first
+   * @return the contents fitting the max input tokens with the question
+   */
+  public List<Content> fitContext(String question, List<Content> contents) {
+    if (maxInputTokens <= 0 || contents.isEmpty()) {
+      return contents;
+    }
+    int separatorTokens = estimate(CONTENT_SEPARATOR);
+    int budget = requireBudget(estimate(question + CONTENT_INJECTION));
+    List<Content> fitted = new ArrayList<>(contents.size());
+    for (Content content : contents) {
+      int tokens = estimate(content.textSegment().text()) + separatorTokens;
+      if (tokens <= budget) {
+        fitted.add(content);
+        budget -= tokens;
+        continue;
+      }
+      if (budget > separatorTokens && policy != TruncationPolicy.DROP_LOWEST_SCORING) {
+        TextSegment segment = content.textSegment();
+        String text = cut(segment.text(), tokens - separatorTokens, budget - separatorTokens);
+        if (!text.isEmpty()) {
+          fitted.add(Content.from(TextSegment.from(text, segment.metadata())));
+        }
+      }
+      break;
+    }
+    return fitted;
+  }
+
+  /**
+   * @return estimated input tokens of a question sent with retrieved contents
+   */
+  public int estimateContext(String question, List<Content> contents) {
+    int tokens = estimate(question + CONTENT_INJECTION);
+    for (Content content : contents) {
+      tokens += estimate(content.textSegment().text() + CONTENT_SEPARATOR);
+    }
+    return tokens;
+  }
+
+  private int requireBudget(int fixedTokens) {
+    if (fixedTokens >= maxInputTokens) {
+      throw new ModuleException(String.format("The prompt needs %d tokens without the content that can be cut, the max input tokens are %d",
+                                              fixedTokens, maxInputTokens),
+                                MuleChainErrorType.VALIDATION_FAILURE);
+    }
+    return maxInputTokens - fixedTokens;
+  }
+
+  /**
+   * @return the text cut to the budget by the policy
+   */
+  private String cut(String text, int tokens, int budget) {
+    switch (policy) {
+      case TAIL:
+        return cut(text, tokens, budget, false);
+      case MIDDLE_OUT:
+        int remainingBudget = budget - estimate(CUT_MARKER);
+        if (remainingBudget <= 0) {
+          return "";
+        }
+        int headBudget = remainingBudget / 2;
+        return cut(text, tokens, headBudget, true) + CUT_MARKER + cut(text, tokens, remainingBudget - headBudget, false);
+      default:
+        return cut(text, tokens, budget, true);
+    }
+  }
+
+  private String cut(String text, int tokens, int budget, boolean keepHead) {
+    if (budget <= 0 || tokens <= 0) {
+      return "";
+    }
+    int length = (int) Math.min(text.length(), (long) text.length() * budget / tokens);
+    for (int attempt = 0; attempt < MAX_CUT_ATTEMPTS && length > 0; attempt++) {
+      // a surrogate pair is never split
+      if (keepHead && Character.isHighSurrogate(text.charAt(length - 1))) {
+        length--;
+      } else if (!keepHead && Character.isLowSurrogate(text.charAt(text.length() - length))) {
+        length--;
+      }
+      String candidate = keepHead ? text.substring(0, length) : text.substring(text.length() - length);
+      int candidateTokens = estimate(candidate);
+      if (candidateTokens <= budget) {
+        return candidate;
+      }
+      length = Math.min(length - 1, (int) ((long) length * budget / candidateTokens));
+    }
+    return "";
+  }
+
+  /**
+   * Text fitted to the budget.
+   */
+  public static final class Fit {
+
+    private final String text;
+    private final int tokens;
+    private final int truncatedTokens;
+
+    private Fit(String text, int tokens, int truncatedTokens) {
+      this.text = text;
+      this.tokens = tokens;
+      this.truncatedTokens = truncatedTokens;
+    }
+
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * @return estimated tokens of the text
+     */
+    public int getTokens() {
+      return tokens;
+    }
+
+    /**
+     * @return estimated tokens cut from the text, 0 when it fitted
+     */
+    public int getTruncatedTokens() {
+      return truncatedTokens;
+    }
+
+    public boolean isTruncated() {
+      return truncatedTokens > 0;
+    }
+  }
+}
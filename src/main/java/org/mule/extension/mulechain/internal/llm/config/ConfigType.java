@@ -3,22 +3,24 @@
  */
 package org.mule.extension.mulechain.internal.llm.config;
 
-import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
 import org.mule.extension.mulechain.internal.error.exception.ConfigValidationException;
 
 import java.util.Arrays;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 
 public enum ConfigType {
 
-  ENV_VARIABLE("Environment Variables", configuration -> new EnvConfigExtractor()), CONFIG_JSON("Configuration Json",
+  ENV_VARIABLE("Environment Variables", (filePath, llmType) -> new EnvConfigExtractor()), CONFIG_JSON("Configuration Json",
       FileConfigExtractor::new);
 
   private final String value;
 
-  private final Function<LangchainLLMConfiguration, ConfigExtractor> configExtractorFunction;
+  /**
+   * Creates the extractor of the credentials of an LLM type from the file path
+   */
+  private final BiFunction<String, String, ConfigExtractor> configExtractorFunction;
 
-  ConfigType(String value, Function<LangchainLLMConfiguration, ConfigExtractor> configExtractorFunction) {
+  ConfigType(String value, BiFunction<String, String, ConfigExtractor> configExtractorFunction) {
     this.value = value;
     this.configExtractorFunction = configExtractorFunction;
   }
@@ -34,7 +36,7 @@ public enum ConfigType {
     return value;
   }
 
-  public Function<LangchainLLMConfiguration, ConfigExtractor> getConfigExtractorFunction() {
+  public BiFunction<String, String, ConfigExtractor> getConfigExtractorFunction() {
     return configExtractorFunction;
   }
 }
@@ -4,7 +4,6 @@
 package org.mule.extension.mulechain.internal.llm.config;
 
 import org.json.JSONObject;
-import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
 
 import static org.mule.extension.mulechain.internal.util.JsonUtils.readConfigFile;
 
@@ -12,10 +11,14 @@ public class FileConfigExtractor implements ConfigExtractor {
 
   private JSONObject llmConfig;
 
-  public FileConfigExtractor(LangchainLLMConfiguration configuration) {
-    JSONObject config = readConfigFile(configuration.getFilePath());
+  /**
+   * @param filePath JSON file holding the credentials of each LLM type
+   * @param llmType  LLM type whose credentials are extracted
+   */
+  public FileConfigExtractor(String filePath, String llmType) {
+    JSONObject config = readConfigFile(filePath);
     if (config != null) {
-      llmConfig = config.getJSONObject(configuration.getLlmType());
+      llmConfig = config.getJSONObject(llmType);
     }
   }
 
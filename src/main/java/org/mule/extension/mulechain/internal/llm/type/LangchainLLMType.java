@@ -8,9 +8,9 @@ import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.mistralai.MistralAiChatModelName;
 import dev.langchain4j.model.openai.OpenAiChatModelName;
 import dev.langchain4j.model.openai.OpenAiImageModelName;
-import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
 import org.mule.extension.mulechain.internal.config.util.LangchainLLMInitializerUtil;
 import org.mule.extension.mulechain.internal.error.exception.ConfigValidationException;
+import org.mule.extension.mulechain.internal.llm.ModelParameters;
 import org.mule.extension.mulechain.internal.llm.config.ConfigExtractor;
 
 import java.util.Arrays;
@@ -33,10 +33,10 @@ public enum LangchainLLMType {
   private final String value;
   private final Stream<String> modelNameStream;
 
-  private final BiFunction<ConfigExtractor, LangchainLLMConfiguration, ChatLanguageModel> configBiFunction;
+  private final BiFunction<ConfigExtractor, ModelParameters, ChatLanguageModel> configBiFunction;
 
   LangchainLLMType(String value, Stream<String> modelNameStream,
-                   BiFunction<ConfigExtractor, LangchainLLMConfiguration, ChatLanguageModel> configBiFunction) {
+                   BiFunction<ConfigExtractor, ModelParameters, ChatLanguageModel> configBiFunction) {
     this.value = value;
     this.modelNameStream = modelNameStream;
     this.configBiFunction = configBiFunction;
@@ -50,7 +50,7 @@ public enum LangchainLLMType {
     return modelNameStream;
   }
 
-  public BiFunction<ConfigExtractor, LangchainLLMConfiguration, ChatLanguageModel> getConfigBiFunction() {
+  public BiFunction<ConfigExtractor, ModelParameters, ChatLanguageModel> getConfigBiFunction() {
     return configBiFunction;
   }
 
@@ -0,0 +1,129 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import org.mule.extension.mulechain.internal.error.exception.ConfigValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the chat memory resources of a configuration. A MapDB file must only be opened once, so stores are shared by all
+ * the operations working on the same file and closed when the configuration is disposed. Memories of a file can be
+ * striped over several files to parallelize commits. When a time to live is set, a background sweeper periodically
+ * deletes the memories that were not accessed within it.
+ */
+public class ChatMemoryManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChatMemoryManager.class);
+
+  private final Map<String, ManagedChatMemoryStore> stores = new ConcurrentHashMap<>();
+
+  private volatile ChatMemorySummarizer summarizer;
+
+  private volatile int stripeCount = 1;
+  private long timeToLiveMillis;
+  private long sweepIntervalMillis;
+  private int sweepBatchSize;
+  private ScheduledExecutorService sweeper;
+
+  /**
+   * Enables the expiry of abandoned memories.
+   *
+   * @param timeToLiveMillis    memories not accessed for longer are deleted, 0 or less keeps them forever
+   * @param sweepIntervalMillis delay between two sweeps, must be positive when memories expire
+   * @param sweepBatchSize      max memories deleted per commit, must be positive when memories expire
+   */
+  public synchronized void configureExpiry(long timeToLiveMillis, long sweepIntervalMillis, int sweepBatchSize) {
+    if (timeToLiveMillis > 0 && sweepIntervalMillis <= 0) {
+      throw new ConfigValidationException("The chat memory sweep interval must be positive when a time to live is set, not "
+          + sweepIntervalMillis + " ms");
+    }
+    if (timeToLiveMillis > 0 && sweepBatchSize <= 0) {
+      throw new ConfigValidationException("The chat memory sweep batch size must be positive when a time to live is set, not "
+          + sweepBatchSize);
+    }
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.sweepIntervalMillis = sweepIntervalMillis;
+    this.sweepBatchSize = sweepBatchSize;
+  }
+
+  /**
+   * @param stripeCount number of files the memories of a dbFilePath are spread over, 1 keeps them in the dbFilePath itself
+   */
+  public void configureStripes(int stripeCount) {
+    this.stripeCount = Math.max(1, stripeCount);
+  }
+
+  public ManagedChatMemoryStore getStore(String dbFilePath) {
+    String key = Paths.get(dbFilePath).toAbsolutePath().normalize().toString();
+    ManagedChatMemoryStore store = stores.computeIfAbsent(key, this::openStore);
+    startSweeperIfNeeded();
+    return store;
+  }
+
+  public ChatMemorySummarizer getSummarizer() {
+    if (summarizer == null) {
+      synchronized (this) {
+        if (summarizer == null) {
+          summarizer = new ChatMemorySummarizer();
+        }
+      }
+    }
+    return summarizer;
+  }
+
+  /**
+   * Deletes the expired memories of all the open stores.
+   */
+  public void sweep() {
+    long expiredBefore = System.currentTimeMillis() - timeToLiveMillis;
+    for (ManagedChatMemoryStore store : stores.values()) {
+      try {
+        int evicted = store.evictExpired(expiredBefore, sweepBatchSize);
+        if (evicted > 0) {
+          LOGGER.info("Deleted {} expired chat memories from {}", evicted, store.getDbFilePath());
+        }
+      } catch (RuntimeException e) {
+        LOGGER.warn("Unable to delete the expired chat memories from {}", store.getDbFilePath(), e);
+      }
+    }
+  }
+
+  public synchronized void close() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+      sweeper = null;
+    }
+    if (summarizer != null) {
+      // pending summaries still need their store
+      summarizer.shutdown();
+      summarizer = null;
+    }
+    stores.values().forEach(ManagedChatMemoryStore::close);
+    stores.clear();
+  }
+
+  private ManagedChatMemoryStore openStore(String dbFilePath) {
+    return stripeCount > 1 ? new StripedChatMemoryStore(dbFilePath, stripeCount) : new PersistentChatMemoryStore(dbFilePath);
+  }
+
+  private synchronized void startSweeperIfNeeded() {
+    if (sweeper != null || timeToLiveMillis <= 0) {
+      return;
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mulechain-memory-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Folds the messages evicted from a memory window into a running summary stored with the memory. Summaries are computed
+ * in the background, so the operation that evicted the messages does not wait for the extra LLM call. Summarizations of
+ * the same memory are chained, so each one builds on the summary produced by the previous one.
+ */
+public class ChatMemorySummarizer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChatMemorySummarizer.class);
+
+  private static final int SUMMARIZER_THREADS = 2;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  private final ExecutorService executor;
+  private final Map<Object, CompletableFuture<Void>> pendingSummaries = new ConcurrentHashMap<>();
+
+  public ChatMemorySummarizer() {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(SUMMARIZER_THREADS, runnable -> {
+      Thread thread = new Thread(runnable, "mulechain-memory-summarizer-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Schedules the summarization of the evicted messages into the running summary of the memory.
+   *
+   * @param memoryId        memory the messages were evicted from
+   * @param evictedMessages evicted messages, oldest first
+   * @param store           store holding the running summary
+   * @param model           model used to write the summary
+   */
+  public void summarize(Object memoryId, List<ChatMessage> evictedMessages, ManagedChatMemoryStore store,
+                        ChatLanguageModel model) {
+    if (evictedMessages.isEmpty()) {
+      return;
+    }
+    List<ChatMessage> messages = new ArrayList<>(evictedMessages);
+    CompletableFuture<Void> summary = pendingSummaries.compute(memoryId, (id, previous) -> {
+      CompletableFuture<Void> after = previous != null ? previous : CompletableFuture.completedFuture(null);
+      return after.thenRunAsync(() -> updateSummary(id, messages, store, model), executor)
+          .exceptionally(throwable -> {
+            LOGGER.warn("Unable to summarize {} evicted messages of memory {}", messages.size(), id, throwable);
+            return null;
+          });
+    });
+    summary.whenComplete((result, throwable) -> pendingSummaries.remove(memoryId, summary));
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOGGER.warn("Memory summarizer did not complete the pending summaries in time");
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void updateSummary(Object memoryId, List<ChatMessage> messages, ManagedChatMemoryStore store,
+                             ChatLanguageModel model) {
+    String previousSummary = store.getSummary(memoryId);
+    StringBuilder prompt = new StringBuilder()
+        .append("Progressively summarize the lines of conversation provided, adding onto the previous summary. ")
+        .append("Keep names, facts, decisions and open questions. Reply with the new summary only.")
+        .append(System.lineSeparator()).append(System.lineSeparator())
+        .append("Previous summary:").append(System.lineSeparator())
+        .append(previousSummary != null ? previousSummary : "None").append(System.lineSeparator())
+        .append(System.lineSeparator())
+        .append("New lines of conversation:").append(System.lineSeparator());
+    for (ChatMessage message : messages) {
+      String text = ChatMessageTexts.toText(message);
+      if (text != null) {
+        prompt.append(message.type()).append(": ").append(text).append(System.lineSeparator());
+      }
+    }
+    String summary = model.generate(prompt.toString());
+    store.updateSummary(memoryId, summary);
+    LOGGER.debug("Summarized {} evicted messages into the memory {}", messages.size(), memoryId);
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.stream.Collectors;
+
+final class ChatMessageTexts {
+
+  private ChatMessageTexts() {}
+
+  /**
+   * @return the text of a user or AI message, null for the messages that carry no conversation text
+   */
+  static String toText(ChatMessage message) {
+    if (message instanceof UserMessage) {
+      return ((UserMessage) message).contents().stream()
+          .filter(TextContent.class::isInstance)
+          .map(content -> ((TextContent) content).text())
+          .collect(Collectors.joining(" "));
+    }
+    if (message instanceof AiMessage) {
+      return ((AiMessage) message).text();
+    }
+    // system messages are kept in the window and tool results are only meaningful next to their request
+    return null;
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Base class for the windowed chat memories of the connector. It keeps the messages evicted from the persisted memory
+ * during an operation call, so they can be reported, summarized or indexed afterwards. Next to the window it injects the
+ * running summary of the conversation and the past turns relevant to the latest user message when enabled. Instances
+ * are meant to live for a single operation call.
+ */
+public abstract class EvictingChatMemory implements ChatMemory {
+
+  private static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+  private static final String PAST_TURNS_PREFIX = "Earlier parts of the conversation relevant to the latest message:";
+
+  private final Object id;
+  private final ManagedChatMemoryStore store;
+  private final boolean includeSummary;
+  private final List<ChatMessage> evictedMessages = new ArrayList<>();
+
+  private LongTermChatMemoryIndex longTermIndex;
+  private String retrievedFor;
+  private List<String> retrievedTurns = Collections.emptyList();
+
+  protected EvictingChatMemory(Object id, ManagedChatMemoryStore store, boolean includeSummary) {
+    this.id = id;
+    this.store = store;
+    this.includeSummary = includeSummary;
+  }
+
+  @Override
+  public Object id() {
+    return id;
+  }
+
+  @Override
+  public void add(ChatMessage message) {
+    List<ChatMessage> messages = new LinkedList<>(store.getMessages(id));
+    if (message instanceof SystemMessage) {
+      if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage) {
+        if (messages.get(0).equals(message)) {
+          return;
+        }
+        messages.remove(0);
+      }
+      messages.add(0, message);
+    } else {
+      messages.add(message);
+    }
+    ensureCapacity(messages, evictedMessages);
+    store.updateMessages(id, messages);
+  }
+
+  @Override
+  public List<ChatMessage> messages() {
+    List<ChatMessage> messages = new LinkedList<>(store.getMessages(id));
+    ensureCapacity(messages, new ArrayList<>());
+    if (includeSummary) {
+      String summary = store.getSummary(id);
+      if (summary != null && !summary.isEmpty()) {
+        int summaryIndex = !messages.isEmpty() && messages.get(0) instanceof SystemMessage ? 1 : 0;
+        messages.add(summaryIndex, SystemMessage.from(SUMMARY_PREFIX + summary));
+      }
+    }
+    if (longTermIndex != null) {
+      addRelevantPastTurns(messages);
+    }
+    return messages;
+  }
+
+  @Override
+  public void clear() {
+    store.deleteMessages(id);
+  }
+
+  /**
+   * Enables the retrieval of the past turns relevant to the latest user message from the long term index.
+   */
+  public void setLongTermIndex(LongTermChatMemoryIndex longTermIndex) {
+    this.longTermIndex = longTermIndex;
+  }
+
+  /**
+   * @return number of past turns retrieved from the long term index for the latest user message
+   */
+  public int getRetrievedTurns() {
+    return retrievedTurns.size();
+  }
+
+  /**
+   * @return messages evicted from the persisted memory since this instance was created, oldest first
+   */
+  public List<ChatMessage> getEvictedMessages() {
+    return Collections.unmodifiableList(evictedMessages);
+  }
+
+  private void addRelevantPastTurns(List<ChatMessage> messages) {
+    String question = null;
+    for (int i = messages.size() - 1; i >= 0 && question == null; i--) {
+      if (messages.get(i) instanceof UserMessage) {
+        question = ChatMessageTexts.toText(messages.get(i));
+      }
+    }
+    if (question == null) {
+      return;
+    }
+    // messages() is called again after each tool execution, the question does not change meanwhile
+    if (!question.equals(retrievedFor)) {
+      retrievedTurns = longTermIndex.retrieve(id, question);
+      retrievedFor = question;
+    }
+    if (!retrievedTurns.isEmpty()) {
+      int pastTurnsIndex = 0;
+      while (pastTurnsIndex < messages.size() && messages.get(pastTurnsIndex) instanceof SystemMessage) {
+        pastTurnsIndex++;
+      }
+      messages.add(pastTurnsIndex, SystemMessage.from(PAST_TURNS_PREFIX + System.lineSeparator()
+          + String.join(System.lineSeparator(), retrievedTurns)));
+    }
+  }
+
+  /**
+   * Evicts the oldest messages until the memory fits in its window.
+   *
+   * @param messages messages of the memory, modified in place
+   * @param evicted  collects the evicted messages
+   */
+  protected abstract void ensureCapacity(List<ChatMessage> messages, List<ChatMessage> evicted);
+
+  /**
+   * Removes the oldest message that is not the system message, together with the tool results depending on it. The latest
+   * message is never evicted, otherwise the LLM would receive nothing to answer.
+   *
+   * @return the removed messages, empty when nothing can be evicted
+   */
+  protected static List<ChatMessage> evictOldest(List<ChatMessage> messages) {
+    int messageToEvictIndex = !messages.isEmpty() && messages.get(0) instanceof SystemMessage ? 1 : 0;
+    if (messageToEvictIndex >= messages.size() - 1) {
+      return Collections.emptyList();
+    }
+    List<ChatMessage> removed = new ArrayList<>();
+    ChatMessage evictedMessage = messages.remove(messageToEvictIndex);
+    removed.add(evictedMessage);
+    if (evictedMessage instanceof AiMessage && ((AiMessage) evictedMessage).hasToolExecutionRequests()) {
+      // tool results without the request that triggered them are rejected by the providers
+      while (messages.size() > messageToEvictIndex && messages.get(messageToEvictIndex) instanceof ToolExecutionResultMessage) {
+        removed.add(messages.remove(messageToEvictIndex));
+      }
+    }
+    return removed;
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Vector index of the turns that left the memory window, kept per memory in the memory store. Retrieving only the past
+ * turns relevant to the current question keeps the prompt small regardless of the conversation length.
+ */
+public class LongTermChatMemoryIndex {
+
+  private final EmbeddingModel embeddingModel;
+  private final ManagedChatMemoryStore store;
+  private final int maxResults;
+  private final double minScore;
+
+  public LongTermChatMemoryIndex(EmbeddingModel embeddingModel, ManagedChatMemoryStore store, int maxResults,
+                                 double minScore) {
+    this.embeddingModel = embeddingModel;
+    this.store = store;
+    this.maxResults = maxResults;
+    this.minScore = minScore;
+  }
+
+  /**
+   * Embeds the evicted messages, one segment per turn, into the index of the memory.
+   *
+   * @param memoryId        memory the messages were evicted from
+   * @param evictedMessages evicted messages, oldest first
+   */
+  public void index(Object memoryId, List<ChatMessage> evictedMessages) {
+    List<TextSegment> turns = toTurns(evictedMessages);
+    if (turns.isEmpty()) {
+      return;
+    }
+    store.addEmbeddings(memoryId, embeddingModel.embedAll(turns).content(), turns);
+  }
+
+  /**
+   * @return the past turns of the memory most relevant to the question, most relevant first
+   */
+  public List<String> retrieve(Object memoryId, String question) {
+    if (question == null || question.isEmpty()) {
+      return Collections.emptyList();
+    }
+    InMemoryEmbeddingStore<TextSegment> embeddings = store.getEmbeddings(memoryId);
+    if (embeddings == null) {
+      return Collections.emptyList();
+    }
+    return embeddings.findRelevant(embeddingModel.embed(question).content(), maxResults, minScore).stream()
+        .map(match -> match.embedded().text())
+        .collect(Collectors.toList());
+  }
+
+  private static List<TextSegment> toTurns(List<ChatMessage> messages) {
+    List<TextSegment> turns = new ArrayList<>();
+    StringBuilder turn = new StringBuilder();
+    for (ChatMessage message : messages) {
+      String text = ChatMessageTexts.toText(message);
+      if (text == null || text.isEmpty()) {
+        continue;
+      }
+      if (message instanceof UserMessage && turn.length() > 0) {
+        turns.add(TextSegment.from(turn.toString()));
+        turn.setLength(0);
+      }
+      turn.append(message.type()).append(": ").append(text).append(System.lineSeparator());
+    }
+    if (turn.length() > 0) {
+      turns.add(TextSegment.from(turn.toString()));
+    }
+    return turns;
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.List;
+
+/**
+ * Chat memory store managed by the connector. Besides the messages it keeps the running summary and the long term index
+ * of each memory, and supports the expiry of abandoned memories.
+ */
+public interface ManagedChatMemoryStore extends ChatMemoryStore {
+
+  String getSummary(Object memoryId);
+
+  void updateSummary(Object memoryId, String summary);
+
+  /**
+   * @return the long term memory index of the memory, null when nothing was indexed yet. It may be shared with other
+   *         calls, it is only searched
+   */
+  InMemoryEmbeddingStore<TextSegment> getEmbeddings(Object memoryId);
+
+  /**
+   * Appends the embedded segments to the long term memory index of the memory, without rewriting the segments indexed
+   * before.
+   */
+  void addEmbeddings(Object memoryId, List<Embedding> embeddings, List<TextSegment> segments);
+
+  /**
+   * Deletes the memories not accessed since the given time.
+   *
+   * @param expiredBefore epoch millis before which a memory is considered abandoned
+   * @param batchSize     max memories deleted per commit
+   * @return the number of deleted memories
+   */
+  int evictExpired(long expiredBefore, int batchSize);
+
+  int getMemoryCount();
+
+  /**
+   * @return the size in bytes of the files holding the memories
+   */
+  long getFileSize();
+
+  String getDbFilePath();
+
+  void close();
+}
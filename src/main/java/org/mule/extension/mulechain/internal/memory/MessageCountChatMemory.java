@@ -0,0 +1,32 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Chat memory that keeps the most recent messages up to a maximum count, the system message included.
+ */
+public class MessageCountChatMemory extends EvictingChatMemory {
+
+  private final int maxMessages;
+
+  public MessageCountChatMemory(Object id, int maxMessages, ManagedChatMemoryStore store, boolean includeSummary) {
+    super(id, store, includeSummary);
+    this.maxMessages = maxMessages;
+  }
+
+  @Override
+  protected void ensureCapacity(List<ChatMessage> messages, List<ChatMessage> evicted) {
+    while (messages.size() > maxMessages) {
+      List<ChatMessage> removed = evictOldest(messages);
+      if (removed.isEmpty()) {
+        return;
+      }
+      evicted.addAll(removed);
+    }
+  }
+}
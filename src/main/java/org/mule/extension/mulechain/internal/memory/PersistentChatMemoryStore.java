@@ -0,0 +1,283 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messagesFromJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
+import static org.mapdb.Serializer.FLOAT_ARRAY;
+import static org.mapdb.Serializer.INTEGER;
+import static org.mapdb.Serializer.LONG;
+import static org.mapdb.Serializer.STRING;
+
+/**
+ * MapDB backed chat memory store. Next to the messages of each memory it keeps the running summary and the long term
+ * index of the messages that were evicted from the memory window, and the last time the memory was accessed, so
+ * abandoned memories can expire. The long term index is kept as one entry per segment, keyed by the memory id and the
+ * sequence of the segment, so indexing a turn does not rewrite the turns indexed before. The indexes of the recently used
+ * memories are also kept in process and updated along with the file, so retrieving past turns does not read them again.
+ */
+public class PersistentChatMemoryStore implements ManagedChatMemoryStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PersistentChatMemoryStore.class);
+
+  static final int MAX_CACHED_INDEXES = 256;
+
+  private final String dbFilePath;
+  private final DB db;
+  private final Map<String, String> map;
+  private final Map<String, String> summaries;
+  private final Map<String, String> segments;
+  private final Map<String, float[]> vectors;
+  private final Map<String, Integer> segmentCounts;
+  private final Map<String, Long> lastAccess;
+  // guarded by itself, like the segment counts they are kept in sync with
+  private final Map<String, InMemoryEmbeddingStore<TextSegment>> indexes =
+      new LinkedHashMap<String, InMemoryEmbeddingStore<TextSegment>>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, InMemoryEmbeddingStore<TextSegment>> eldest) {
+          return size() > MAX_CACHED_INDEXES;
+        }
+      };
+
+  public PersistentChatMemoryStore(String dbMFilePath) {
+    dbFilePath = dbMFilePath;
+    db = DBMaker.fileDB(dbMFilePath)
+        .transactionEnable()
+        .fileLockDisable()
+        .make();
+    map = db.hashMap("messages", STRING, STRING).createOrOpen();
+    summaries = db.hashMap("summaries", STRING, STRING).createOrOpen();
+    segments = db.hashMap("segments", STRING, STRING).createOrOpen();
+    vectors = db.hashMap("vectors", STRING, FLOAT_ARRAY).createOrOpen();
+    segmentCounts = db.hashMap("segmentCounts", STRING, INTEGER).createOrOpen();
+    lastAccess = db.hashMap("lastAccess", STRING, LONG).createOrOpen();
+  }
+
+  @Override
+  public List<ChatMessage> getMessages(Object memoryId) {
+    String json = map.get((String) memoryId);
+    if (json != null) {
+      // committed along with the next update, losing a read timestamp on a crash only delays the expiry
+      lastAccess.put((String) memoryId, System.currentTimeMillis());
+    }
+    return messagesFromJson(json);
+  }
+
+  @Override
+  public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+    String json = messagesToJson(messages);
+    map.put((String) memoryId, json);
+    lastAccess.put((String) memoryId, System.currentTimeMillis());
+    db.commit();
+  }
+
+  @Override
+  public void deleteMessages(Object memoryId) {
+    map.remove((String) memoryId);
+    summaries.remove((String) memoryId);
+    deleteEmbeddings((String) memoryId);
+    lastAccess.remove((String) memoryId);
+    db.commit();
+  }
+
+  @Override
+  public String getSummary(Object memoryId) {
+    return summaries.get((String) memoryId);
+  }
+
+  @Override
+  public void updateSummary(Object memoryId, String summary) {
+    summaries.put((String) memoryId, summary);
+    db.commit();
+  }
+
+  @Override
+  public InMemoryEmbeddingStore<TextSegment> getEmbeddings(Object memoryId) {
+    synchronized (indexes) {
+      InMemoryEmbeddingStore<TextSegment> index = indexes.get((String) memoryId);
+      if (index == null) {
+        index = loadIndex((String) memoryId);
+        if (index != null) {
+          indexes.put((String) memoryId, index);
+        }
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Turns indexed concurrently for the same memory each get their own sequence, as the segment count is read and updated
+   * under the lock of the in-process indexes.
+   */
+  @Override
+  public void addEmbeddings(Object memoryId, List<Embedding> embeddings, List<TextSegment> segments) {
+    synchronized (indexes) {
+      int sequence = segmentCounts.getOrDefault((String) memoryId, 0);
+      for (int i = 0; i < segments.size(); i++, sequence++) {
+        String key = segmentKey((String) memoryId, sequence);
+        this.segments.put(key, segments.get(i).text());
+        vectors.put(key, embeddings.get(i).vector());
+      }
+      segmentCounts.put((String) memoryId, sequence);
+      db.commit();
+      InMemoryEmbeddingStore<TextSegment> index = indexes.get((String) memoryId);
+      if (index != null) {
+        index.addAll(embeddings, segments);
+      }
+    }
+  }
+
+  private InMemoryEmbeddingStore<TextSegment> loadIndex(String memoryId) {
+    Integer segmentCount = segmentCounts.get(memoryId);
+    if (segmentCount == null) {
+      return null;
+    }
+    InMemoryEmbeddingStore<TextSegment> index = new InMemoryEmbeddingStore<>();
+    for (int sequence = 0; sequence < segmentCount; sequence++) {
+      String key = segmentKey(memoryId, sequence);
+      String text = segments.get(key);
+      float[] vector = vectors.get(key);
+      if (text != null && vector != null) {
+        index.add(Embedding.from(vector), TextSegment.from(text));
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Commits every batch so the transaction log stays small, and compacts the file when anything was deleted. Memories
+   * persisted before access times were recorded start their time to live now.
+   */
+  @Override
+  public int evictExpired(long expiredBefore, int batchSize) {
+    // a batch must delete something for the loop to end
+    batchSize = Math.max(1, batchSize);
+    int evicted = 0;
+    List<String> expired;
+    do {
+      expired = new ArrayList<>();
+      for (String memoryId : map.keySet()) {
+        Long accessed = lastAccess.get(memoryId);
+        if (accessed == null) {
+          lastAccess.put(memoryId, System.currentTimeMillis());
+        } else if (accessed < expiredBefore) {
+          expired.add(memoryId);
+          if (expired.size() >= batchSize) {
+            break;
+          }
+        }
+      }
+      for (String memoryId : expired) {
+        map.remove(memoryId);
+        summaries.remove(memoryId);
+        deleteEmbeddings(memoryId);
+        lastAccess.remove(memoryId);
+      }
+      db.commit();
+      evicted += expired.size();
+    } while (expired.size() >= batchSize);
+
+    if (evicted > 0) {
+      compact();
+    }
+    return evicted;
+  }
+
+  @Override
+  public int getMemoryCount() {
+    return map.size();
+  }
+
+  @Override
+  public long getFileSize() {
+    return new File(dbFilePath).length();
+  }
+
+  @Override
+  public String getDbFilePath() {
+    return dbFilePath;
+  }
+
+  @Override
+  public void close() {
+    if (!db.isClosed()) {
+      db.close();
+    }
+  }
+
+  Set<String> getMemoryIds() {
+    return map.keySet();
+  }
+
+  /**
+   * Copies a memory of another file as is, along with its summary, long term index and access time. The copies are only
+   * persisted by {@link #commit()}.
+   */
+  void importMemory(PersistentChatMemoryStore source, String memoryId) {
+    map.put(memoryId, source.map.get(memoryId));
+    copy(source.summaries, summaries, memoryId);
+    copy(source.lastAccess, lastAccess, memoryId);
+    Integer segmentCount = source.segmentCounts.get(memoryId);
+    if (segmentCount != null) {
+      for (int sequence = 0; sequence < segmentCount; sequence++) {
+        copy(source.segments, segments, segmentKey(memoryId, sequence));
+        copy(source.vectors, vectors, segmentKey(memoryId, sequence));
+      }
+      segmentCounts.put(memoryId, segmentCount);
+    }
+  }
+
+  void commit() {
+    db.commit();
+  }
+
+  private static <V> void copy(Map<String, V> source, Map<String, V> target, String key) {
+    V value = source.get(key);
+    if (value != null) {
+      target.put(key, value);
+    }
+  }
+
+  private void deleteEmbeddings(String memoryId) {
+    synchronized (indexes) {
+      indexes.remove(memoryId);
+      Integer segmentCount = segmentCounts.remove(memoryId);
+      for (int sequence = 0; segmentCount != null && sequence < segmentCount; sequence++) {
+        String key = segmentKey(memoryId, sequence);
+        segments.remove(key);
+        vectors.remove(key);
+      }
+    }
+  }
+
+  // the sequence holds no separator, so the keys of different memories never collide
+  private static String segmentKey(String memoryId, int sequence) {
+    return memoryId + "#" + sequence;
+  }
+
+  private void compact() {
+    try {
+      db.getStore().compact();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to compact the chat memory file {}", dbFilePath, e);
+    }
+  }
+}
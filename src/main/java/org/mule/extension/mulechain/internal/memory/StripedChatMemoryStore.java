@@ -0,0 +1,160 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Spreads the memories of a dbFilePath over several MapDB files by memory id. Each file has its own transaction log, so
+ * commits of unrelated conversations no longer wait for each other. The stripe of a memory depends on the number of
+ * stripes, which therefore must not change once memories were persisted.
+ * <p>
+ * Memories persisted in the dbFilePath itself, before striping was enabled, are moved to their stripes when the store is
+ * opened. The dbFilePath is then renamed, so they are only moved once.
+ */
+public class StripedChatMemoryStore implements ManagedChatMemoryStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StripedChatMemoryStore.class);
+
+  static final String MIGRATED_SUFFIX = ".migrated";
+
+  private final String dbFilePath;
+  private final PersistentChatMemoryStore[] stripes;
+
+  public StripedChatMemoryStore(String dbFilePath, int stripeCount) {
+    this.dbFilePath = dbFilePath;
+    this.stripes = new PersistentChatMemoryStore[stripeCount];
+    try {
+      for (int i = 0; i < stripeCount; i++) {
+        stripes[i] = new PersistentChatMemoryStore(dbFilePath + "-" + i);
+      }
+      migrateUnstripedFile();
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  @Override
+  public List<ChatMessage> getMessages(Object memoryId) {
+    return stripeOf(memoryId).getMessages(memoryId);
+  }
+
+  @Override
+  public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+    stripeOf(memoryId).updateMessages(memoryId, messages);
+  }
+
+  @Override
+  public void deleteMessages(Object memoryId) {
+    stripeOf(memoryId).deleteMessages(memoryId);
+  }
+
+  @Override
+  public String getSummary(Object memoryId) {
+    return stripeOf(memoryId).getSummary(memoryId);
+  }
+
+  @Override
+  public void updateSummary(Object memoryId, String summary) {
+    stripeOf(memoryId).updateSummary(memoryId, summary);
+  }
+
+  @Override
+  public InMemoryEmbeddingStore<TextSegment> getEmbeddings(Object memoryId) {
+    return stripeOf(memoryId).getEmbeddings(memoryId);
+  }
+
+  @Override
+  public void addEmbeddings(Object memoryId, List<Embedding> embeddings, List<TextSegment> segments) {
+    stripeOf(memoryId).addEmbeddings(memoryId, embeddings, segments);
+  }
+
+  @Override
+  public int evictExpired(long expiredBefore, int batchSize) {
+    int evicted = 0;
+    for (PersistentChatMemoryStore stripe : stripes) {
+      evicted += stripe.evictExpired(expiredBefore, batchSize);
+    }
+    return evicted;
+  }
+
+  @Override
+  public int getMemoryCount() {
+    int memoryCount = 0;
+    for (PersistentChatMemoryStore stripe : stripes) {
+      memoryCount += stripe.getMemoryCount();
+    }
+    return memoryCount;
+  }
+
+  @Override
+  public long getFileSize() {
+    long fileSize = 0;
+    for (PersistentChatMemoryStore stripe : stripes) {
+      fileSize += stripe.getFileSize();
+    }
+    return fileSize;
+  }
+
+  @Override
+  public String getDbFilePath() {
+    return dbFilePath;
+  }
+
+  @Override
+  public void close() {
+    for (PersistentChatMemoryStore stripe : stripes) {
+      if (stripe != null) {
+        stripe.close();
+      }
+    }
+  }
+
+  private void migrateUnstripedFile() {
+    File unstriped = new File(dbFilePath);
+    if (!unstriped.isFile()) {
+      return;
+    }
+    PersistentChatMemoryStore source = new PersistentChatMemoryStore(dbFilePath);
+    int migrated = 0;
+    try {
+      for (String memoryId : source.getMemoryIds()) {
+        stripeOf(memoryId).importMemory(source, memoryId);
+        migrated++;
+      }
+      for (PersistentChatMemoryStore stripe : stripes) {
+        stripe.commit();
+      }
+    } finally {
+      source.close();
+    }
+    // a failed rename would move the same memories again on the next start, overwriting their later updates
+    File[] files = unstriped.getAbsoluteFile().getParentFile()
+        .listFiles((dir, name) -> name.equals(unstriped.getName()) || name.startsWith(unstriped.getName() + ".wal."));
+    for (File file : files != null ? files : new File[0]) {
+      String migratedName = unstriped.getName() + MIGRATED_SUFFIX + file.getName().substring(unstriped.getName().length());
+      if (!file.renameTo(new File(file.getParentFile(), migratedName))) {
+        throw new ModuleException("Unable to rename the chat memory file " + file + " after moving its memories to "
+            + stripes.length + " stripes", MuleChainErrorType.FILE_HANDLING_FAILURE);
+      }
+    }
+    LOGGER.info("Moved {} chat memories of {} to {} stripes, the file was renamed to {}", migrated, dbFilePath,
+                stripes.length, dbFilePath + MIGRATED_SUFFIX);
+  }
+
+  private PersistentChatMemoryStore stripeOf(Object memoryId) {
+    return stripes[Math.floorMod(memoryId.hashCode(), stripes.length)];
+  }
+}
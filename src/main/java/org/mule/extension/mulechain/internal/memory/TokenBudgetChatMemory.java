@@ -0,0 +1,58 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.Tokenizer;
+
+import java.util.List;
+
+/**
+ * Chat memory that keeps the most recent messages fitting in a token budget. It also estimates the tokens of the window
+ * handed to the LLM, so they can be reported back.
+ */
+public class TokenBudgetChatMemory extends EvictingChatMemory {
+
+  private final int maxTokens;
+  private final Tokenizer tokenizer;
+
+  private int tokensSent;
+
+  public TokenBudgetChatMemory(Object id, int maxTokens, Tokenizer tokenizer, ManagedChatMemoryStore store,
+                               boolean includeSummary) {
+    super(id, store, includeSummary);
+    this.maxTokens = maxTokens;
+    this.tokenizer = tokenizer;
+  }
+
+  @Override
+  public List<ChatMessage> messages() {
+    List<ChatMessage> messages = super.messages();
+    // called again after each tool execution of the same request, the last window is the one that was answered
+    tokensSent = tokenizer.estimateTokenCountInMessages(messages);
+    return messages;
+  }
+
+  /**
+   * @return estimated number of memory tokens in the last window handed to the LLM
+   */
+  public int getTokensSent() {
+    return tokensSent;
+  }
+
+  @Override
+  protected void ensureCapacity(List<ChatMessage> messages, List<ChatMessage> evicted) {
+    int currentTokenCount = tokenizer.estimateTokenCountInMessages(messages);
+    while (currentTokenCount > maxTokens) {
+      List<ChatMessage> removed = evictOldest(messages);
+      if (removed.isEmpty()) {
+        return;
+      }
+      for (ChatMessage message : removed) {
+        currentTokenCount -= tokenizer.estimateTokenCountInMessage(message);
+      }
+      evicted.addAll(removed);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.operation;
+
+import dev.langchain4j.model.input.PromptTemplate;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.mule.extension.mulechain.api.metadata.LLMResponseAttributes;
+import org.mule.extension.mulechain.api.metadata.TokenUsage;
+import org.mule.extension.mulechain.internal.batch.BatchJob;
+import org.mule.extension.mulechain.internal.batch.BatchJobStore;
+import org.mule.extension.mulechain.internal.batch.OpenAiBatchClient;
+import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
+import org.mule.extension.mulechain.internal.connection.LangchainLLMConnection;
+import org.mule.extension.mulechain.internal.constants.MuleChainConstants;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.error.provider.AiServiceErrorTypeProvider;
+import org.mule.runtime.extension.api.annotation.Alias;
+import org.mule.runtime.extension.api.annotation.error.Throws;
+import org.mule.runtime.extension.api.annotation.metadata.fixed.OutputJsonType;
+import org.mule.runtime.extension.api.annotation.param.Config;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.Content;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.exception.ModuleException;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mule.extension.mulechain.internal.helpers.ResponseHelper.createLLMResponse;
+import static org.mule.runtime.extension.api.annotation.param.MediaType.APPLICATION_JSON;
+
+/**
+ * This class is a container for operations, every public method in this class will be taken as an extension operation.
+ * <p>
+ * The batch operations answer large sets of prompts offline, through the batch API of the provider, at a lower price and
+ * without competing with the interactive calls for the rate limits. The state of the jobs is kept by the configuration.
+ */
+public class LangchainBatchOperations {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LangchainBatchOperations.class);
+
+  /**
+   * Submits a batch of prompts to the batch API of the provider
+   *
+   * @param configuration Refers to the configuration object
+   * @param connection Provides the HTTP client calling the batch API
+   * @param prompts JSON array of prompts, or of objects holding the variables of the template
+   * @param template Prompt template rendered with the variables of each item, a prompt item is the {{it}} variable
+   * @param modelName Model of the configured LLM type answering the prompts, defaults to the model of the configuration
+   * @return Returns the job, its id is used to get its status and fetch its results
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("BATCH-submit-prompts")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/BatchJobResponse.json")
+  public Result<InputStream, Map<String, Object>> submitPrompts(@Config LangchainLLMConfiguration configuration,
+                                                                @Connection LangchainLLMConnection connection,
+                                                                @Content String prompts,
+                                                                @Optional String template,
+                                                                @Optional String modelName) {
+    try {
+      JSONArray items = new JSONArray(prompts);
+      PromptTemplate promptTemplate = template != null ? PromptTemplate.from(template) : null;
+      List<String> customIds = new ArrayList<>(items.length());
+      List<String> renderedPrompts = new ArrayList<>(items.length());
+      for (int i = 0; i < items.length(); i++) {
+        customIds.add(String.valueOf(i));
+        renderedPrompts.add(LangchainLLMOperations.renderBulkPrompt(items.get(i), promptTemplate));
+      }
+      OpenAiBatchClient client = client(configuration, connection);
+      String inputFileId = client.uploadFile(OpenAiBatchClient.toJsonl(customIds, renderedPrompts,
+                                                                       configuration.getModelParameters(modelName)));
+      JSONObject batch = client.createBatch(inputFileId, configuration.getBatchCompletionWindow());
+      BatchJob job = new BatchJob(UUID.randomUUID().toString(), batch.getString("id"),
+                                  configuration.getModelParameters(modelName).getModelName(), System.currentTimeMillis());
+      job.update(batch);
+      configuration.getBatchJobStore().put(job);
+      LOGGER.debug("Batch job {} of {} prompts submitted as batch {}", job.getJobId(), items.length(), job.getBatchId());
+      return createLLMResponse(job.toJson().toString(), new HashMap<>());
+    } catch (ModuleException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ModuleException("Unable to submit the batch of prompts", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+
+  /**
+   * Gets the status of a batch job from the provider
+   *
+   * @param configuration Refers to the configuration object
+   * @param connection Provides the HTTP client calling the batch API
+   * @param jobId Id of the job returned when the batch was submitted
+   * @return Returns the job with its status and request counts
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("BATCH-get-status")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/BatchJobResponse.json")
+  public Result<InputStream, Map<String, Object>> getBatchStatus(@Config LangchainLLMConfiguration configuration,
+                                                                 @Connection LangchainLLMConnection connection,
+                                                                 String jobId) {
+    try {
+      return createLLMResponse(refresh(configuration, connection, jobId).toJson().toString(), new HashMap<>());
+    } catch (ModuleException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ModuleException("Unable to get the status of the batch job", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+
+  /**
+   * Fetches the results of a completed batch job
+   *
+   * @param configuration Refers to the configuration object
+   * @param connection Provides the HTTP client calling the batch API
+   * @param jobId Id of the job returned when the batch was submitted
+   * @return Returns the job and, once it is completed, the answer or the error of each prompt with the token usage of the
+   *         whole batch in the attributes
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("BATCH-fetch-results")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/BatchResultsResponse.json")
+  public Result<InputStream, LLMResponseAttributes> fetchBatchResults(@Config LangchainLLMConfiguration configuration,
+                                                                      @Connection LangchainLLMConnection connection,
+                                                                      String jobId) {
+    try {
+      BatchJob job = refresh(configuration, connection, jobId);
+      JSONArray resultsArray = new JSONArray();
+      int inputCount = 0;
+      int outputCount = 0;
+      int cachedInputCount = 0;
+      if (job.isCompleted()) {
+        OpenAiBatchClient client = client(configuration, connection);
+        for (String fileId : new String[] {job.getOutputFileId(), job.getErrorFileId()}) {
+          if (fileId == null || fileId.isEmpty()) {
+            continue;
+          }
+          for (String line : client.getFileContent(fileId).split("\n")) {
+            if (line.trim().isEmpty()) {
+              continue;
+            }
+            JSONObject result = OpenAiBatchClient.toResult(new JSONObject(line));
+            JSONObject tokenUsage = result.optJSONObject(MuleChainConstants.TOKEN_USAGE);
+            if (tokenUsage != null) {
+              inputCount += tokenUsage.optInt(MuleChainConstants.INPUT_COUNT);
+              outputCount += tokenUsage.optInt(MuleChainConstants.OUTPUT_COUNT);
+              cachedInputCount += tokenUsage.optInt(MuleChainConstants.CACHED_INPUT_COUNT);
+            }
+            resultsArray.put(result);
+          }
+        }
+      }
+      JSONObject jsonObject = job.toJson();
+      jsonObject.put(MuleChainConstants.RESULTS, resultsArray);
+      return createLLMResponse(jsonObject.toString(),
+                               new TokenUsage(inputCount, outputCount, inputCount + outputCount, cachedInputCount),
+                               new HashMap<>());
+    } catch (ModuleException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ModuleException("Unable to fetch the results of the batch job", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+
+  private static BatchJob refresh(LangchainLLMConfiguration configuration, LangchainLLMConnection connection, String jobId) {
+    BatchJobStore store = configuration.getBatchJobStore();
+    BatchJob job = store.get(jobId);
+    if (job == null) {
+      throw new ModuleException("Unknown batch job: " + jobId, MuleChainErrorType.VALIDATION_FAILURE);
+    }
+    job.update(client(configuration, connection).getBatch(job.getBatchId()));
+    store.put(job);
+    return job;
+  }
+
+  private static OpenAiBatchClient client(LangchainLLMConfiguration configuration, LangchainLLMConnection connection) {
+    return new OpenAiBatchClient(connection.getHttpClient(), configuration.getBatchBaseUrl(), configuration.getBatchApiKey());
+  }
+}
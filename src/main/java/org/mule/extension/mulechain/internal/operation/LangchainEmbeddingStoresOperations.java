@@ -7,7 +7,6 @@ import dev.langchain4j.data.document.BlankDocumentException;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.rag.content.Content;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
@@ -15,8 +14,7 @@ import dev.langchain4j.service.AiServices;
 import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
 
-import static org.mapdb.Serializer.STRING;
-
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
@@ -25,40 +23,60 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import dev.langchain4j.data.embedding.Embedding;
 import static java.util.stream.Collectors.joining;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
 import org.mule.extension.mulechain.api.metadata.LLMResponseAttributes;
+import org.mule.extension.mulechain.api.metadata.TokenUsage;
 import org.mule.extension.mulechain.internal.constants.MuleChainConstants;
 import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
 import org.mule.extension.mulechain.internal.error.provider.EmbeddingErrorTypeProvider;
 import org.mule.extension.mulechain.internal.helpers.FileType;
 import org.mule.extension.mulechain.internal.helpers.FileTypeParameters;
+import org.mule.extension.mulechain.internal.helpers.MemoryWindowParameters;
+import org.mule.extension.mulechain.internal.helpers.MemoryWindowType;
+import org.mule.extension.mulechain.internal.helpers.TokenizerHelper;
+import org.mule.extension.mulechain.internal.memory.EvictingChatMemory;
+import org.mule.extension.mulechain.internal.memory.LongTermChatMemoryIndex;
+import org.mule.extension.mulechain.internal.memory.MessageCountChatMemory;
+import org.mule.extension.mulechain.internal.memory.ManagedChatMemoryStore;
+import org.mule.extension.mulechain.internal.memory.TokenBudgetChatMemory;
 import org.mule.extension.mulechain.internal.operation.LangchainEmbeddingStoresOperations.AssistantSources;
+import org.mule.extension.mulechain.internal.cache.CachedAnswer;
+import org.mule.extension.mulechain.internal.cache.RagAnswerCache;
+import org.mule.extension.mulechain.internal.cache.ResponseCache;
+import org.mule.extension.mulechain.internal.cache.SemanticResponseCache;
+import org.mule.extension.mulechain.internal.cache.SingleFlight;
 import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
+import org.mule.extension.mulechain.internal.connection.LangchainLLMConnection;
+import org.mule.extension.mulechain.internal.llm.AiServiceCache;
+import org.mule.extension.mulechain.internal.llm.ContextPlanner;
+import org.mule.extension.mulechain.internal.llm.TokenBudget;
 import org.mule.extension.mulechain.internal.tools.GenericRestApiTool;
 import org.mule.extension.mulechain.internal.util.ExcludeFromGeneratedCoverage;
 import org.mule.runtime.extension.api.annotation.Alias;
 import org.mule.runtime.extension.api.annotation.error.Throws;
 import org.mule.runtime.extension.api.annotation.metadata.fixed.OutputJsonType;
 import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
 import org.mule.runtime.extension.api.annotation.param.Config;
+import org.mule.runtime.extension.api.annotation.param.Connection;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.chat.request.json.JsonObjectSchema;
 import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.Result;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.tool.ToolExecution;
 import dev.langchain4j.service.tool.ToolExecutor;
 
+import okhttp3.OkHttpClient;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -79,7 +97,6 @@ import dev.langchain4j.model.output.Response;
 import dev.langchain4j.retriever.EmbeddingStoreRetriever;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -87,8 +104,6 @@ import java.net.URL;
 import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
 
 import static dev.langchain4j.data.document.loader.FileSystemDocumentLoader.loadDocument;
-import static dev.langchain4j.data.message.ChatMessageDeserializer.messagesFromJson;
-import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
 import static org.mule.extension.mulechain.internal.helpers.ResponseHelper.createLLMResponse;
 import static org.mule.runtime.extension.api.annotation.param.MediaType.APPLICATION_JSON;
 
@@ -96,6 +111,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.mule.runtime.extension.api.exception.ModuleException;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -111,13 +127,47 @@ public class LangchainEmbeddingStoresOperations {
   @ExcludeFromGeneratedCoverage
   private final EmbeddingModel embeddingModel;
 
-  private InMemoryEmbeddingStore<TextSegment> deserializedStore;
+  private final Map<String, DeserializedStore> deserializedStores = new ConcurrentHashMap<>();
+
+  /**
+   * @return the store read from its file, read again when the file was modified since, whichever operation modified it
+   */
+  private DeserializedStore getDeserializedStore(String storeName, boolean getLatest) {
+    String path = new File(storeName).getAbsoluteFile().toPath().normalize().toString();
+    return deserializedStores.compute(path, (key, current) -> {
+      // read before the file, so a store rewritten while it is read gets a version it does not match
+      String version = RagAnswerCache.storeVersion(storeName);
+      if (current != null && !getLatest && current.version.equals(version)) {
+        return current;
+      }
+      return new DeserializedStore(InMemoryEmbeddingStore.fromFile(storeName), version);
+    });
+  }
+
+  /**
+   * Store read from its file, with the {@link RagAnswerCache#storeVersion(String)} of the file it was read from.
+   */
+  private static final class DeserializedStore {
+
+    private final InMemoryEmbeddingStore<TextSegment> store;
+    private final String version;
 
-  private InMemoryEmbeddingStore<TextSegment> getDeserializedStore(String storeName, boolean getLatest) {
-    if (deserializedStore == null || getLatest) {
-      deserializedStore = InMemoryEmbeddingStore.fromFile(storeName);
+    private DeserializedStore(InMemoryEmbeddingStore<TextSegment> store, String version) {
+      this.store = store;
+      this.version = version;
+    }
+  }
+
+  /**
+   * Called once the store file is rewritten: the answers cached for the previous store are dropped. The queries of any
+   * operation read the modified store, as its file version changed.
+   */
+  private void storeModified(LangchainLLMConfiguration configuration, String storeName) {
+    deserializedStores.remove(new File(storeName).getAbsoluteFile().toPath().normalize().toString());
+    RagAnswerCache ragAnswerCache = configuration.getRagAnswerCache();
+    if (ragAnswerCache != null) {
+      ragAnswerCache.invalidate(storeName);
     }
-    return deserializedStore;
   }
 
 
@@ -195,6 +245,27 @@ public class LangchainEmbeddingStoresOperations {
     }
   }
 
+  /**
+   * Non-blocking variant of RAG-load-document, the embedding and LLM calls run on the executor of the configuration
+   *
+   * @param configuration       Refers to the configuration object
+   * @param data                Defines the query input provided by the user
+   * @param contextPath         Defines the file path which will be embedded
+   * @param fileType            Specifies the type of file. {@link org.mule.extension.mulechain.internal.helpers.FileType} Eg: "any", "text" & "url"
+   * @param callback            Completed with the output response of the query
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("RAG-load-document-async")
+  @Throws(EmbeddingErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void loadDocumentFileAsync(@Config LangchainLLMConfiguration configuration,
+                                    @org.mule.runtime.extension.api.annotation.param.Content String data,
+                                    String contextPath,
+                                    @ParameterGroup(name = "Context") FileTypeParameters fileType,
+                                    CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> loadDocumentFile(configuration, data, contextPath, fileType), callback);
+  }
+
   private void ingestDocument(FileTypeParameters fileType, String contextPath, EmbeddingStoreIngestor ingestor) {
     Document document = null;
     switch (FileType.fromValue(fileType.getFileType())) {
@@ -240,7 +311,8 @@ public class LangchainEmbeddingStoresOperations {
    * @param data                    Refers to the user prompt
    * @param memoryName              Name of the memory to be fetched for further processing by the LLMs
    * @param dbFilePath              Location of the file containing the memory
-   * @param maxMessages             Max messages to be analyzed for that memory.
+   * @param maxMessages             Max messages to be analyzed for that memory, ignored by the token memory window.
+   * @param memoryWindow            Defines how the memory is bounded and what is sent to the LLM along with it
    * @return                        Returns the response as sent by the LLM
    */
   @MediaType(value = APPLICATION_JSON, strict = false)
@@ -251,19 +323,24 @@ public class LangchainEmbeddingStoresOperations {
                                                                                                                               @org.mule.runtime.extension.api.annotation.param.Content String data,
                                                                                                                               String memoryName,
                                                                                                                               String dbFilePath,
-                                                                                                                              int maxMessages) {
+                                                                                                                              int maxMessages,
+                                                                                                                              @ParameterGroup(
+                                                                                                                                  name = "Memory Window") MemoryWindowParameters memoryWindow) {
 
     try {
       LOGGER.debug(
-                   "Chat Answer Prompt With Memory Operation called with userPrompt: {}, memoryName: {}, dbFilePath: {} & maxMessages: {}",
-                   data, memoryName, dbFilePath, maxMessages);
+                   "Chat Answer Prompt With Memory Operation called with userPrompt: {}, memoryName: {}, dbFilePath: {}, maxMessages: {} & memoryWindowType: {}",
+                   data, memoryName, dbFilePath, maxMessages, memoryWindow.getMemoryWindowType());
       ChatLanguageModel model = configuration.getModel();
-      PersistentChatMemoryStore store = new PersistentChatMemoryStore(dbFilePath);
-      ChatMemoryProvider chatMemoryProvider = memoryId -> MessageWindowChatMemory.builder()
-          .id(memoryName)
-          .maxMessages(maxMessages)
-          .chatMemoryStore(store)
-          .build();
+      ManagedChatMemoryStore store = configuration.getChatMemoryManager().getStore(dbFilePath);
+      EvictingChatMemory chatMemory = createChatMemory(configuration, memoryName, store, maxMessages, memoryWindow);
+      LongTermChatMemoryIndex longTermIndex = null;
+      if (memoryWindow.isLongTermMemory()) {
+        longTermIndex = new LongTermChatMemoryIndex(embeddingModel, store, memoryWindow.getLongTermMaxResults(),
+                                                    memoryWindow.getLongTermMinScore());
+        chatMemory.setLongTermIndex(longTermIndex);
+      }
+      ChatMemoryProvider chatMemoryProvider = memoryId -> chatMemory;
 
       AssistantMemory assistant = AiServices.builder(AssistantMemory.class)
           .chatLanguageModel(model)
@@ -272,6 +349,14 @@ public class LangchainEmbeddingStoresOperations {
 
       Result<String> response = assistant.chat(memoryName, data);
 
+      if (longTermIndex != null) {
+        longTermIndex.index(memoryName, chatMemory.getEvictedMessages());
+      }
+      if (memoryWindow.isSummarizeEvictedMessages()) {
+        configuration.getChatMemoryManager().getSummarizer()
+            .summarize(memoryName, chatMemory.getEvictedMessages(), store, model);
+      }
+
       JSONObject jsonObject = new JSONObject();
       jsonObject.put(MuleChainConstants.RESPONSE, response.content());
 
@@ -281,43 +366,68 @@ public class LangchainEmbeddingStoresOperations {
       attributes.put(MuleChainConstants.MEMORY_NAME, memoryName);
       attributes.put(MuleChainConstants.DB_FILE_PATH, dbFilePath);
       attributes.put(MuleChainConstants.MAX_MESSAGES, String.valueOf(maxMessages));
+      attributes.put(MuleChainConstants.MEMORY_WINDOW_TYPE, memoryWindow.getMemoryWindowType());
+      attributes.put(MuleChainConstants.EVICTED_MESSAGES, String.valueOf(chatMemory.getEvictedMessages().size()));
+      attributes.put(MuleChainConstants.SUMMARIZE_EVICTED_MESSAGES, String.valueOf(memoryWindow.isSummarizeEvictedMessages()));
+      if (longTermIndex != null) {
+        attributes.put(MuleChainConstants.RETRIEVED_PAST_TURNS, String.valueOf(chatMemory.getRetrievedTurns()));
+      }
+      if (chatMemory instanceof TokenBudgetChatMemory) {
+        attributes.put(MuleChainConstants.MAX_TOKENS_IN_MEMORY, String.valueOf(memoryWindow.getMaxTokensInMemory()));
+        attributes.put(MuleChainConstants.TOKENS_SENT, String.valueOf(((TokenBudgetChatMemory) chatMemory).getTokensSent()));
+      }
 
       return createLLMResponse(jsonObject.toString(), response, attributes);
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
       throw new ModuleException("Error while responding with the chat provided", MuleChainErrorType.AI_SERVICES_FAILURE, e);
     }
   }
 
-  static class PersistentChatMemoryStore implements ChatMemoryStore {
+  /**
+   * Reports the number of chat memories persisted in a memory file and the size of the file.
+   * @param configuration           Refers to the configuration object
+   * @param dbFilePath              Location of the file containing the memories
+   * @return                        Returns the memory count and the file size in bytes
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("CHAT-get-memory-statistics")
+  @Throws(EmbeddingErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/MemoryStatisticsResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getMemoryStatistics(@Config LangchainLLMConfiguration configuration,
+                                                                                                                       String dbFilePath) {
+    try {
+      LOGGER.debug("Chat Get Memory Statistics Operation called with dbFilePath: {}", dbFilePath);
+      ManagedChatMemoryStore store = configuration.getChatMemoryManager().getStore(dbFilePath);
 
-    private final DB db;
-    private final Map<String, String> map;
+      JSONObject jsonObject = new JSONObject();
+      jsonObject.put(MuleChainConstants.MEMORY_COUNT, store.getMemoryCount());
+      jsonObject.put(MuleChainConstants.FILE_SIZE, store.getFileSize());
 
-    public PersistentChatMemoryStore(String dbMFilePath) {
-      db = DBMaker.fileDB(dbMFilePath)
-          .transactionEnable()
-          .fileLockDisable()
-          .make();
-      map = db.hashMap("messages", STRING, STRING).createOrOpen();
-    }
+      LOGGER.debug("Chat Get Memory Statistics Operation completed with statistics: {}", jsonObject);
 
-    @Override
-    public List<ChatMessage> getMessages(Object memoryId) {
-      String json = map.get((String) memoryId);
-      return messagesFromJson(json);
-    }
+      Map<String, Object> attributes = new HashMap<>();
+      attributes.put(MuleChainConstants.DB_FILE_PATH, dbFilePath);
 
-    @Override
-    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
-      String json = messagesToJson(messages);
-      map.put((String) memoryId, json);
-      db.commit();
+      return createLLMResponse(jsonObject.toString(), attributes);
+    } catch (Exception e) {
+      throw new ModuleException("Error while reading the statistics of the chat memory file " + dbFilePath,
+                                MuleChainErrorType.FILE_HANDLING_FAILURE, e);
     }
+  }
 
-    @Override
-    public void deleteMessages(Object memoryId) {
-      map.remove((String) memoryId);
-      db.commit();
+  private static EvictingChatMemory createChatMemory(LangchainLLMConfiguration configuration, String memoryName,
+                                                     ManagedChatMemoryStore store, int maxMessages,
+                                                     MemoryWindowParameters memoryWindow) {
+    boolean includeSummary = memoryWindow.isSummarizeEvictedMessages();
+    switch (MemoryWindowType.fromValue(memoryWindow.getMemoryWindowType())) {
+      case TOKENS:
+        return new TokenBudgetChatMemory(memoryName, memoryWindow.getMaxTokensInMemory(),
+                                         TokenizerHelper.getTokenizer(configuration), store, includeSummary);
+      case MESSAGES:
+      default:
+        return new MessageCountChatMemory(memoryName, maxMessages, store, includeSummary);
     }
   }
 
@@ -392,6 +502,7 @@ public class LangchainEmbeddingStoresOperations {
 
   /**
    * Add document of type text, any and url to embedding store (in-memory), which is exported to the defined storeName (full path)
+   * @param configuration           Refers to the configuration object
    * @param storeName               Name of the embedding store
    * @param contextPath             Refers to the location of the file to be processed
    * @param maxSegmentSizeInChars   Max allowed size of continuous sequence of characters while embedding
@@ -403,7 +514,8 @@ public class LangchainEmbeddingStoresOperations {
   @Alias("EMBEDDING-add-document-to-store")
   @Throws(EmbeddingErrorTypeProvider.class)
   @OutputJsonType(schema = "api/response/StatusResponse.json")
-  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> addFileEmbedding(String storeName,
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> addFileEmbedding(@Config LangchainLLMConfiguration configuration,
+                                                                                                                    String storeName,
                                                                                                                     String contextPath,
                                                                                                                     int maxSegmentSizeInChars,
                                                                                                                     int maxOverlapSizeInChars,
@@ -424,6 +536,7 @@ public class LangchainEmbeddingStoresOperations {
       ingestDocument(fileType, contextPath, ingestor);
 
       store.serializeToFile(storeName);
+      storeModified(configuration, storeName);
 
       JSONObject jsonObject = new JSONObject();
       jsonObject.put(MuleChainConstants.STATUS, MuleChainConstants.UPDATED);
@@ -473,7 +586,7 @@ public class LangchainEmbeddingStoresOperations {
         minScore = 0.7;
       }
 
-      InMemoryEmbeddingStore<TextSegment> store = getDeserializedStore(storeName, getLatest);
+      InMemoryEmbeddingStore<TextSegment> store = getDeserializedStore(storeName, getLatest).store;
 
       Embedding questionEmbedding = this.embeddingModel.embed(question).content();
 
@@ -535,6 +648,11 @@ public class LangchainEmbeddingStoresOperations {
    * @param data                    Refers to the user prompt or query
    * @param storeName               Name of the store to be queried
    * @param getLatest               Determines whether the store needs to be freshly fetched from the location
+   * @param maxResults              Max segments of the store injected in the prompt
+   * @param minScore                Min relevance score of the segments injected in the prompt
+   * @param maxContextTokens        Max estimated tokens of the segments injected in the prompt, 0 for no limit
+   * @param duplicateSimilarity     Similarity above which a segment is dropped as a near duplicate of a more relevant one,
+   *                                1 keeps them all
    * @return                        Returns the embeddings output by the LLM along with the sources
    */
   @MediaType(value = APPLICATION_JSON, strict = false)
@@ -544,36 +662,94 @@ public class LangchainEmbeddingStoresOperations {
   public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> promptFromEmbedding(@Config LangchainLLMConfiguration configuration,
                                                                                                                          @org.mule.runtime.extension.api.annotation.param.Content String data,
                                                                                                                          String storeName,
-                                                                                                                         boolean getLatest) {
+                                                                                                                         boolean getLatest,
+                                                                                                                         @Optional(
+                                                                                                                             defaultValue = "3") int maxResults,
+                                                                                                                         @Optional(
+                                                                                                                             defaultValue = "0.0") double minScore,
+                                                                                                                         @Optional(
+                                                                                                                             defaultValue = "0") int maxContextTokens,
+                                                                                                                         @Optional(
+                                                                                                                             defaultValue = "0.95") double duplicateSimilarity) {
 
     try {
       LOGGER.debug("Embedding Get info from Store Operation called with storeName: {}, latestFetchRequired:{} & query: {}",
                    storeName, getLatest, data);
-      InMemoryEmbeddingStore<TextSegment> store = getDeserializedStore(storeName, getLatest);
+      Map<String, String> attributes = new HashMap<>();
+      attributes.put(MuleChainConstants.STORE_NAME, storeName);
+      attributes.put(MuleChainConstants.QUESTION, data);
+      attributes.put(MuleChainConstants.GET_LATEST, String.valueOf(getLatest));
+      attributes.put(MuleChainConstants.MAX_RESULTS, String.valueOf(maxResults));
+      attributes.put(MuleChainConstants.MIN_SCORE, String.valueOf(minScore));
+      List<Object> retrieval = Arrays.asList(maxResults, minScore, maxContextTokens, duplicateSimilarity);
+
+      // only answers computed from the current version of the store are cached, the latest store is still read when requested
+      RagAnswerCache ragAnswerCache = getLatest ? null : configuration.getRagAnswerCache();
+      RagAnswerCache.Lookup ragLookup = null;
+      if (ragAnswerCache != null) {
+        ragLookup = ragAnswerCache.lookup(storeName, retrieval + ":" + configuration.getLlmType() + ":"
+            + configuration.getModelParameters(null), data);
+        if (ragLookup.isHit()) {
+          LOGGER.debug("Embedding Get info from Store answered from the RAG answer cache");
+          return createLLMResponse(ragLookup.getAnswer().getContent(), new TokenUsage(0, 0, 0), attributes, true);
+        }
+      }
 
-      ChatLanguageModel model = configuration.getModel();
+      // answers may be outdated when the latest store is requested. The namespace holds the store version, so the answers
+      // of a store are no longer shared once documents are added to it
+      SemanticResponseCache semanticCache = getLatest ? null : configuration.getSemanticResponseCache();
+      SemanticResponseCache.Lookup lookup = null;
+      String semanticStoreVersion = null;
+      if (semanticCache != null) {
+        semanticStoreVersion = RagAnswerCache.storeVersion(storeName);
+        lookup = semanticCache.lookup(semanticStoreVersion + ":" + retrieval + ":" + configuration.getLlmType() + ":"
+            + configuration.getModelParameters(null), data);
+        if (lookup.isHit()) {
+          LOGGER.debug("Embedding Get info from Store answered from the semantic cache with a similarity of {}",
+                       lookup.getSimilarity());
+          attributes.put(MuleChainConstants.SEMANTIC_SIMILARITY, String.valueOf(lookup.getSimilarity()));
+          return createLLMResponse(lookup.getAnswer().getContent(), new TokenUsage(0, 0, 0), attributes, true);
+        }
+      }
 
-      ContentRetriever contentRetriever = new EmbeddingStoreContentRetriever(store, this.embeddingModel);
+      DeserializedStore deserialized = getDeserializedStore(storeName, getLatest);
+      InMemoryEmbeddingStore<TextSegment> store = deserialized.store;
 
-      AssistantSources assistantSources = AiServices.builder(AssistantSources.class)
-          .chatLanguageModel(model)
-          .contentRetriever(contentRetriever)
-          .build();
+      ChatLanguageModel model = configuration.getModel();
+      TokenBudget tokenBudget = configuration.getTokenBudget();
+
+      // one assistant per store file and retrieval parameters, replaced once the file is modified: reloading an unchanged
+      // store reuses it, and the assistants of previous versions do not pin their stores in memory
+      AssistantSources assistantSources = configuration.getAiServiceCache()
+          .get(AssistantSources.class, model, Arrays.asList(storeName, retrieval), deserialized.version,
+               () -> AiServices.builder(AssistantSources.class)
+                   .chatLanguageModel(model)
+                   .contentRetriever(new ContextPlanner(store, this.embeddingModel, tokenBudget, maxResults, minScore,
+                                                        maxContextTokens, duplicateSimilarity))
+                   .build());
 
       Result<String> results;
-      results = assistantSources.chat(data);
+      SingleFlight singleFlight = configuration.getSingleFlight();
+      if (singleFlight != null) {
+        SingleFlight.Shared<Result<String>> shared =
+            singleFlight.execute(ResponseCache.key("rag", storeName, String.valueOf(System.identityHashCode(store)),
+                                                   retrieval.toString(), configuration.getLlmType(), data),
+                                 () -> assistantSources.chat(data));
+        results = shared.getValue();
+        if (shared.isCoalesced()) {
+          attributes.put(MuleChainConstants.COALESCED, String.valueOf(true));
+        }
+      } else {
+        results = assistantSources.chat(data);
+      }
       List<Content> contents = results.sources();
+      attributes.put(MuleChainConstants.ESTIMATED_INPUT_TOKENS, String.valueOf(tokenBudget.estimateContext(data, contents)));
 
       JSONObject jsonObject = new JSONObject();
       jsonObject.put(MuleChainConstants.RESPONSE, results.content());
 
       LOGGER.debug("Embedding Get info from Store Operation completed with response: {}", results.content());
 
-      Map<String, String> attributes = new HashMap<>();
-      attributes.put(MuleChainConstants.STORE_NAME, storeName);
-      attributes.put(MuleChainConstants.QUESTION, data);
-      attributes.put(MuleChainConstants.GET_LATEST, String.valueOf(getLatest));
-
       JSONArray sources = new JSONArray();
       String absoluteDirectoryPath;
       String fileName;
@@ -597,13 +773,56 @@ public class LangchainEmbeddingStoresOperations {
       jsonObject.put(MuleChainConstants.SOURCES, sources);
       LOGGER.debug("Sources for this information: {}", sources);
 
+      if (attributes.containsKey(MuleChainConstants.COALESCED)) {
+        // the caller that reached the provider paid the tokens and filled the cache
+        return createLLMResponse(jsonObject.toString(), new TokenUsage(0, 0, 0), attributes);
+      }
+      if (semanticCache != null && deserialized.version.equals(semanticStoreVersion)) {
+        semanticCache.put(lookup, CachedAnswer.of(jsonObject.toString(), results.tokenUsage()));
+      }
+      if (ragAnswerCache != null) {
+        ragAnswerCache.put(ragLookup, deserialized.version, CachedAnswer.of(jsonObject.toString(), results.tokenUsage()));
+      }
       return createLLMResponse(jsonObject.toString(), results, attributes);
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
       throw new ModuleException(String.format("Error while getting info from the store %s", storeName),
                                 MuleChainErrorType.EMBEDDING_OPERATIONS_FAILURE, e);
     }
   }
 
+  /**
+   * Non-blocking variant of EMBEDDING-get-info-from-store, the LLM call runs on the executor of the configuration
+   * @param configuration           Refers to the configuration object
+   * @param data                    Refers to the user prompt or query
+   * @param storeName               Name of the store to be queried
+   * @param getLatest               Determines whether the store needs to be freshly fetched from the location
+   * @param maxResults              Max segments of the store injected in the prompt
+   * @param minScore                Min relevance score of the segments injected in the prompt
+   * @param maxContextTokens        Max estimated tokens of the segments injected in the prompt, 0 for no limit
+   * @param duplicateSimilarity     Similarity above which a segment is dropped as a near duplicate of a more relevant one,
+   *                                1 keeps them all
+   * @param callback                Completed with the embeddings output by the LLM along with the sources
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("EMBEDDING-get-info-from-store-async")
+  @Throws(EmbeddingErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void promptFromEmbeddingAsync(@Config LangchainLLMConfiguration configuration,
+                                       @org.mule.runtime.extension.api.annotation.param.Content String data,
+                                       String storeName,
+                                       boolean getLatest,
+                                       @Optional(defaultValue = "3") int maxResults,
+                                       @Optional(defaultValue = "0.0") double minScore,
+                                       @Optional(defaultValue = "0") int maxContextTokens,
+                                       @Optional(defaultValue = "0.95") double duplicateSimilarity,
+                                       CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> promptFromEmbedding(configuration, data, storeName, getLatest, maxResults,
+                                                                        minScore, maxContextTokens, duplicateSimilarity),
+                                              callback);
+  }
+
   interface AssistantSources {
 
     Result<String> chat(String userMessage);
@@ -627,6 +846,7 @@ public class LangchainEmbeddingStoresOperations {
    * (AI Services) Usage of tools by a defined AI Agent.<br>
    * Provide a list of tools (APIs) with all required information (endpoint, headers, body, method, etc.) to the AI Agent to use it on purpose.
    * @param configuration           Refers to the configuration object
+   * @param connection              Provides the HTTP client calling the tools
    * @param data                    Refers to the user prompt or query
    * @param toolConfig              Contains the configuration required by the LLM to enable calling tools
    * @return                        Returns the response while considering tools configuration
@@ -636,6 +856,7 @@ public class LangchainEmbeddingStoresOperations {
   @Throws(EmbeddingErrorTypeProvider.class)
   @OutputJsonType(schema = "api/response/Response.json")
   public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> useAIServiceTools(@Config LangchainLLMConfiguration configuration,
+                                                                                                                       @Connection LangchainLLMConnection connection,
                                                                                                                        @org.mule.runtime.extension.api.annotation.param.Content String data,
                                                                                                                        String toolConfig) {
     try {
@@ -661,9 +882,7 @@ public class LangchainEmbeddingStoresOperations {
           .build();
 
 
-      AssistantEmbeddingChat assistantChat = AiServices.builder(AssistantEmbeddingChat.class)
-          .chatLanguageModel(model)
-          .build();
+      AssistantEmbeddingChat assistantChat = configuration.getAiServiceCache().get(AssistantEmbeddingChat.class, model);
 
       //String intermediateAnswer = assistant.chat(data);
       dev.langchain4j.service.Result<String> intermediateAnswer = assistant.chat(data);
@@ -676,15 +895,16 @@ public class LangchainEmbeddingStoresOperations {
       if (findURLs != null) {
 
         toolsUsed = true;
-        // Create an instance of the custom tool with parameters
-        GenericRestApiTool restApiTool = new GenericRestApiTool(findURLs.get(0), "API Call", "Execute GET or POST Requests");
-
-        // Build the assistant with the custom tool
-        AssistantR assistantC = AiServices.builder(AssistantR.class)
-            .chatLanguageModel(model)
-            .tools(restApiTool)
-            //.chatMemory(MessageWindowChatMemory.withMaxMessages(10))
-            .build();
+        // Reuse the assistant built with the custom tool for this URL and connection
+        String apiEndpoint = findURLs.get(0);
+        OkHttpClient httpClient = connection.getHttpClient();
+        AssistantR assistantC = configuration.getAiServiceCache()
+            .get(AssistantR.class, model, Arrays.asList(apiEndpoint, AiServiceCache.identityOf(httpClient)),
+                 () -> AiServices.builder(AssistantR.class)
+                     .chatLanguageModel(model)
+                     .tools(new GenericRestApiTool(httpClient, apiEndpoint, "API Call", "Execute GET or POST Requests"))
+                     //.chatMemory(MessageWindowChatMemory.withMaxMessages(10))
+                     .build());
         // Use the assistant to make a query
         //response = assistantC.chat(intermediateAnswer.content());
         response = assistantC.chat(intermediateAnswer.content());
@@ -701,6 +921,8 @@ public class LangchainEmbeddingStoresOperations {
 
       LOGGER.debug("Tools Use Ai Service Operation completed with response: {}, toolsUsed: {}", response, toolsUsed);
       return createLLMResponse(jsonObject.toString(), response, attributes);
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
       throw new ModuleException("Error occurred while executing AI Tools with the provided config",
                                 MuleChainErrorType.TOOLS_OPERATION_FAILURE, e);
@@ -708,10 +930,31 @@ public class LangchainEmbeddingStoresOperations {
   }
 
 
+  /**
+   * Non-blocking variant of TOOLS-use-ai-service, the LLM and tool calls run on the executor of the configuration
+   * @param configuration           Refers to the configuration object
+   * @param connection              Provides the HTTP client calling the tools
+   * @param data                    Refers to the user prompt or query
+   * @param toolConfig              Contains the configuration required by the LLM to enable calling tools
+   * @param callback                Completed with the response while considering tools configuration
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("TOOLS-use-ai-service-async")
+  @Throws(EmbeddingErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void useAIServiceToolsAsync(@Config LangchainLLMConfiguration configuration,
+                                     @Connection LangchainLLMConnection connection,
+                                     @org.mule.runtime.extension.api.annotation.param.Content String data,
+                                     String toolConfig,
+                                     CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> useAIServiceTools(configuration, connection, data, toolConfig), callback);
+  }
+
   /**
    * (AI Services) Usage of tools by a defined AI Agent.<br>
    * Provide a list of tools (APIs) with all required information (endpoint, headers, body, method, etc.) to the AI Agent to use it on purpose.
    * @param configuration           Refers to the configuration object
+   * @param connection              Provides the HTTP client calling the tools
    * @param data                    Refers to the user prompt or query
    * @param toolConfig              Contains the configuration required by the LLM to enable calling tools
    * @return                        Returns the response while considering tools configuration
@@ -769,6 +1012,8 @@ public class LangchainEmbeddingStoresOperations {
       Map<String, String> attributes = new HashMap<>();
       attributes.put(MuleChainConstants.TOOLS_USED, String.valueOf(result.content().hasToolExecutionRequests()));
       return createLLMResponse(jsonObject.toString(), result, attributes);
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
       throw new ModuleException("Error occurred while executing native AI Tools with the provided config",
                                 MuleChainErrorType.TOOLS_OPERATION_FAILURE, e);
@@ -779,6 +1024,7 @@ public class LangchainEmbeddingStoresOperations {
 
   /**
    * Add document of type text, any and url to embedding store (in-memory), which is exported to the defined storeName (full path)
+   * @param configuration             Refers to the configuration object
    * @param storeName                 Name of the embedding store
    * @param contextPath               Refers to the location of the folder to be processed
    * @param maxSegmentSizeInChars     Max allowed size of continuous sequence of characters while embedding
@@ -790,7 +1036,8 @@ public class LangchainEmbeddingStoresOperations {
   @Alias("EMBEDDING-add-folder-to-store")
   @Throws(EmbeddingErrorTypeProvider.class)
   @OutputJsonType(schema = "api/response/StatusResponse.json")
-  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> addFilesFromFolderEmbedding(String storeName,
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> addFilesFromFolderEmbedding(@Config LangchainLLMConfiguration configuration,
+                                                                                                                               String storeName,
                                                                                                                                String contextPath,
                                                                                                                                int maxSegmentSizeInChars,
                                                                                                                                int maxOverlapSizeInChars,
@@ -810,6 +1057,7 @@ public class LangchainEmbeddingStoresOperations {
       long totalFiles = getTotalFilesCount(contextPath);
       ingestFolder(contextPath, fileType, ingestor);
       store.serializeToFile(storeName);
+      storeModified(configuration, storeName);
 
       JSONObject jsonObject = new JSONObject();
       jsonObject.put(MuleChainConstants.STATUS, MuleChainConstants.UPDATED);
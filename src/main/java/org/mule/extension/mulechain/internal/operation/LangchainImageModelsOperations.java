@@ -36,6 +36,7 @@ import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.mule.runtime.extension.api.exception.ModuleException;
 import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -107,6 +108,8 @@ public class LangchainImageModelsOperations {
       LOGGER.debug("Image Read Operation completed with the response: {}", response.content().text());
 
       return createLLMResponse(jsonObject.toString(), response, new HashMap<>());
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
       throw new ModuleException(String.format("Unable to analyze the provided image %s with the text: %s", contextURL,
                                               data),
@@ -115,6 +118,25 @@ public class LangchainImageModelsOperations {
     }
   }
 
+  /**
+   * Non-blocking variant of IMAGE-read, the LLM call runs on the executor of the configuration
+   *
+   * @param configuration           Refers to the configuration object
+   * @param data                    Refers to the user prompt
+   * @param contextURL              Refers to the image URL to be analyzed
+   * @param callback                Completed with the response returned by the LLM
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("IMAGE-read-async")
+  @Throws(ImageErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void readFromImageAsync(@Config LangchainLLMConfiguration configuration,
+                                 @Content String data,
+                                 String contextURL,
+                                 CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> readFromImage(configuration, data, contextURL), callback);
+  }
+
   /**
    * Generates an image based on the prompt in data
    * @param configuration           Refers to the configuration object
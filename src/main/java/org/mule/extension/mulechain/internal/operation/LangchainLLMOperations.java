@@ -6,40 +6,71 @@ package org.mule.extension.mulechain.internal.operation;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 
 import static org.mule.extension.mulechain.internal.helpers.ResponseHelper.createLLMResponse;
+import static java.net.HttpURLConnection.HTTP_OK;
 import static org.mule.runtime.extension.api.annotation.param.MediaType.APPLICATION_JSON;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.text.StringCharacterIterator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.mule.extension.mulechain.api.metadata.LLMResponseAttributes;
+import org.mule.extension.mulechain.api.metadata.TokenUsage;
+import org.mule.extension.mulechain.internal.cache.CachedAnswer;
+import org.mule.extension.mulechain.internal.cache.RagAnswerCache;
+import org.mule.extension.mulechain.internal.cache.ResponseCache;
+import org.mule.extension.mulechain.internal.cache.SemanticResponseCache;
+import org.mule.extension.mulechain.internal.cache.SingleFlight;
 import org.mule.extension.mulechain.internal.config.LangchainLLMConfiguration;
+import org.mule.extension.mulechain.internal.connection.LangchainLLMConnection;
 import org.mule.extension.mulechain.internal.constants.MuleChainConstants;
 import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
 import org.mule.extension.mulechain.internal.error.provider.AiServiceErrorTypeProvider;
+import org.mule.extension.mulechain.internal.execution.BulkExecutor;
+import org.mule.extension.mulechain.internal.helpers.PromptRoute;
+import org.mule.extension.mulechain.internal.llm.ModelCascade;
+import org.mule.extension.mulechain.internal.llm.PromptRouter;
+import org.mule.extension.mulechain.internal.llm.TokenBudget;
 import org.mule.extension.mulechain.internal.llm.config.ConfigExtractor;
 import org.mule.extension.mulechain.internal.llm.type.ModerationModelType;
+import org.mule.extension.mulechain.internal.traffic.AdaptiveRateLimiter;
+import org.mule.extension.mulechain.internal.traffic.CircuitBreaker;
+import org.mule.extension.mulechain.internal.traffic.HedgingExecutor;
+import org.mule.extension.mulechain.internal.traffic.RoutingChatLanguageModel;
 import org.mule.runtime.extension.api.annotation.Alias;
 import org.mule.runtime.extension.api.annotation.error.Throws;
 import org.mule.runtime.extension.api.annotation.metadata.fixed.OutputJsonType;
+import org.mule.runtime.api.connection.ConnectionException;
 import org.mule.runtime.extension.api.annotation.param.Config;
+import org.mule.runtime.extension.api.annotation.param.Connection;
 import org.mule.runtime.extension.api.annotation.param.Content;
 import org.mule.runtime.extension.api.annotation.param.MediaType;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 
 import dev.langchain4j.model.input.Prompt;
 import dev.langchain4j.model.input.PromptTemplate;
-import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.Result;
+import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
 import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
 import org.mule.runtime.extension.api.exception.ModuleException;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,9 +81,14 @@ public class LangchainLLMOperations {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LangchainLLMOperations.class);
 
+  private static final okhttp3.MediaType JSON = okhttp3.MediaType.get("application/json;charset=utf-8");
+
   interface Assistant {
 
     Result<String> chat(String userMessage);
+
+    @SystemMessage("{{prefix}}")
+    Result<String> chat(@V("prefix") String prefix, @UserMessage String userMessage);
   }
 
   /**
@@ -60,6 +96,7 @@ public class LangchainLLMOperations {
    * 
    * @param configuration Refers to the configuration object
    * @param prompt User defined prompt query
+   * @param modelName Model of the configured LLM type answering this prompt, defaults to the model of the configuration
    * @return Returns the corresponding response as returned by the LLM
    */
   @MediaType(value = APPLICATION_JSON, strict = false)
@@ -67,17 +104,14 @@ public class LangchainLLMOperations {
   @Throws(AiServiceErrorTypeProvider.class)
   @OutputJsonType(schema = "api/response/Response.json")
   public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> answerPromptByModelName(@Config LangchainLLMConfiguration configuration,
-                                                                                                                             @Content String prompt) {
+                                                                                                                             @Content String prompt,
+                                                                                                                             @Optional String modelName) {
     // OpenAI parameters are explained here: https://platform.openai.com/docs/api-reference/chat/create
     try {
       LOGGER.debug("Chat Answer Prompt Operation called with prompt: {}", prompt);
-      ChatLanguageModel model = configuration.getModel();
-      Assistant assistant = AiServices.create(Assistant.class, model);
-      Result<String> answer = assistant.chat(prompt);
-      JSONObject jsonObject = new JSONObject();
-      jsonObject.put(MuleChainConstants.RESPONSE, answer.content());
-      LOGGER.debug("Chat Answer Prompt Operation completed with response: {}", answer.content());
-      return createLLMResponse(jsonObject.toString(), answer, new HashMap<>());
+      return chat(configuration, modelName, prompt);
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
       throw new ModuleException("Unable to respond with the chat provided", MuleChainErrorType.AI_SERVICES_FAILURE, e);
     }
@@ -105,28 +139,548 @@ public class LangchainLLMOperations {
     try {
       LOGGER.debug("Agent Define Prompt Template Operation called with prompt: {}, template: {} & instruction: {}", dataset,
                    template, instructions);
-      ChatLanguageModel model = configuration.getModel();
-
+      TokenBudget tokenBudget = configuration.getTokenBudget();
+      Map<String, String> attributes = new HashMap<>();
+      if (configuration.isPromptCaching()) {
+        // the template and instructions repeat across calls, sent first as a system message they form a cacheable prefix
+        Map<String, Object> variables = new HashMap<>();
+        variables.put(MuleChainConstants.INSTRUCTIONS, instructions);
+        Prompt prefix = PromptTemplate.from(template + System.lineSeparator() + "Instructions: {{instructions}}").apply(variables);
+        int fixedTokens = tokenBudget.estimate(prefix.text() + System.lineSeparator() + "Dataset: ");
+        TokenBudget.Fit fit = tokenBudget.fit(dataset, fixedTokens);
+        putTokenEstimate(attributes, fixedTokens, fit);
+        return chat(configuration, null, prefix.text(), "Dataset: " + fit.getText(), prefix.text(), fit.getText(), attributes);
+      }
       PromptTemplate promptTemplate = PromptTemplate.from(template + System.lineSeparator() + "Instructions: {{instructions}}"
           + System.lineSeparator() + "Dataset: {{dataset}}");
 
       Map<String, Object> variables = new HashMap<>();
       variables.put(MuleChainConstants.INSTRUCTIONS, instructions);
-      variables.put(MuleChainConstants.DATASET, dataset);
+      variables.put(MuleChainConstants.DATASET, "");
+      String fixedPart = promptTemplate.apply(variables).text();
+      int fixedTokens = tokenBudget.estimate(fixedPart);
+      TokenBudget.Fit fit = tokenBudget.fit(dataset, fixedTokens);
+      putTokenEstimate(attributes, fixedTokens, fit);
+      variables.put(MuleChainConstants.DATASET, fit.getText());
 
       Prompt prompt = promptTemplate.apply(variables);
 
-      Assistant assistant = AiServices.create(Assistant.class, model);
+      return chat(configuration, null, null, prompt.text(), fixedPart, fit.getText(), attributes);
+    } catch (ModuleException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ModuleException("Unable to reply with the correct prompt template", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+
+  /**
+   * Reports the pre-flight estimate of the input tokens, the actual ones are reported with the token usage
+   */
+  private static void putTokenEstimate(Map<String, String> attributes, int fixedTokens, TokenBudget.Fit fit) {
+    attributes.put(MuleChainConstants.ESTIMATED_INPUT_TOKENS, String.valueOf(fixedTokens + fit.getTokens()));
+    if (fit.isTruncated()) {
+      LOGGER.debug("Dataset cut by {} tokens to fit the max input tokens", fit.getTruncatedTokens());
+      attributes.put(MuleChainConstants.TRUNCATED_TOKENS, String.valueOf(fit.getTruncatedTokens()));
+    }
+  }
 
-      Result<String> answer = assistant.chat(prompt.text());
+  /**
+   * Answers the rendered prompt with the model, or from the response caches of the configuration when they already hold
+   * the answer. The exact-match cache is looked up first, then the semantic one. On a miss, identical requests in flight
+   * share one provider call when coalescing is enabled. Cache hits and coalesced requests cost no tokens. With hedging
+   * enabled, the provider call is hedged and retried and the attributes report the attempt that answered. With the cascade
+   * enabled, the calls to the configured model go to the fast model first and the attributes report the tier that answered.
+   * With prompt routes, the prompts without a model name go to the model of their route.
+   */
+  private org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> chat(LangchainLLMConfiguration configuration,
+                                                                                                          String modelName,
+                                                                                                          String prompt) {
+    return chat(configuration, modelName, null, prompt, null, null, Collections.emptyMap());
+  }
+
+  /**
+   * @param systemPrefix      static part of the prompt sent as a system message ahead of the user message, so providers
+   *                          caching prompt prefixes reuse it. Null to send the user message alone
+   * @param sharedPart        part of the prompt repeated across calls, such as a template and its instructions. Null when
+   *                          the prompt has no such part
+   * @param varyingPart       rest of the prompt, such as the dataset. The semantic cache only embeds it and scopes its
+   *                          answers by the shared part, which would otherwise dominate the embedding
+   * @param requestAttributes attributes known before the call, added to the ones of the response
+   */
+  private org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> chat(LangchainLLMConfiguration configuration,
+                                                                                                          String modelName,
+                                                                                                          String systemPrefix,
+                                                                                                          String userMessage,
+                                                                                                          String sharedPart,
+                                                                                                          String varyingPart,
+                                                                                                          Map<String, String> requestAttributes) {
+    String prompt = systemPrefix == null ? userMessage : systemPrefix + System.lineSeparator() + userMessage;
+    Function<Assistant, Result<String>> ask =
+        systemPrefix == null ? target -> target.chat(userMessage) : target -> target.chat(systemPrefix, userMessage);
+    PromptRouter promptRouter = configuration.getPromptRouter();
+    PromptRouter.Classification route = null;
+    String modelLlmType = configuration.getLlmType();
+    if (promptRouter != null && modelName == null) {
+      route = promptRouter.classify(userMessage);
+      LOGGER.debug("Prompt routed to {} in {} ns with a similarity of {}", route.getRoute().getLabel(), route.getNanos(),
+                   route.getSimilarity());
+      modelLlmType = route.getRoute().getLlmType();
+      modelName = route.getRoute().getModelName();
+    }
+    String modelDescription = modelLlmType + ":" + configuration.getModelParameters(modelName);
+    ResponseCache responseCache = configuration.getResponseCache();
+    String cacheKey = null;
+    if (responseCache != null) {
+      cacheKey = ResponseCache.key(modelDescription, prompt);
+      CachedAnswer cached = responseCache.get(cacheKey);
+      if (cached != null) {
+        LOGGER.debug("Answer served from the response cache: {}", cached.getContent());
+        return createLLMResponse(toResponseJson(cached.getContent()), new TokenUsage(0, 0, 0), new HashMap<>(requestAttributes),
+                                 true);
+      }
+    }
+    SemanticResponseCache semanticCache = configuration.getSemanticResponseCache();
+    SemanticResponseCache.Lookup lookup = null;
+    if (semanticCache != null) {
+      lookup = sharedPart == null || varyingPart == null || varyingPart.isEmpty()
+          ? semanticCache.lookup(modelDescription, prompt)
+          : semanticCache.lookup(modelDescription + ":" + ResponseCache.key(sharedPart), varyingPart);
+      if (lookup.isHit()) {
+        LOGGER.debug("Answer served from the semantic cache with a similarity of {}", lookup.getSimilarity());
+        Map<String, String> attributes = new HashMap<>(requestAttributes);
+        attributes.put(MuleChainConstants.SEMANTIC_SIMILARITY, String.valueOf(lookup.getSimilarity()));
+        return createLLMResponse(toResponseJson(lookup.getAnswer().getContent()), new TokenUsage(0, 0, 0), attributes, true);
+      }
+    }
+
+    ChatLanguageModel model = configuration.getModel(modelLlmType, modelName);
+    Assistant assistant = configuration.getAiServiceCache().get(Assistant.class, model);
+    Map<String, String> attributes = new HashMap<>(requestAttributes);
+    if (route != null) {
+      attributes.put(MuleChainConstants.ROUTE, route.getRoute().getLabel());
+      attributes.put(MuleChainConstants.ROUTE_SIMILARITY, String.valueOf(route.getSimilarity()));
+      attributes.put(MuleChainConstants.ROUTING_NANOS, String.valueOf(route.getNanos()));
+    }
+    Supplier<Result<String>> call = () -> ask.apply(assistant);
+    HedgingExecutor hedgingExecutor = configuration.getHedgingExecutor();
+    if (hedgingExecutor != null) {
+      // routed prompts are hedged with the model of their route
+      Assistant hedgeAssistant = route != null ? assistant
+          : configuration.getAiServiceCache().get(Assistant.class, configuration.getHedgeModel(modelName));
+      call = () -> {
+        HedgingExecutor.Outcome<Result<String>> outcome =
+            hedgingExecutor.execute(modelDescription, () -> ask.apply(assistant), () -> ask.apply(hedgeAssistant));
+        attributes.put(MuleChainConstants.ATTEMPT, String.valueOf(outcome.getAttempt()));
+        attributes.put(MuleChainConstants.ATTEMPTS, String.valueOf(outcome.getAttempts()));
+        attributes.put(MuleChainConstants.HEDGED, String.valueOf(outcome.isHedge()));
+        return outcome.getValue();
+      };
+    }
+    ModelCascade modelCascade = configuration.getModelCascade();
+    if (modelCascade != null && modelName == null && route == null) {
+      Assistant fastAssistant = configuration.getAiServiceCache().get(Assistant.class, configuration.getCascadeFastModel());
+      Supplier<Result<String>> strongCall = call;
+      call = () -> {
+        ModelCascade.Outcome outcome = modelCascade.execute(userMessage, fastPrompt -> systemPrefix == null
+            ? fastAssistant.chat(fastPrompt)
+            : fastAssistant.chat(systemPrefix, fastPrompt), strongCall);
+        attributes.put(MuleChainConstants.TIER, outcome.getTier());
+        attributes.put(MuleChainConstants.CONFIDENCE, String.valueOf(outcome.getConfidence()));
+        return outcome.getAnswer();
+      };
+    }
+    SingleFlight singleFlight = configuration.getSingleFlight();
+    if (singleFlight != null) {
+      SingleFlight.Shared<Result<String>> shared =
+          singleFlight.execute(ResponseCache.key("chat", modelDescription, prompt), call);
+      if (shared.isCoalesced()) {
+        // the caller that reached the provider paid the tokens and filled the caches
+        LOGGER.debug("Answer shared with an identical in-flight request: {}", shared.getValue().content());
+        Map<String, String> coalescedAttributes = new HashMap<>(requestAttributes);
+        coalescedAttributes.put(MuleChainConstants.COALESCED, String.valueOf(true));
+        return createLLMResponse(toResponseJson(shared.getValue().content()), new TokenUsage(0, 0, 0), coalescedAttributes);
+      }
+      return cacheAnswer(responseCache, cacheKey, semanticCache, lookup, shared.getValue(), attributes);
+    }
+    return cacheAnswer(responseCache, cacheKey, semanticCache, lookup, call.get(), attributes);
+  }
+
+  private static org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> cacheAnswer(ResponseCache responseCache,
+                                                                                                                        String cacheKey,
+                                                                                                                        SemanticResponseCache semanticCache,
+                                                                                                                        SemanticResponseCache.Lookup lookup,
+                                                                                                                        Result<String> answer,
+                                                                                                                        Map<String, String> attributes) {
+    CachedAnswer cachedAnswer = CachedAnswer.of(answer);
+    if (responseCache != null) {
+      responseCache.put(cacheKey, cachedAnswer);
+    }
+    if (semanticCache != null) {
+      semanticCache.put(lookup, cachedAnswer);
+    }
+    LOGGER.debug("Answer returned by the model: {}", answer.content());
+    return createLLMResponse(toResponseJson(answer.content()), answer, attributes);
+  }
+
+  private static String toResponseJson(String answer) {
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.RESPONSE, answer);
+    return jsonObject.toString();
+  }
+
+  /**
+   * Answers a batch of prompts with the model, a bounded number of them at a time. Each prompt is answered like with
+   * CHAT-answer-prompt, from the caches of the configuration when they hold the answer.
+   *
+   * @param configuration Refers to the configuration object
+   * @param prompts JSON array of prompts, or of objects holding the variables of the template
+   * @param template Prompt template rendered with the variables of each item, a prompt item is the {{it}} variable
+   * @param modelName Model of the configured LLM type answering the prompts, defaults to the model of the configuration
+   * @param parallelism Max prompts answered at the same time, lowered to the concurrency limit of the rate limiter
+   * @param ordered Returns the results in the order of the prompts instead of the order they completed in
+   * @return Returns the answer or the error of each prompt, with the token usage of the whole batch in the attributes
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("CHAT-answer-prompts-bulk")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/BulkResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> answerPromptsBulk(@Config LangchainLLMConfiguration configuration,
+                                                                                                                       @Content String prompts,
+                                                                                                                       @Optional String template,
+                                                                                                                       @Optional String modelName,
+                                                                                                                       @Optional(
+                                                                                                                           defaultValue = "8") int parallelism,
+                                                                                                                       @Optional(
+                                                                                                                           defaultValue = "true") boolean ordered) {
+    try {
+      JSONArray items = new JSONArray(prompts);
+      LOGGER.debug("Chat Answer Prompts Bulk Operation called with {} prompts", items.length());
+      PromptTemplate promptTemplate = template != null ? PromptTemplate.from(template) : null;
+      List<Supplier<org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes>>> calls =
+          new ArrayList<>(items.length());
+      for (int i = 0; i < items.length(); i++) {
+        Object item = items.get(i);
+        calls.add(() -> chat(configuration, modelName, renderBulkPrompt(item, promptTemplate)));
+      }
+      AdaptiveRateLimiter rateLimiter = configuration.getRateLimiter(modelName);
+      BulkExecutor bulkExecutor = new BulkExecutor(configuration.getLlmCallExecutor(), parallelism,
+                                                   rateLimiter != null ? rateLimiter::getConcurrencyLimit : () -> Integer.MAX_VALUE);
+      List<BulkExecutor.Item<org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes>>> results =
+          bulkExecutor.execute(calls);
+      if (ordered) {
+        results.sort(Comparator.comparingInt(BulkExecutor.Item::getIndex));
+      }
+
+      JSONArray resultsArray = new JSONArray();
+      int inputCount = 0;
+      int outputCount = 0;
+      int cachedInputCount = 0;
+      int failed = 0;
+      for (BulkExecutor.Item<org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes>> result : results) {
+        JSONObject resultObject = new JSONObject();
+        resultObject.put(MuleChainConstants.INDEX, result.getIndex());
+        if (result.isSuccess()) {
+          try (InputStream output = result.getValue().getOutput()) {
+            resultObject.put(MuleChainConstants.RESPONSE, new JSONObject(IOUtils.toString(output, StandardCharsets.UTF_8))
+                .get(MuleChainConstants.RESPONSE));
+          }
+          TokenUsage tokenUsage = result.getValue().getAttributes().map(LLMResponseAttributes::getTokenUsage).orElse(null);
+          if (tokenUsage != null) {
+            JSONObject tokenUsageObject = new JSONObject();
+            tokenUsageObject.put(MuleChainConstants.INPUT_COUNT, tokenUsage.getInputCount());
+            tokenUsageObject.put(MuleChainConstants.OUTPUT_COUNT, tokenUsage.getOutputCount());
+            tokenUsageObject.put(MuleChainConstants.TOTAL_COUNT, tokenUsage.getTotalCount());
+            resultObject.put(MuleChainConstants.TOKEN_USAGE, tokenUsageObject);
+            inputCount += tokenUsage.getInputCount();
+            outputCount += tokenUsage.getOutputCount();
+            cachedInputCount += tokenUsage.getCachedInputCount();
+          }
+        } else {
+          failed++;
+          Throwable failure = result.getFailure();
+          JSONObject errorObject = new JSONObject();
+          errorObject.put(MuleChainConstants.TYPE, failure instanceof ModuleException
+              ? ((ModuleException) failure).getType().getType()
+              : MuleChainErrorType.AI_SERVICES_FAILURE.getType());
+          errorObject.put(MuleChainConstants.MESSAGE, String.valueOf(failure.getMessage()));
+          resultObject.put(MuleChainConstants.ERROR, errorObject);
+          LOGGER.debug("Prompt {} of the batch failed", result.getIndex(), failure);
+        }
+        resultsArray.put(resultObject);
+      }
 
       JSONObject jsonObject = new JSONObject();
-      jsonObject.put(MuleChainConstants.RESPONSE, answer.content());
-      LOGGER.debug("Agent Define Prompt Template Operation completed with response: {}", answer.content());
-      return createLLMResponse(jsonObject.toString(), answer, new HashMap<>());
+      jsonObject.put(MuleChainConstants.SUCCEEDED, results.size() - failed);
+      jsonObject.put(MuleChainConstants.FAILED, failed);
+      jsonObject.put(MuleChainConstants.RESULTS, resultsArray);
+      Map<String, String> attributes = new HashMap<>();
+      attributes.put(MuleChainConstants.SUCCEEDED, String.valueOf(results.size() - failed));
+      attributes.put(MuleChainConstants.FAILED, String.valueOf(failed));
+      return createLLMResponse(jsonObject.toString(),
+                               new TokenUsage(inputCount, outputCount, inputCount + outputCount, cachedInputCount), attributes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ModuleException("Interrupted while answering the prompts", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    } catch (ModuleException e) {
+      throw e;
     } catch (Exception e) {
-      throw new ModuleException("Unable to reply with the correct prompt template", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+      throw new ModuleException("Unable to respond with the prompts provided", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+
+  static String renderBulkPrompt(Object item, PromptTemplate promptTemplate) {
+    if (item instanceof JSONObject) {
+      if (promptTemplate == null) {
+        throw new ModuleException("A template is required to answer the prompts given as variables",
+                                  MuleChainErrorType.AI_SERVICES_FAILURE);
+      }
+      return promptTemplate.apply(((JSONObject) item).toMap()).text();
+    }
+    return promptTemplate != null ? promptTemplate.apply(item).text() : String.valueOf(item);
+  }
+
+  /**
+   * Non-blocking variant of CHAT-answer-prompt, the LLM call runs on the executor of the configuration
+   *
+   * @param configuration Refers to the configuration object
+   * @param prompt User defined prompt query
+   * @param modelName Model of the configured LLM type answering this prompt, defaults to the model of the configuration
+   * @param callback Completed with the response returned by the LLM
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("CHAT-answer-prompt-async")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void answerPromptByModelNameAsync(@Config LangchainLLMConfiguration configuration,
+                                           @Content String prompt,
+                                           @Optional String modelName,
+                                           CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> answerPromptByModelName(configuration, prompt, modelName), callback);
+  }
+
+  /**
+   * Non-blocking variant of AGENT-define-prompt-template, the LLM call runs on the executor of the configuration
+   *
+   * @param configuration Refers to the configuration object
+   * @param dataset Refers to the user query to be acted upon
+   * @param template Refers to sample template used by LLM to respond adequately to the user queries
+   * @param instructions This provides the LLM on how to understand and respond to the user queries
+   * @param callback Completed with the response returned by the LLM
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("AGENT-define-prompt-template-async")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void definePromptTemplateAsync(@Config LangchainLLMConfiguration configuration,
+                                        @Content(primary = true) String dataset,
+                                        @Content String template,
+                                        @Content String instructions,
+                                        CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> definePromptTemplate(configuration, dataset, template, instructions),
+                                              callback);
+  }
+
+  /**
+   * Reports how the response caches and the request coalescing of the configuration perform
+   *
+   * @param configuration Refers to the configuration object
+   * @return Returns the hits and misses of the exact-match cache, the hits, misses and false hits of the semantic cache, the
+   *         hits, misses and invalidations of the RAG answer cache, and the requests coalesced with identical in-flight
+   *         requests
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("CACHE-get-statistics")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/CacheStatisticsResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getCacheStatistics(@Config LangchainLLMConfiguration configuration) {
+    JSONObject responseCacheObject = new JSONObject();
+    ResponseCache responseCache = configuration.getResponseCache();
+    responseCacheObject.put(MuleChainConstants.ENABLED, responseCache != null);
+    responseCacheObject.put(MuleChainConstants.HITS, responseCache != null ? responseCache.getHitCount() : 0);
+    responseCacheObject.put(MuleChainConstants.MISSES, responseCache != null ? responseCache.getMissCount() : 0);
+
+    JSONObject semanticCacheObject = new JSONObject();
+    SemanticResponseCache semanticCache = configuration.getSemanticResponseCache();
+    semanticCacheObject.put(MuleChainConstants.ENABLED, semanticCache != null);
+    semanticCacheObject.put(MuleChainConstants.HITS, semanticCache != null ? semanticCache.getHitCount() : 0);
+    semanticCacheObject.put(MuleChainConstants.MISSES, semanticCache != null ? semanticCache.getMissCount() : 0);
+    semanticCacheObject.put(MuleChainConstants.VERIFICATIONS, semanticCache != null ? semanticCache.getVerificationCount() : 0);
+    semanticCacheObject.put(MuleChainConstants.FALSE_HITS, semanticCache != null ? semanticCache.getFalseHitCount() : 0);
+    semanticCacheObject.put(MuleChainConstants.SIZE, semanticCache != null ? semanticCache.size() : 0);
+
+    JSONObject ragAnswerCacheObject = new JSONObject();
+    RagAnswerCache ragAnswerCache = configuration.getRagAnswerCache();
+    ragAnswerCacheObject.put(MuleChainConstants.ENABLED, ragAnswerCache != null);
+    ragAnswerCacheObject.put(MuleChainConstants.HITS, ragAnswerCache != null ? ragAnswerCache.getHitCount() : 0);
+    ragAnswerCacheObject.put(MuleChainConstants.MISSES, ragAnswerCache != null ? ragAnswerCache.getMissCount() : 0);
+    ragAnswerCacheObject.put(MuleChainConstants.INVALIDATIONS,
+                             ragAnswerCache != null ? ragAnswerCache.getInvalidationCount() : 0);
+    ragAnswerCacheObject.put(MuleChainConstants.SIZE, ragAnswerCache != null ? ragAnswerCache.size() : 0);
+
+    JSONObject coalescingObject = new JSONObject();
+    SingleFlight singleFlight = configuration.getSingleFlight();
+    coalescingObject.put(MuleChainConstants.ENABLED, singleFlight != null);
+    coalescingObject.put(MuleChainConstants.CALLS, singleFlight != null ? singleFlight.getCallCount() : 0);
+    coalescingObject.put(MuleChainConstants.COALESCED, singleFlight != null ? singleFlight.getCoalescedCount() : 0);
+    coalescingObject.put(MuleChainConstants.IN_FLIGHT, singleFlight != null ? singleFlight.getInFlightCount() : 0);
+
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.RESPONSE_CACHE, responseCacheObject);
+    jsonObject.put(MuleChainConstants.SEMANTIC_CACHE, semanticCacheObject);
+    jsonObject.put(MuleChainConstants.RAG_ANSWER_CACHE, ragAnswerCacheObject);
+    jsonObject.put(MuleChainConstants.COALESCING, coalescingObject);
+    return createLLMResponse(jsonObject.toString(), new HashMap<>());
+  }
+
+  /**
+   * Reports the state of the client side rate limiters of the configuration
+   *
+   * @param configuration Refers to the configuration object
+   * @return Returns, per model called so far, the adaptive concurrency limit, the calls in flight and queued, the request
+   *         and token permits available, and the calls that got their permits, gave up waiting or were throttled by the
+   *         provider
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("RATE-LIMIT-get-metrics")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/RateLimitMetricsResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getRateLimitMetrics(@Config LangchainLLMConfiguration configuration) {
+    JSONObject rateLimitersObject = new JSONObject();
+    for (Map.Entry<String, AdaptiveRateLimiter> entry : configuration.getRateLimiters().entrySet()) {
+      AdaptiveRateLimiter rateLimiter = entry.getValue();
+      JSONObject rateLimiterObject = new JSONObject();
+      rateLimiterObject.put(MuleChainConstants.CONCURRENCY_LIMIT, rateLimiter.getConcurrencyLimit());
+      rateLimiterObject.put(MuleChainConstants.IN_FLIGHT, rateLimiter.getInFlight());
+      rateLimiterObject.put(MuleChainConstants.QUEUED, rateLimiter.getQueued());
+      rateLimiterObject.put(MuleChainConstants.AVAILABLE_REQUESTS, rateLimiter.getAvailableRequests());
+      rateLimiterObject.put(MuleChainConstants.AVAILABLE_TOKENS, rateLimiter.getAvailableTokens());
+      rateLimiterObject.put(MuleChainConstants.ACQUIRED, rateLimiter.getAcquiredCount());
+      rateLimiterObject.put(MuleChainConstants.REJECTED, rateLimiter.getRejectedCount());
+      rateLimiterObject.put(MuleChainConstants.THROTTLED, rateLimiter.getThrottledCount());
+      rateLimitersObject.put(entry.getKey(), rateLimiterObject);
     }
+
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.ENABLED, configuration.isRateLimiting());
+    jsonObject.put(MuleChainConstants.RATE_LIMITERS, rateLimitersObject);
+    return createLLMResponse(jsonObject.toString(), new HashMap<>());
+  }
+
+  /**
+   * Reports how the calls of the configuration are routed between its model and the routing targets
+   *
+   * @param configuration Refers to the configuration object
+   * @return Returns, per target, its weight, observed latency and error rate, and the state of its circuit breaker
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("ROUTING-get-state")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/RoutingStateResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getRoutingState(@Config LangchainLLMConfiguration configuration) {
+    JSONArray targetsArray = new JSONArray();
+    RoutingChatLanguageModel router = configuration.getRouter();
+    if (router != null) {
+      for (RoutingChatLanguageModel.Target target : router.getTargets()) {
+        JSONObject targetObject = new JSONObject();
+        targetObject.put(MuleChainConstants.NAME, target.getName());
+        targetObject.put(MuleChainConstants.WEIGHT, target.getWeight());
+        targetObject.put(MuleChainConstants.LATENCY_EWMA_MILLIS, target.getLatencyEwmaMillis());
+        targetObject.put(MuleChainConstants.ERROR_RATE, target.getErrorRateEwma());
+        targetObject.put(MuleChainConstants.CIRCUIT_STATE, target.getCircuitBreaker().getState().name());
+        targetObject.put(MuleChainConstants.CONSECUTIVE_FAILURES, target.getCircuitBreaker().getConsecutiveFailures());
+        targetsArray.put(targetObject);
+      }
+    }
+
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.ENABLED, router != null);
+    jsonObject.put(MuleChainConstants.TARGETS, targetsArray);
+    return createLLMResponse(jsonObject.toString(), new HashMap<>());
+  }
+
+  /**
+   * Reports how the prompts of the configuration are routed by similarity with the examples of its prompt routes
+   *
+   * @param configuration Refers to the configuration object
+   * @return Returns, per route, its model and the prompts sent to it, the mean time spent classifying a prompt and how many
+   *         classifications reused the embedding of a prompt routed before
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("PROMPT-ROUTING-get-state")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/PromptRoutingStateResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getPromptRoutingState(@Config LangchainLLMConfiguration configuration) {
+    JSONArray routesArray = new JSONArray();
+    PromptRouter promptRouter = configuration.getPromptRouter();
+    if (promptRouter != null) {
+      for (int i = 0; i < promptRouter.getRoutes().size(); i++) {
+        PromptRoute route = promptRouter.getRoutes().get(i);
+        JSONObject routeObject = new JSONObject();
+        routeObject.put(MuleChainConstants.NAME, route.getLabel());
+        routeObject.put(MuleChainConstants.LLM_TYPE, route.getLlmType());
+        routeObject.put(MuleChainConstants.MODEL_NAME, route.getModelName());
+        routeObject.put(MuleChainConstants.EXAMPLES, route.getExamples() != null ? route.getExamples().size() : 0);
+        routeObject.put(MuleChainConstants.ROUTED, promptRouter.getRoutedCount(i));
+        routesArray.put(routeObject);
+      }
+    }
+
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.ENABLED, promptRouter != null);
+    jsonObject.put(MuleChainConstants.MEAN_ROUTING_NANOS, promptRouter != null ? promptRouter.getMeanClassificationNanos() : 0);
+    jsonObject.put(MuleChainConstants.CACHED_EMBEDDINGS, promptRouter != null ? promptRouter.getCachedEmbeddingCount() : 0);
+    jsonObject.put(MuleChainConstants.ROUTES, routesArray);
+    return createLLMResponse(jsonObject.toString(), new HashMap<>());
+  }
+
+  /**
+   * Reports the state of the model cascade of the configuration
+   *
+   * @param configuration Refers to the configuration object
+   * @return Returns the fast model of the cascade, the answers it gave and the answers escalated to the model of the
+   *         configuration
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("CASCADE-get-state")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/CascadeStateResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getCascadeState(@Config LangchainLLMConfiguration configuration) {
+    ModelCascade modelCascade = configuration.getModelCascade();
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.ENABLED, modelCascade != null);
+    jsonObject.put(MuleChainConstants.MODEL_NAME, modelCascade != null ? configuration.getCascadeFastModelName() : null);
+    jsonObject.put(MuleChainConstants.FAST_ANSWERS, modelCascade != null ? modelCascade.getFastAnswerCount() : 0);
+    jsonObject.put(MuleChainConstants.ESCALATIONS, modelCascade != null ? modelCascade.getEscalationCount() : 0);
+    return createLLMResponse(jsonObject.toString(), new HashMap<>());
+  }
+
+  /**
+   * Reports the state of the circuit breakers of the configuration
+   *
+   * @param configuration Refers to the configuration object
+   * @return Returns, per model or API called so far, the state of its circuit, its consecutive failures, the calls rejected
+   *         while it was open and how many times it opened
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("CIRCUIT-BREAKER-get-state")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/CircuitBreakerStateResponse.json")
+  public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, Map<String, Object>> getCircuitBreakerState(@Config LangchainLLMConfiguration configuration) {
+    JSONObject circuitBreakersObject = new JSONObject();
+    for (Map.Entry<String, CircuitBreaker> entry : configuration.getCircuitBreakers().entrySet()) {
+      CircuitBreaker circuitBreaker = entry.getValue();
+      JSONObject circuitBreakerObject = new JSONObject();
+      circuitBreakerObject.put(MuleChainConstants.STATE, circuitBreaker.getState().name());
+      circuitBreakerObject.put(MuleChainConstants.CONSECUTIVE_FAILURES, circuitBreaker.getConsecutiveFailures());
+      circuitBreakerObject.put(MuleChainConstants.REJECTED, circuitBreaker.getRejectedCount());
+      circuitBreakerObject.put(MuleChainConstants.OPENED, circuitBreaker.getOpenedCount());
+      circuitBreakersObject.put(entry.getKey(), circuitBreakerObject);
+    }
+
+    JSONObject jsonObject = new JSONObject();
+    jsonObject.put(MuleChainConstants.ENABLED, configuration.isCircuitBreaker());
+    jsonObject.put(MuleChainConstants.CIRCUIT_BREAKERS, circuitBreakersObject);
+    return createLLMResponse(jsonObject.toString(), new HashMap<>());
   }
 
   /**
@@ -190,8 +744,8 @@ public class LangchainLLMOperations {
       // Fetch the language model from the configuration
       ChatLanguageModel model = configuration.getModel();
 
-      // Create an instance of SentimentAnalyzer using the language model
-      SentimentAnalyzer sentimentAnalyzer = AiServices.create(SentimentAnalyzer.class, model);
+      // Reuse the SentimentAnalyzer of the language model
+      SentimentAnalyzer sentimentAnalyzer = configuration.getAiServiceCache().get(SentimentAnalyzer.class, model);
 
       // Analyze sentiment of the provided data and get a floating-point score between -1 and 1
       Result<Double> sentimentResult = sentimentAnalyzer.analyzeSentimentOf(data);
@@ -212,7 +766,7 @@ public class LangchainLLMOperations {
 
         // Call the answerPromptByModelName method to get the chat response based on the input data
         org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> chatResponseResult =
-            answerPromptByModelName(configuration, chatPrompt);
+            answerPromptByModelName(configuration, chatPrompt, null);
 
         InputStream chatResponseStream = chatResponseResult.getOutput();
 
@@ -230,6 +784,8 @@ public class LangchainLLMOperations {
       // Return the final result encapsulating the combined response and attributes
       return createLLMResponse(combinedResponse.toString(), sentimentResult, new HashMap<>());
 
+    } catch (ModuleException e) {
+      throw e;
     } catch (IllegalArgumentException ex) {
       LOGGER.error("Invalid input provided for sentiment analysis: {}", ex.getMessage());
       throw new ModuleException("Invalid input for sentiment analysis", MuleChainErrorType.AI_SERVICES_FAILURE, ex);
@@ -271,19 +827,27 @@ public class LangchainLLMOperations {
 
   /**
    * Use OpenAI or Mistral Moderation models to moderate the input (any, from user or llm)
+   *
+   * @param configuration Refers to the configuration object
+   * @param connection Provides the HTTP client calling the moderation API
+   * @param input Refers to the input to moderate
+   * @return Returns the moderation result
    */
   @MediaType(value = APPLICATION_JSON, strict = false)
   @Alias("Toxicity-detection")
   @Throws(AiServiceErrorTypeProvider.class)
   @OutputJsonType(schema = "api/response/Response.json")
   public org.mule.runtime.extension.api.runtime.operation.Result<InputStream, LLMResponseAttributes> moderateInput(@Config LangchainLLMConfiguration configuration,
-                                                                                                                   String input) {
+                                                                                                                   @Connection LangchainLLMConnection connection,
+                                                                                                                   String input)
+      throws ConnectionException {
     try {
       JSONObject resultObject =
           org.mule.extension.mulechain.internal.llm.type.ModerationModelType.moderationType(input, configuration);
 
-      String response = executeREST(resultObject.getString("url"), resultObject.getString("apiKey"),
-                                    resultObject.getJSONObject("payload").toString());
+      String url = resultObject.getString("url");
+      String response = executeREST(connection.getHttpClient(), url, resultObject.getString("apiKey"),
+                                    resultObject.getJSONObject("payload").toString(), configuration.getCircuitBreaker(url));
 
       JSONObject jsonObject = new JSONObject();
       jsonObject.put(MuleChainConstants.RESPONSE, new JSONObject(response));
@@ -294,52 +858,87 @@ public class LangchainLLMOperations {
           .tokenUsage(null)
           .build();;
       return createLLMResponse(jsonObject.toString(), answer, new HashMap<>());
+    } catch (ModuleException e) {
+      throw e;
+    } catch (ConnectionException e) {
+      // lets Mule reconnect
+      throw e;
     } catch (Exception e) {
       throw new ModuleException("Unable to perform toxicity detection", MuleChainErrorType.AI_SERVICES_FAILURE, e);
     }
   }
 
-  private static HttpURLConnection getConnectionObject(URL url, String apiKey) throws IOException {
-    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-    conn.setDoOutput(true);
-    conn.setRequestMethod("POST");
-    conn.setRequestProperty("Authorization", "Bearer " + apiKey);
-    conn.setRequestProperty("Content-Type", "application/json;charset=utf-8");
-    return conn;
+  /**
+   * Non-blocking variant of Toxicity-detection, the moderation call runs on the executor of the configuration
+   *
+   * @param configuration Refers to the configuration object
+   * @param connection Provides the HTTP client calling the moderation API
+   * @param input Refers to the input to moderate
+   * @param callback Completed with the moderation result
+   */
+  @MediaType(value = APPLICATION_JSON, strict = false)
+  @Alias("Toxicity-detection-async")
+  @Throws(AiServiceErrorTypeProvider.class)
+  @OutputJsonType(schema = "api/response/Response.json")
+  public void moderateInputAsync(@Config LangchainLLMConfiguration configuration,
+                                 @Connection LangchainLLMConnection connection,
+                                 String input,
+                                 CompletionCallback<InputStream, LLMResponseAttributes> callback) {
+    configuration.getLlmCallExecutor().submit(() -> {
+      try {
+        return moderateInput(configuration, connection, input);
+      } catch (ConnectionException e) {
+        // the callback only takes unchecked errors, the connection error is kept as the cause
+        throw new ModuleException("Unable to reach the moderation API", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+      }
+    }, callback);
   }
 
-  private static String executeREST(String urlString, String apiKey, String payload) {
-
+  /**
+   * @param circuitBreaker breaker of the endpoint, null when circuit breaking is disabled. Server errors, 429 answers and
+   *                       unreachable endpoints count as failures
+   */
+  private static String executeREST(OkHttpClient httpClient, String urlString, String apiKey, String payload,
+                                    CircuitBreaker circuitBreaker)
+      throws ConnectionException {
+
+    Request request = new Request.Builder()
+        .url(urlString)
+        .header("Authorization", "Bearer " + apiKey)
+        .post(RequestBody.create(payload, JSON))
+        .build();
+    if (circuitBreaker != null) {
+      circuitBreaker.acquire(urlString);
+    }
+    Response execution;
     try {
-      URL url = new URL(urlString);
-      HttpURLConnection conn = getConnectionObject(url, apiKey);
-
-      try (OutputStream os = conn.getOutputStream()) {
-        byte[] input = payload.getBytes(StandardCharsets.UTF_8);
-        os.write(input, 0, input.length);
-      }
-
-      int responseCode = conn.getResponseCode();
-      if (responseCode == HttpURLConnection.HTTP_OK) {
-        try (BufferedReader br = new BufferedReader(
-                                                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-          StringBuilder response = new StringBuilder();
-          String responseLine;
-          while ((responseLine = br.readLine()) != null) {
-            response.append(responseLine.trim());
-          }
-          return response.toString();
-        }
+      execution = httpClient.newCall(request).execute();
+    } catch (IOException e) {
+      recordOutcome(circuitBreaker, true);
+      // rethrown as is by Toxicity-detection, which lets Mule reconnect
+      throw new ConnectionException("Unable to reach " + urlString, e);
+    }
+    try (Response response = execution) {
+      recordOutcome(circuitBreaker, response.code() >= 500 || response.code() == 429);
+      if (response.code() == HTTP_OK) {
+        return response.body() != null ? response.body().string().trim() : "";
       } else {
-        return "Error: " + responseCode;
+        return "Error: " + response.code();
       }
-    } catch (Exception e) {
-      e.printStackTrace();
-      return "Exception occurred: " + e.getMessage();
+    } catch (IOException e) {
+      throw new ConnectionException("Unable to read the response of " + urlString, e);
     }
-
   }
 
-
+  private static void recordOutcome(CircuitBreaker circuitBreaker, boolean failed) {
+    if (circuitBreaker == null) {
+      return;
+    }
+    if (failed) {
+      circuitBreaker.onFailure();
+    } else {
+      circuitBreaker.onSuccess();
+    }
+  }
 
 }
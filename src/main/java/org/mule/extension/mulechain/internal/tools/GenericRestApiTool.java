@@ -5,27 +5,30 @@ package org.mule.extension.mulechain.internal.tools;
 
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.lang.annotation.Annotation;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 
 public class GenericRestApiTool implements Tool {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(GenericRestApiTool.class);
 
+  private static final MediaType JSON = MediaType.get("application/json; charset=UTF-8");
+
+  private final OkHttpClient httpClient;
   private final String apiEndpoint;
   private final String name;
   private final String description;
 
-  public GenericRestApiTool(String apiEndpoint, String name, String description) {
+  public GenericRestApiTool(OkHttpClient httpClient, String apiEndpoint, String name, String description) {
+    this.httpClient = httpClient;
     this.apiEndpoint = apiEndpoint;
     this.name = name;
     this.description = description;
@@ -62,43 +65,36 @@ public class GenericRestApiTool implements Tool {
       }
 
       LOGGER.info("apiEndpoint-{}", apiEndpoint);
-      URL url = new URL(urlBuilder.toString());
-
-      HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-      conn.setRequestMethod(method.toUpperCase());
-      conn.setRequestProperty("Authorization", authHeader);
-      conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-      conn.setRequestProperty("Accept", "application/json");
+      Request.Builder request = new Request.Builder()
+          .url(urlBuilder.toString())
+          .header("Accept", "application/json");
+      if (authHeader != null) {
+        request.header("Authorization", authHeader);
+      }
 
       // If the request method is POST, send the payload
       if ("POST".equalsIgnoreCase(method) && payload != null && !payload.isEmpty()) {
         LOGGER.info("POST");
-        conn.setDoOutput(true);
-        byte[] inputBytes = payload.getBytes(StandardCharsets.UTF_8);
-        try (OutputStream os = conn.getOutputStream()) {
-          os.write(inputBytes, 0, inputBytes.length);
-        }
+        request.post(RequestBody.create(payload, JSON));
+      } else {
+        String upperCaseMethod = method.toUpperCase();
+        boolean bodyRequired = "POST".equals(upperCaseMethod) || "PUT".equals(upperCaseMethod) || "PATCH".equals(upperCaseMethod);
+        request.method(upperCaseMethod, bodyRequired ? RequestBody.create("", JSON) : null);
       }
 
-      int responseCode = conn.getResponseCode();
-      LOGGER.info("Response code: {}", responseCode);
-      if (responseCode == 200) {
-        BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-          sb.append(line + "\n");
+      try (Response response = httpClient.newCall(request.build()).execute()) {
+        int responseCode = response.code();
+        LOGGER.info("Response code: {}", responseCode);
+        if (responseCode == 200) {
+          String value = response.body() != null ? response.body().string() : "";
+          LOGGER.info("Response received: {}", value);
+          return value;
+        } else {
+          LOGGER.info("Response code received: {}", responseCode);
+          return "Error: Received response code " + responseCode;
         }
-        br.close();
-        String value = sb.toString();
-        LOGGER.info("Response received: {}", value);
-        return value;
-      } else {
-        LOGGER.info("Response code received: {}", responseCode);
-        return "Error: Received response code " + responseCode;
       }
-    } catch (IOException e) {
+    } catch (IOException | IllegalArgumentException e) {
       LOGGER.warn("Error while executing POST requests for tool: ", e);
       return "Error: " + e.getMessage();
     }
@@ -0,0 +1,319 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client side limits of the calls to one provider model. Calls need a request permit and enough token permits, both
+ * refilled continuously up to their per minute limit, and a concurrency slot. The concurrency limit adapts (AIMD): it
+ * grows by one every limit successful calls, shrinks by 10% when a call is slower than the latency threshold and is
+ * halved when the provider answers 429. Calls wait for their permits up to the max wait and fail with RATE_LIMIT_EXCEEDED
+ * afterwards.
+ * <p>
+ * Token permits are reserved from the estimated prompt tokens plus the max tokens of the answer, the reservation is
+ * reconciled with the actual usage once the call completes.
+ */
+public class AdaptiveRateLimiter {
+
+  private static final double LATENCY_BACKOFF = 0.9;
+  private static final double THROTTLE_BACKOFF = 0.5;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition permitsChanged = lock.newCondition();
+
+  private final TokenBucket requestBucket;
+  private final TokenBucket tokenBucket;
+  private final int maxConcurrency;
+  private final long latencyThresholdNanos;
+  private final long maxWaitNanos;
+
+  private double concurrencyLimit;
+  private int inFlight;
+  private int queued;
+  private long acquired;
+  private long rejected;
+  private long throttled;
+
+  /**
+   * @param requestsPerMinute     max calls per minute, 0 for no limit
+   * @param tokensPerMinute       max tokens per minute, 0 for no limit
+   * @param maxConcurrency        max calls in flight, the adaptive limit never grows above it
+   * @param latencyThresholdNanos calls slower than this shrink the concurrency limit, 0 to only react to 429s
+   * @param maxWaitNanos          max time a call waits for its permits
+   */
+  public AdaptiveRateLimiter(long requestsPerMinute, long tokensPerMinute, int maxConcurrency, long latencyThresholdNanos,
+                             long maxWaitNanos) {
+    long now = System.nanoTime();
+    this.requestBucket = requestsPerMinute > 0 ? new TokenBucket(requestsPerMinute, now) : null;
+    this.tokenBucket = tokensPerMinute > 0 ? new TokenBucket(tokensPerMinute, now) : null;
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+    this.latencyThresholdNanos = latencyThresholdNanos;
+    this.maxWaitNanos = maxWaitNanos;
+    this.concurrencyLimit = this.maxConcurrency;
+  }
+
+  public boolean isLimitingTokens() {
+    return tokenBucket != null;
+  }
+
+  /**
+   * Waits until the call may run.
+   *
+   * @param estimatedTokens tokens reserved for the call
+   * @return the permit to release once the call completes
+   * @throws ModuleException with RATE_LIMIT_EXCEEDED when the permits are not available within the max wait
+   */
+  public Permit acquire(long estimatedTokens) {
+    // a call larger than the whole budget waits for a full bucket instead of forever
+    double tokens = tokenBucket != null ? Math.min(estimatedTokens, tokenBucket.capacity) : 0;
+    long deadline = System.nanoTime() + maxWaitNanos;
+    lock.lock();
+    try {
+      queued++;
+      try {
+        while (true) {
+          long now = System.nanoTime();
+          long waitNanos = nanosUntilAvailable(tokens, now);
+          if (waitNanos == 0) {
+            if (requestBucket != null) {
+              requestBucket.take(1);
+            }
+            if (tokenBucket != null) {
+              tokenBucket.take(tokens);
+            }
+            inFlight++;
+            acquired++;
+            return new Permit((long) tokens, now);
+          }
+          long remaining = deadline - now;
+          if (remaining <= 0) {
+            rejected++;
+            throw new ModuleException(String.format("Rate limit permits not available within %d ms",
+                                                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)),
+                                      MuleChainErrorType.RATE_LIMIT_EXCEEDED);
+          }
+          permitsChanged.awaitNanos(Math.min(waitNanos, remaining));
+        }
+      } finally {
+        queued--;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ModuleException("Interrupted while waiting for rate limit permits", MuleChainErrorType.RATE_LIMIT_EXCEEDED, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Releases the concurrency slot of the call and adapts the limits to its outcome.
+   *
+   * @param permit       permit of the call
+   * @param actualTokens tokens the call used, negative when unknown
+   * @param failure      error of the call, null when it succeeded
+   */
+  public void release(Permit permit, long actualTokens, Throwable failure) {
+    long latencyNanos = System.nanoTime() - permit.startNanos;
+    lock.lock();
+    try {
+      inFlight--;
+      if (tokenBucket != null && actualTokens >= 0) {
+        tokenBucket.take(actualTokens - permit.reservedTokens);
+      }
+      if (failure != null && isThrottled(failure)) {
+        throttled++;
+        concurrencyLimit = Math.max(1, concurrencyLimit * THROTTLE_BACKOFF);
+      } else if (failure == null) {
+        if (latencyThresholdNanos > 0 && latencyNanos > latencyThresholdNanos) {
+          concurrencyLimit = Math.max(1, concurrencyLimit * LATENCY_BACKOFF);
+        } else {
+          concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+        }
+      }
+      permitsChanged.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return 0 when the call may run now, otherwise how long to wait before checking again
+   */
+  private long nanosUntilAvailable(double tokens, long now) {
+    long waitNanos = 0;
+    if (requestBucket != null) {
+      waitNanos = Math.max(waitNanos, requestBucket.nanosUntil(1, now));
+    }
+    if (tokenBucket != null) {
+      waitNanos = Math.max(waitNanos, tokenBucket.nanosUntil(tokens, now));
+    }
+    if (inFlight >= (int) concurrencyLimit) {
+      // woken up by the release of a slot
+      waitNanos = Long.MAX_VALUE;
+    }
+    return waitNanos;
+  }
+
+  /**
+   * @return true when the provider rejected the call because of its own rate limits
+   */
+  static boolean isThrottled(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+      String message = cause.getMessage();
+      if (message == null) {
+        continue;
+      }
+      String lowerCaseMessage = message.toLowerCase(Locale.ROOT);
+      if (lowerCaseMessage.contains("429") || lowerCaseMessage.contains("rate limit")
+          || lowerCaseMessage.contains("too many requests")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int getConcurrencyLimit() {
+    lock.lock();
+    try {
+      return (int) concurrencyLimit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueued() {
+    lock.lock();
+    try {
+      return queued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return request permits available now, -1 when requests are not limited
+   */
+  public long getAvailableRequests() {
+    return available(requestBucket);
+  }
+
+  /**
+   * @return token permits available now, -1 when tokens are not limited
+   */
+  public long getAvailableTokens() {
+    return available(tokenBucket);
+  }
+
+  private long available(TokenBucket bucket) {
+    if (bucket == null) {
+      return -1;
+    }
+    lock.lock();
+    try {
+      bucket.refill(System.nanoTime());
+      return (long) Math.max(0, bucket.available);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return calls that got their permits
+   */
+  public long getAcquiredCount() {
+    lock.lock();
+    try {
+      return acquired;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return calls that gave up after waiting the max wait
+   */
+  public long getRejectedCount() {
+    lock.lock();
+    try {
+      return rejected;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return calls rejected by the provider with a 429
+   */
+  public long getThrottledCount() {
+    lock.lock();
+    try {
+      return throttled;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public static final class Permit {
+
+    private final long reservedTokens;
+    private final long startNanos;
+
+    private Permit(long reservedTokens, long startNanos) {
+      this.reservedTokens = reservedTokens;
+      this.startNanos = startNanos;
+    }
+  }
+
+  /**
+   * Refilled continuously at capacity per minute. Guarded by the lock of the limiter. The balance may go negative when a
+   * call used more tokens than it reserved, later calls then wait for the debt to be refilled.
+   */
+  private static final class TokenBucket {
+
+    private final double capacity;
+    private final double permitsPerNano;
+    private double available;
+    private long lastRefill;
+
+    private TokenBucket(long permitsPerMinute, long now) {
+      this.capacity = permitsPerMinute;
+      this.permitsPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+      this.available = capacity;
+      this.lastRefill = now;
+    }
+
+    private void refill(long now) {
+      available = Math.min(capacity, available + (now - lastRefill) * permitsPerNano);
+      lastRefill = now;
+    }
+
+    private long nanosUntil(double permits, long now) {
+      refill(now);
+      if (available >= permits) {
+        return 0;
+      }
+      return Math.max(1, (long) Math.ceil((permits - available) / permitsPerNano));
+    }
+
+    private void take(double permits) {
+      available -= permits;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a chat model to act around its calls. Every generate variant, with or without tools, goes through
+ * {@link #around(List, Supplier)}, so AI Services proxies and tool executions built on the decorated model are covered
+ * as well.
+ */
+public abstract class ChatLanguageModelDecorator implements ChatLanguageModel {
+
+  protected final ChatLanguageModel delegate;
+
+  protected ChatLanguageModelDecorator(ChatLanguageModel delegate) {
+    this.delegate = delegate;
+  }
+
+  public ChatLanguageModel getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public Response<AiMessage> generate(List<ChatMessage> messages) {
+    return around(messages, () -> delegate.generate(messages));
+  }
+
+  @Override
+  public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+    return around(messages, () -> delegate.generate(messages, toolSpecifications));
+  }
+
+  @Override
+  public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+    return around(messages, () -> delegate.generate(messages, toolSpecification));
+  }
+
+  /**
+   * @param messages messages sent to the model
+   * @param call     calls the decorated model
+   * @return the response of the call
+   */
+  protected abstract Response<AiMessage> around(List<ChatMessage> messages, Supplier<Response<AiMessage>> call);
+}
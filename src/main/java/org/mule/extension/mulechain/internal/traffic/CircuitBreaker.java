@@ -0,0 +1,184 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling an endpoint after consecutive failures. The circuit opens after the failure threshold and rejects the
+ * calls during the open interval. It then lets a few probe calls through (half-open): the circuit closes again once they
+ * all succeed and opens again on the first failure.
+ * <p>
+ * Every call allowed by {@link #tryAcquire()} must report its outcome with {@link #onSuccess()}, {@link #onFailure()}
+ * or, when the outcome says nothing about the endpoint, {@link #onIgnored()}.
+ */
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openIntervalNanos;
+  private final int halfOpenProbes;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private int probesInFlight;
+  private int probesSucceeded;
+  private long rejected;
+  private long opened;
+
+  /**
+   * @param failureThreshold  consecutive failures opening the circuit
+   * @param openIntervalNanos time the circuit stays open before probing the endpoint
+   * @param halfOpenProbes    successful probe calls closing the circuit again
+   */
+  public CircuitBreaker(int failureThreshold, long openIntervalNanos, int halfOpenProbes) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openIntervalNanos = openIntervalNanos;
+    this.halfOpenProbes = Math.max(1, halfOpenProbes);
+  }
+
+  /**
+   * Runs the call when the circuit lets it through and records its outcome. Errors raised by the connector itself, such as
+   * client side rate limits, and client errors of the provider, such as invalid requests, say nothing about the health of
+   * the endpoint and are not counted as failures.
+   *
+   * @param name endpoint called, reported in the error
+   * @param call blocking call to the endpoint
+   * @return the result of the call
+   * @throws ModuleException with CIRCUIT_OPEN when the circuit is open
+   */
+  public <T> T call(String name, Supplier<T> call) {
+    acquire(name);
+    T result;
+    try {
+      result = call.get();
+    } catch (ModuleException e) {
+      onIgnored();
+      throw e;
+    } catch (RuntimeException e) {
+      if (ProviderErrors.isClientError(e)) {
+        onIgnored();
+      } else {
+        onFailure();
+      }
+      throw e;
+    } catch (Error e) {
+      onFailure();
+      throw e;
+    }
+    onSuccess();
+    return result;
+  }
+
+  /**
+   * Lets the call through or fails it. The outcome of the call must then be reported.
+   *
+   * @param name endpoint called, reported in the error
+   * @throws ModuleException with CIRCUIT_OPEN when the circuit is open
+   */
+  public void acquire(String name) {
+    if (!tryAcquire()) {
+      throw new ModuleException(String.format("The circuit of %s is open after %d consecutive failures, retry in %d ms", name,
+                                              getConsecutiveFailures(), TimeUnit.NANOSECONDS.toMillis(getRemainingOpenNanos())),
+                                MuleChainErrorType.CIRCUIT_OPEN);
+    }
+  }
+
+  /**
+   * @return true when the call may go to the endpoint
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN) {
+      if (System.nanoTime() - openedAt < openIntervalNanos) {
+        rejected++;
+        return false;
+      }
+      state = State.HALF_OPEN;
+      probesInFlight = 0;
+      probesSucceeded = 0;
+    }
+    if (state == State.HALF_OPEN) {
+      if (probesInFlight + probesSucceeded >= halfOpenProbes) {
+        rejected++;
+        return false;
+      }
+      probesInFlight++;
+    }
+    return true;
+  }
+
+  public synchronized void onSuccess() {
+    if (state == State.HALF_OPEN) {
+      // calls started before the circuit opened may complete while it is half-open
+      probesInFlight = Math.max(0, probesInFlight - 1);
+      if (++probesSucceeded >= halfOpenProbes) {
+        state = State.CLOSED;
+      }
+    }
+    consecutiveFailures = 0;
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      if (state != State.OPEN) {
+        opened++;
+      }
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+    }
+  }
+
+  /**
+   * Releases the probe slot of a call whose outcome is not caused by the endpoint, such as a client side rate limit.
+   */
+  public synchronized void onIgnored() {
+    if (state == State.HALF_OPEN) {
+      probesInFlight = Math.max(0, probesInFlight - 1);
+    }
+  }
+
+  /**
+   * @return the state, an open circuit whose interval elapsed is reported half-open
+   */
+  public synchronized State getState() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= openIntervalNanos) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  /**
+   * @return time left before the open circuit lets probe calls through, 0 when it is not open
+   */
+  public synchronized long getRemainingOpenNanos() {
+    return state == State.OPEN ? Math.max(0, openIntervalNanos - (System.nanoTime() - openedAt)) : 0;
+  }
+
+  public synchronized int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * @return calls rejected while the circuit was open
+   */
+  public synchronized long getRejectedCount() {
+    return rejected;
+  }
+
+  /**
+   * @return times the circuit opened
+   */
+  public synchronized long getOpenedCount() {
+    return opened;
+  }
+}
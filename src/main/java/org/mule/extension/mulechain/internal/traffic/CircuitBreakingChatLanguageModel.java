@@ -0,0 +1,38 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Fails the calls of a chat model immediately with CIRCUIT_OPEN while its {@link CircuitBreaker} is open, instead of
+ * waiting for the provider timeout.
+ */
+public class CircuitBreakingChatLanguageModel extends ChatLanguageModelDecorator {
+
+  private final String name;
+  private final CircuitBreaker circuitBreaker;
+
+  /**
+   * @param delegate       the protected model
+   * @param name           LLM type and model name, reported in the error
+   * @param circuitBreaker breaker of the model
+   */
+  public CircuitBreakingChatLanguageModel(ChatLanguageModel delegate, String name, CircuitBreaker circuitBreaker) {
+    super(delegate);
+    this.name = name;
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @Override
+  protected Response<AiMessage> around(List<ChatMessage> messages, Supplier<Response<AiMessage>> call) {
+    return circuitBreaker.call(name, call);
+  }
+}
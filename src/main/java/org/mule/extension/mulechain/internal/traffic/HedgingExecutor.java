@@ -0,0 +1,268 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking LLM calls with hedging and retries. When a call has not answered after the configured percentile of the
+ * recent latencies of the same model, a second, hedged call is started. The first answer wins and the other call is
+ * cancelled. When every call of a round fails, the round is retried after a jittered exponential backoff. Rounds are
+ * only started, and answers only awaited, until the total deadline.
+ * <p>
+ * Until enough latencies are recorded, calls are hedged after the initial delay.
+ * <p>
+ * The calls run on a bounded number of threads, cancelled calls ignoring the interruption keep theirs until they return.
+ * A call is not hedged when every thread is busy, and rejected when it cannot start at all.
+ */
+public class HedgingExecutor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HedgingExecutor.class);
+
+  private static final int LATENCY_SAMPLES = 512;
+  private static final int MIN_LATENCY_SAMPLES = 20;
+  private static final int DELAY_REFRESH_INTERVAL = 16;
+
+  private final ExecutorService executor;
+  private final double percentile;
+  private final long initialDelayNanos;
+  private final int maxRounds;
+  private final long backoffNanos;
+  private final long deadlineNanos;
+
+  private final Map<String, LatencyTracker> latencyTrackers = new ConcurrentHashMap<>();
+
+  /**
+   * @param percentile        percentile of the recent latencies after which a call is hedged, between 0 and 100
+   * @param initialDelayNanos hedging delay used until enough latencies are recorded
+   * @param maxRounds         max rounds of calls, 1 to not retry
+   * @param backoffNanos      base of the exponential backoff between two rounds
+   * @param deadlineNanos     max time spent calling, retries included
+   * @param maxThreads        max calls running at the same time, hedges included
+   */
+  public HedgingExecutor(double percentile, long initialDelayNanos, int maxRounds, long backoffNanos, long deadlineNanos,
+                         int maxThreads) {
+    this.percentile = Math.max(0, Math.min(100, percentile));
+    this.initialDelayNanos = initialDelayNanos;
+    this.maxRounds = Math.max(1, maxRounds);
+    this.backoffNanos = backoffNanos;
+    this.deadlineNanos = deadlineNanos;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(0, Math.max(1, maxThreads), 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                                           runnable -> {
+                                             Thread thread = new Thread(runnable, "mulechain-llm-hedge-"
+                                                 + threadCount.incrementAndGet());
+                                             thread.setDaemon(true);
+                                             return thread;
+                                           });
+  }
+
+  /**
+   * @param key     model called, latencies are tracked per key
+   * @param primary blocking call
+   * @param hedge   blocking call started when the primary one is slow, to the same or a backup model
+   * @return the first answer and which attempt gave it
+   */
+  public <T> Outcome<T> execute(String key, Supplier<T> primary, Supplier<T> hedge) {
+    LatencyTracker latencyTracker = latencyTrackers.computeIfAbsent(key, k -> new LatencyTracker());
+    long deadline = System.nanoTime() + deadlineNanos;
+    int attempts = 0;
+    RuntimeException lastFailure = null;
+    for (int round = 0; round < maxRounds; round++) {
+      if (round > 0) {
+        long backoff = jitteredBackoff(round);
+        if (System.nanoTime() + backoff - deadline >= 0) {
+          LOGGER.debug("No time left for retry {} of {} before the deadline", round, key);
+          break;
+        }
+        sleep(backoff);
+      }
+      ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+      Map<Future<T>, Integer> attemptNumbers = new HashMap<>();
+      long start = System.nanoTime();
+      try {
+        attemptNumbers.put(completionService.submit(primary::get), ++attempts);
+      } catch (RejectedExecutionException e) {
+        throw new ModuleException("Too many calls to the LLM are running, the call to " + key + " is rejected",
+                                  MuleChainErrorType.RATE_LIMIT_EXCEEDED, e);
+      }
+      int primaryAttempt = attempts;
+      boolean hedged = false;
+      int pending = 1;
+      ModuleException connectorFailure = null;
+      try {
+        while (pending > 0) {
+          long now = System.nanoTime();
+          long remaining = deadline - now;
+          if (remaining <= 0) {
+            throw new ModuleException(String.format("No answer from %s within %d ms", key,
+                                                    TimeUnit.NANOSECONDS.toMillis(deadlineNanos)),
+                                      MuleChainErrorType.AI_SERVICES_FAILURE, lastFailure);
+          }
+          long hedgeIn = hedged ? Long.MAX_VALUE : latencyTracker.getDelayNanos() - (now - start);
+          if (hedgeIn <= 0) {
+            hedged = true;
+            try {
+              attemptNumbers.put(completionService.submit(hedge::get), attempts + 1);
+              attempts++;
+              pending++;
+              LOGGER.debug("Hedging the call to {} after {} ms", key, TimeUnit.NANOSECONDS.toMillis(now - start));
+            } catch (RejectedExecutionException e) {
+              LOGGER.debug("Every thread is busy, the call to {} is not hedged", key);
+            }
+            continue;
+          }
+          Future<T> done = completionService.poll(Math.min(hedgeIn, remaining), TimeUnit.NANOSECONDS);
+          if (done == null) {
+            continue;
+          }
+          pending--;
+          try {
+            T value = done.get();
+            latencyTracker.record(System.nanoTime() - start);
+            int attempt = attemptNumbers.get(done);
+            return new Outcome<>(value, attempt, attempts, attempt != primaryAttempt);
+          } catch (ExecutionException e) {
+            lastFailure = toRuntimeException(e.getCause());
+            if (lastFailure instanceof ModuleException) {
+              connectorFailure = (ModuleException) lastFailure;
+            }
+            if (connectorFailure != null && pending == 0) {
+              // raised by the connector itself (rate limits, open circuits), retrying would fail the same way
+              throw connectorFailure;
+            }
+            LOGGER.debug("Attempt {} to {} failed", attemptNumbers.get(done), key, lastFailure);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ModuleException("Interrupted while waiting for the LLM answer", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+      } finally {
+        for (Future<T> future : attemptNumbers.keySet()) {
+          // the loser of a hedged round, or every call when the deadline is reached
+          future.cancel(true);
+        }
+      }
+    }
+    throw lastFailure != null ? lastFailure
+        : new ModuleException("No answer from " + key + " before the deadline", MuleChainErrorType.AI_SERVICES_FAILURE);
+  }
+
+  /**
+   * Full jitter: a random delay up to the exponential backoff of the round.
+   */
+  private long jitteredBackoff(int round) {
+    long exponentialBackoff = backoffNanos << Math.min(round - 1, 16);
+    return exponentialBackoff <= 0 ? 0 : ThreadLocalRandom.current().nextLong(exponentialBackoff);
+  }
+
+  private static void sleep(long nanos) {
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ModuleException("Interrupted while backing off", MuleChainErrorType.AI_SERVICES_FAILURE, e);
+    }
+  }
+
+  private static RuntimeException toRuntimeException(Throwable throwable) {
+    if (throwable instanceof RuntimeException) {
+      return (RuntimeException) throwable;
+    }
+    return new ModuleException("The LLM call failed", MuleChainErrorType.AI_SERVICES_FAILURE, throwable);
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Answer of a hedged call.
+   */
+  public static final class Outcome<T> {
+
+    private final T value;
+    private final int attempt;
+    private final int attempts;
+    private final boolean hedge;
+
+    private Outcome(T value, int attempt, int attempts, boolean hedge) {
+      this.value = value;
+      this.attempt = attempt;
+      this.attempts = attempts;
+      this.hedge = hedge;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    /**
+     * @return number of the attempt that answered, starting at 1
+     */
+    public int getAttempt() {
+      return attempt;
+    }
+
+    /**
+     * @return attempts started, hedges and retries included
+     */
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /**
+     * @return true when the answer came from a hedged call
+     */
+    public boolean isHedge() {
+      return hedge;
+    }
+  }
+
+  /**
+   * Recent latencies of one model. The hedging delay is recomputed every few samples, not on every call.
+   */
+  private final class LatencyTracker {
+
+    private final long[] samples = new long[LATENCY_SAMPLES];
+    private int count;
+    private int next;
+    private volatile long delayNanos = initialDelayNanos;
+
+    private synchronized void record(long latencyNanos) {
+      samples[next] = latencyNanos;
+      next = (next + 1) % LATENCY_SAMPLES;
+      count++;
+      if (count >= MIN_LATENCY_SAMPLES && count % DELAY_REFRESH_INTERVAL == 0) {
+        long[] sorted = Arrays.copyOf(samples, Math.min(count, LATENCY_SAMPLES));
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        delayNanos = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+      }
+    }
+
+    private long getDelayNanos() {
+      return delayNanos;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import java.lang.reflect.Method;
+
+/**
+ * Tells the errors of a provider caused by the request from the ones caused by the provider. The provider libraries report
+ * the HTTP status of an error on their own exception types, through a code() or statusCode() method, which is looked up
+ * along the causes.
+ */
+final class ProviderErrors {
+
+  private static final int HTTP_REQUEST_TIMEOUT = 408;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private ProviderErrors() {}
+
+  /**
+   * @return true for the 4xx answers other than timeouts and rate limits, such as invalid requests, exceeded context
+   *         lengths or filtered content: the provider is healthy and any other target would reject the request the same
+   *         way. Server errors, rate limits, IO errors and timeouts are not client errors
+   */
+  static boolean isClientError(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+      int status = statusOf(cause);
+      if (status > 0) {
+        return status >= 400 && status < 500 && status != HTTP_REQUEST_TIMEOUT && status != HTTP_TOO_MANY_REQUESTS;
+      }
+    }
+    return false;
+  }
+
+  private static int statusOf(Throwable error) {
+    for (String name : new String[] {"statusCode", "code"}) {
+      try {
+        Method method = error.getClass().getMethod(name);
+        if (method.getReturnType() == int.class) {
+          return (int) method.invoke(error);
+        }
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // not a status of this exception type
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Runs the calls of a chat model within the permits of its {@link AdaptiveRateLimiter}.
+ */
+public class RateLimitedChatLanguageModel extends ChatLanguageModelDecorator {
+
+  private final AdaptiveRateLimiter rateLimiter;
+  private final Tokenizer tokenizer;
+  private final int maxTokens;
+
+  /**
+   * @param delegate    the limited model
+   * @param rateLimiter limits of the model
+   * @param tokenizer   estimates the prompt tokens reserved before the call
+   * @param maxTokens   max tokens of the answer, reserved as well
+   */
+  public RateLimitedChatLanguageModel(ChatLanguageModel delegate, AdaptiveRateLimiter rateLimiter, Tokenizer tokenizer,
+                                      int maxTokens) {
+    super(delegate);
+    this.rateLimiter = rateLimiter;
+    this.tokenizer = tokenizer;
+    this.maxTokens = maxTokens;
+  }
+
+  @Override
+  protected Response<AiMessage> around(List<ChatMessage> messages, Supplier<Response<AiMessage>> call) {
+    // the prompt is only tokenized when tokens are limited
+    long estimatedTokens = rateLimiter.isLimitingTokens() ? tokenizer.estimateTokenCountInMessages(messages) + maxTokens : 0;
+    AdaptiveRateLimiter.Permit permit = rateLimiter.acquire(estimatedTokens);
+    Response<AiMessage> response;
+    try {
+      response = call.get();
+    } catch (RuntimeException | Error e) {
+      rateLimiter.release(permit, -1, e);
+      throw e;
+    }
+    long actualTokens = response.tokenUsage() != null && response.tokenUsage().totalTokenCount() != null
+        ? response.tokenUsage().totalTokenCount()
+        : -1;
+    rateLimiter.release(permit, actualTokens, null);
+    return response;
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Routes the calls between several provider models. Each call picks a target at random, with a probability
+ * proportional to its weight divided by its observed latency (EWMA) and penalized by its recent error rate, so the
+ * fastest healthy targets get most of the traffic while the others keep being measured. When the call fails on a server
+ * error, a rate limit or a timeout, the other targets are tried from the best one down. Client errors, such as invalid
+ * requests, are thrown without failing over. Targets whose circuit is open are skipped.
+ */
+public class RoutingChatLanguageModel implements ChatLanguageModel {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RoutingChatLanguageModel.class);
+
+  private static final double EWMA_ALPHA = 0.2;
+  private static final double ERROR_RATE_PENALTY = 10;
+
+  private final List<Target> targets;
+
+  public RoutingChatLanguageModel(List<Target> targets) {
+    this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+  }
+
+  public List<Target> getTargets() {
+    return targets;
+  }
+
+  @Override
+  public Response<AiMessage> generate(List<ChatMessage> messages) {
+    return route(model -> model.generate(messages));
+  }
+
+  @Override
+  public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+    return route(model -> model.generate(messages, toolSpecifications));
+  }
+
+  @Override
+  public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+    return route(model -> model.generate(messages, toolSpecification));
+  }
+
+  private Response<AiMessage> route(Function<ChatLanguageModel, Response<AiMessage>> call) {
+    RuntimeException lastFailure = null;
+    for (Target target : rank()) {
+      if (!target.circuitBreaker.tryAcquire()) {
+        continue;
+      }
+      long start = System.nanoTime();
+      try {
+        Response<AiMessage> response = call.apply(target.model);
+        target.circuitBreaker.onSuccess();
+        target.record(System.nanoTime() - start, false);
+        return response;
+      } catch (ModuleException e) {
+        // client side limits of the target, not a failure of the provider
+        target.circuitBreaker.onIgnored();
+        lastFailure = e;
+      } catch (RuntimeException e) {
+        if (ProviderErrors.isClientError(e)) {
+          // the request itself is rejected, every other target would reject it the same way
+          target.circuitBreaker.onIgnored();
+          throw e;
+        }
+        target.circuitBreaker.onFailure();
+        target.record(System.nanoTime() - start, true);
+        lastFailure = e;
+      }
+      LOGGER.warn("Call to {} failed, failing over to the next target: {}", target.name, lastFailure.getMessage());
+    }
+    if (lastFailure != null) {
+      throw lastFailure;
+    }
+    throw new ModuleException("No routing target available, the circuits of all the targets are open",
+                              MuleChainErrorType.CIRCUIT_OPEN);
+  }
+
+  /**
+   * @return the target picked for the call first, then the others by descending score
+   */
+  private List<Target> rank() {
+    List<Target> ranked = new ArrayList<>(targets);
+    if (ranked.size() < 2) {
+      return ranked;
+    }
+    double[] scores = new double[ranked.size()];
+    double totalScore = 0;
+    for (int i = 0; i < ranked.size(); i++) {
+      scores[i] = ranked.get(i).score();
+      totalScore += scores[i];
+    }
+    if (totalScore <= 0) {
+      return ranked;
+    }
+    double pick = ThreadLocalRandom.current().nextDouble(totalScore);
+    int picked = ranked.size() - 1;
+    for (int i = 0; i < scores.length; i++) {
+      pick -= scores[i];
+      if (pick < 0) {
+        picked = i;
+        break;
+      }
+    }
+    Target first = ranked.remove(picked);
+    ranked.sort(Comparator.comparingDouble(Target::score).reversed());
+    ranked.add(0, first);
+    return ranked;
+  }
+
+  /**
+   * A provider model of the router with its weight, circuit breaker and observed latency and error rate.
+   */
+  public static final class Target {
+
+    private final String name;
+    private final ChatLanguageModel model;
+    private final double weight;
+    private final CircuitBreaker circuitBreaker;
+
+    private double latencyEwmaMillis;
+    private double errorRateEwma;
+    private boolean measured;
+
+    /**
+     * @param name           LLM type and model name, for the logs and the state
+     * @param model          model called
+     * @param weight         share of the traffic relative to the other targets, before latencies are known
+     * @param circuitBreaker breaker of the target
+     */
+    public Target(String name, ChatLanguageModel model, double weight, CircuitBreaker circuitBreaker) {
+      this.name = name;
+      this.model = model;
+      this.weight = Math.max(0, weight);
+      this.circuitBreaker = circuitBreaker;
+    }
+
+    private synchronized void record(long latencyNanos, boolean failed) {
+      // failed calls often fail fast, their latency would make the target look faster than it is
+      if (!failed) {
+        double latencyMillis = TimeUnit.NANOSECONDS.toMicros(latencyNanos) / 1000.0;
+        latencyEwmaMillis = measured ? latencyEwmaMillis + EWMA_ALPHA * (latencyMillis - latencyEwmaMillis) : latencyMillis;
+        measured = true;
+      }
+      errorRateEwma += EWMA_ALPHA * ((failed ? 1 : 0) - errorRateEwma);
+    }
+
+    /**
+     * Unmeasured targets score as if they answered in one second.
+     */
+    private synchronized double score() {
+      double latency = measured ? Math.max(1, latencyEwmaMillis) : 1000;
+      return weight / latency / (1 + ERROR_RATE_PENALTY * errorRateEwma);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public double getWeight() {
+      return weight;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+      return circuitBreaker;
+    }
+
+    public synchronized double getLatencyEwmaMillis() {
+      return latencyEwmaMillis;
+    }
+
+    public synchronized double getErrorRateEwma() {
+      return errorRateEwma;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.batch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.constants.MuleChainConstants;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.llm.ModelParameters;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OpenAiBatchClientTest {
+
+  private static final String OUTPUT =
+      "{\"custom_id\":\"0\",\"response\":{\"status_code\":200,\"body\":{\"choices\":[{\"message\":{\"content\":\"Paris\"}}],"
+          + "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":2,\"total_tokens\":14,"
+          + "\"prompt_tokens_details\":{\"cached_tokens\":8}}}},\"error\":null}\n"
+          + "{\"custom_id\":\"1\",\"response\":{\"status_code\":400,\"body\":{\"error\":{\"type\":\"invalid_request_error\","
+          + "\"message\":\"bad prompt\"}}},\"error\":null}\n";
+
+  private HttpServer server;
+  private OpenAiBatchClient client;
+  private final AtomicReference<String> uploaded = new AtomicReference<>();
+
+  @Before
+  public void startStubServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/v1/files", exchange -> {
+      if (exchange.getRequestURI().getPath().endsWith("/content")) {
+        respond(exchange, 200, OUTPUT);
+      } else {
+        uploaded.set(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        respond(exchange, 200, "{\"id\":\"file-in\"}");
+      }
+    });
+    server.createContext("/v1/batches", exchange -> {
+      if ("POST".equals(exchange.getRequestMethod())) {
+        JSONObject payload = new JSONObject(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        respond(exchange, 200, "{\"id\":\"batch-1\",\"status\":\"validating\",\"input_file_id\":\""
+            + payload.getString("input_file_id") + "\",\"output_file_id\":null}");
+      } else if (exchange.getRequestURI().getPath().endsWith("/batch-1")) {
+        respond(exchange, 200, "{\"id\":\"batch-1\",\"status\":\"completed\",\"output_file_id\":\"file-out\","
+            + "\"error_file_id\":null,\"request_counts\":{\"total\":2,\"completed\":1,\"failed\":1}}");
+      } else {
+        respond(exchange, 429, "{\"error\":{\"message\":\"slow down\"}}");
+      }
+    });
+    server.start();
+    client = new OpenAiBatchClient(new OkHttpClient(), "http://localhost:" + server.getAddress().getPort() + "/v1/", "key");
+  }
+
+  @After
+  public void stopStubServer() {
+    server.stop(0);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  @Test
+  public void testBatchIsSubmittedPolledAndFetched() {
+    String jsonl = OpenAiBatchClient.toJsonl(Arrays.asList("0", "1"), Arrays.asList("Capital of France?", "?"),
+                                             new ModelParameters("gpt-4o-mini", 100, 0.5, 1, 60));
+    String fileId = client.uploadFile(jsonl);
+    BatchJob job = new BatchJob("job-1", client.createBatch(fileId, "24h").getString("id"), "gpt-4o-mini", 0);
+    job.update(client.getBatch(job.getBatchId()));
+
+    Assert.assertEquals("file-in", fileId);
+    Assert.assertTrue(uploaded.get().contains("\"custom_id\":\"1\""));
+    Assert.assertTrue(uploaded.get().contains("\"model\":\"gpt-4o-mini\""));
+    Assert.assertTrue(job.isCompleted());
+    Assert.assertEquals(2, job.getTotal());
+    Assert.assertEquals("file-out", job.getOutputFileId());
+    Assert.assertNull(job.getErrorFileId());
+
+    String[] lines = client.getFileContent(job.getOutputFileId()).split("\n");
+    JSONObject answered = OpenAiBatchClient.toResult(new JSONObject(lines[0]));
+    JSONObject failed = OpenAiBatchClient.toResult(new JSONObject(lines[1]));
+
+    Assert.assertEquals("Paris", answered.getString(MuleChainConstants.RESPONSE));
+    Assert.assertEquals(8, answered.getJSONObject(MuleChainConstants.TOKEN_USAGE).getInt(MuleChainConstants.CACHED_INPUT_COUNT));
+    Assert.assertEquals("1", failed.getString(MuleChainConstants.ID));
+    Assert.assertEquals("bad prompt", failed.getJSONObject(MuleChainConstants.ERROR).getString(MuleChainConstants.MESSAGE));
+  }
+
+  @Test
+  public void testJobSurvivesJsonRoundTrip() {
+    BatchJob job = new BatchJob("job-1", "batch-1", "gpt-4o-mini", 42);
+    job.update(client.getBatch("batch-1"));
+
+    BatchJob restored = BatchJob.fromJson(job.toJson().toString());
+
+    Assert.assertEquals(job.toJson().toString(), restored.toJson().toString());
+  }
+
+  @Test
+  public void testRateLimitedCallIsReported() {
+    try {
+      client.getBatch("batch-2");
+      Assert.fail();
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, e.getType());
+    }
+  }
+}
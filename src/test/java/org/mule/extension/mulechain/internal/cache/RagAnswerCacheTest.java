@@ -0,0 +1,84 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class RagAnswerCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static CachedAnswer answer(String content) {
+    return new CachedAnswer(content, 100, 20, System.currentTimeMillis());
+  }
+
+  @Test
+  public void testQuestionsAreNormalized() {
+    Assert.assertEquals("what is the refund policy", RagAnswerCache.normalize("  What is   the refund\tpolicy ?? "));
+  }
+
+  @Test
+  public void testRepeatedQuestionIsAnsweredUntilTheStoreIsInvalidated() throws IOException {
+    String storeName = folder.newFile("store.json").getAbsolutePath();
+    RagAnswerCache cache = new RagAnswerCache(10);
+    RagAnswerCache.Lookup miss = cache.lookup(storeName, "OPENAI", "What is the refund policy?");
+    cache.put(miss, RagAnswerCache.storeVersion(storeName), answer("30 days"));
+
+    RagAnswerCache.Lookup hit = cache.lookup(storeName, "OPENAI", "what is the refund policy");
+    Assert.assertFalse(miss.isHit());
+    Assert.assertEquals("30 days", hit.getAnswer().getContent());
+    Assert.assertFalse(cache.lookup(storeName, "MISTRAL_AI", "what is the refund policy").isHit());
+
+    cache.invalidate(storeName);
+
+    Assert.assertFalse(cache.lookup(storeName, "OPENAI", "what is the refund policy").isHit());
+    Assert.assertEquals(1, cache.getInvalidationCount());
+  }
+
+  @Test
+  public void testAnswerComputedBeforeAnInvalidationIsNotCached() throws IOException {
+    String storeName = folder.newFile("store.json").getAbsolutePath();
+    RagAnswerCache cache = new RagAnswerCache(10);
+    RagAnswerCache.Lookup inFlight = cache.lookup(storeName, "OPENAI", "question");
+
+    cache.invalidate(storeName);
+    cache.put(inFlight, RagAnswerCache.storeVersion(storeName), answer("stale"));
+
+    Assert.assertFalse(cache.lookup(storeName, "OPENAI", "question").isHit());
+  }
+
+  @Test
+  public void testStoreRewrittenElsewhereDropsItsAnswers() throws IOException {
+    File store = folder.newFile("store.json");
+    RagAnswerCache cache = new RagAnswerCache(10);
+    cache.put(cache.lookup(store.getPath(), "OPENAI", "question"), RagAnswerCache.storeVersion(store.getPath()),
+              answer("old"));
+
+    Assert.assertTrue(store.setLastModified(store.lastModified() - 10_000));
+
+    Assert.assertFalse(cache.lookup(store.getAbsolutePath(), "OPENAI", "question").isHit());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testAnswerComputedFromAnOlderStoreIsNotCachedForTheNewOne() throws IOException {
+    File store = folder.newFile("store.json");
+    String readVersion = RagAnswerCache.storeVersion(store.getPath());
+    Files.write(store.toPath(), "{\"entries\":[]}".getBytes(StandardCharsets.UTF_8));
+    RagAnswerCache cache = new RagAnswerCache(10);
+
+    cache.put(cache.lookup(store.getPath(), "OPENAI", "question"), readVersion, answer("stale"));
+
+    Assert.assertFalse(cache.lookup(store.getPath(), "OPENAI", "question").isHit());
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class ResponseCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testKeyDependsOnEveryPart() {
+    Assert.assertEquals(ResponseCache.key("OPENAI", "gpt-4o-mini", "Hello"), ResponseCache.key("OPENAI", "gpt-4o-mini", "Hello"));
+    Assert.assertNotEquals("Moving text between parts must change the key", ResponseCache.key("OPENAI", "ab", "c"),
+                           ResponseCache.key("OPENAI", "a", "bc"));
+  }
+
+  @Test
+  public void testExpiredAnswersAreNotReturned() {
+    ResponseCache cache = new ResponseCache(10, 60_000, null, 10);
+    cache.put("fresh", new CachedAnswer("yes", 3, 1, System.currentTimeMillis()));
+    cache.put("stale", new CachedAnswer("no", 3, 1, System.currentTimeMillis() - 120_000));
+
+    Assert.assertEquals("yes", cache.get("fresh").getContent());
+    Assert.assertNull("Expired answer is returned", cache.get("stale"));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testAnswersSurviveInTheFile() {
+    String dbFilePath = new File(folder.getRoot(), "responses.db").getAbsolutePath();
+    ResponseCache cache = new ResponseCache(10, 0, dbFilePath, 10);
+    cache.put("question", new CachedAnswer("answer", 3, 1, System.currentTimeMillis()));
+    cache.close();
+
+    ResponseCache reopened = new ResponseCache(10, 0, dbFilePath, 10);
+    try {
+      Assert.assertEquals("answer", reopened.get("question").getContent());
+      Assert.assertEquals(4, reopened.get("question").getOriginalTokenUsage().getTotalCount());
+    } finally {
+      reopened.close();
+    }
+  }
+}
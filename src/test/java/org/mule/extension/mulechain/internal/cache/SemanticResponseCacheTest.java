@@ -0,0 +1,55 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+
+public class SemanticResponseCacheTest {
+
+  // embeds a text as its letter counts, close enough to tell rephrasings from other questions
+  private static final EmbeddingModel LETTER_MODEL = segments -> Response.from(segments.stream().map(segment -> {
+    float[] vector = new float[26];
+    for (char c : segment.text().toLowerCase().toCharArray()) {
+      if (c >= 'a' && c <= 'z') {
+        vector[c - 'a']++;
+      }
+    }
+    return Embedding.from(vector);
+  }).collect(Collectors.toList()));
+
+  @Test
+  public void testSimilarPromptOfTheSameNamespaceHits() {
+    SemanticResponseCache cache = new SemanticResponseCache(LETTER_MODEL, 0.95, 10, 0, 0);
+    SemanticResponseCache.Lookup miss = cache.lookup("OPENAI", "What is the capital of France?");
+    Assert.assertFalse(miss.isHit());
+    cache.put(miss, new CachedAnswer("Paris", 10, 1, System.currentTimeMillis()));
+
+    SemanticResponseCache.Lookup hit = cache.lookup("OPENAI", "what is the capital of france");
+    Assert.assertTrue("Rephrased prompt does not hit", hit.isHit());
+    Assert.assertEquals("Paris", hit.getAnswer().getContent());
+    Assert.assertFalse("Answers leak between namespaces", cache.lookup("MISTRAL_AI", "What is the capital of France?").isHit());
+    Assert.assertFalse("Unrelated prompt hits", cache.lookup("OPENAI", "Summarize the quarterly sales report").isHit());
+    Assert.assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void testVerifiedHitWithAnotherAnswerIsAFalseHit() {
+    SemanticResponseCache cache = new SemanticResponseCache(LETTER_MODEL, 0.95, 10, 0, 1.0);
+    cache.put(cache.lookup("OPENAI", "What is the capital of France?"), new CachedAnswer("Paris", 10, 1, 0));
+
+    SemanticResponseCache.Lookup verification = cache.lookup("OPENAI", "what is the capital of france");
+    Assert.assertFalse("Verified hits must be answered by the model", verification.isHit());
+    cache.put(verification, new CachedAnswer("Lyon, since 2025", 10, 4, System.currentTimeMillis()));
+
+    Assert.assertEquals(1, cache.getVerificationCount());
+    Assert.assertEquals(1, cache.getFalseHitCount());
+    Assert.assertEquals("False hit is not replaced", 1, cache.size());
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+  @Test
+  public void testConcurrentIdenticalCallsShareOneCall() throws Exception {
+    SingleFlight singleFlight = new SingleFlight();
+    AtomicInteger providerCalls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<SingleFlight.Shared<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(() -> singleFlight.execute("summary", () -> {
+          providerCalls.incrementAndGet();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return "answer";
+        })));
+      }
+      // all the callers are waiting on the first one once it is the only in-flight call with 3 coalesced callers
+      long deadline = System.currentTimeMillis() + 5000;
+      while (singleFlight.getCoalescedCount() < 3 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      for (Future<SingleFlight.Shared<String>> result : results) {
+        Assert.assertEquals("answer", result.get(5, TimeUnit.SECONDS).getValue());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals("Provider is called more than once", 1, providerCalls.get());
+    Assert.assertEquals(3, singleFlight.getCoalescedCount());
+    Assert.assertEquals(0, singleFlight.getInFlightCount());
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.execution;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class BulkExecutorTest {
+
+  private final LLMCallExecutor executor = LLMCallExecutor.create(16, 64, false);
+
+  @After
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  private static List<Supplier<Integer>> calls(int count, AtomicInteger running, AtomicInteger maxRunning) {
+    List<Supplier<Integer>> calls = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      int value = i;
+      calls.add(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          running.decrementAndGet();
+        }
+        if (value % 10 == 3) {
+          throw new IllegalStateException("item " + value);
+        }
+        return value * 2;
+      });
+    }
+    return calls;
+  }
+
+  @Test
+  public void testAllItemsCompleteWithinTheParallelism() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    List<BulkExecutor.Item<Integer>> items =
+        new BulkExecutor(executor, 4, () -> Integer.MAX_VALUE).execute(calls(40, running, maxRunning));
+
+    Assert.assertEquals(40, items.size());
+    Assert.assertTrue("Parallelism exceeded: " + maxRunning.get(), maxRunning.get() <= 4);
+    for (BulkExecutor.Item<Integer> item : items) {
+      if (item.getIndex() % 10 == 3) {
+        Assert.assertFalse(item.isSuccess());
+        Assert.assertEquals("item " + item.getIndex(), item.getFailure().getMessage());
+      } else {
+        Assert.assertTrue(item.isSuccess());
+        Assert.assertEquals(item.getIndex() * 2, item.getValue().intValue());
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrencyLimitOfTheRateLimiterLowersTheParallelism() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    new BulkExecutor(executor, 8, () -> 2).execute(calls(20, running, maxRunning));
+
+    Assert.assertTrue("Concurrency limit exceeded: " + maxRunning.get(), maxRunning.get() <= 2);
+  }
+}
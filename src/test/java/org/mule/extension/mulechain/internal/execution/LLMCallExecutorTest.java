@@ -0,0 +1,72 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.execution;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class LLMCallExecutorTest {
+
+  private final LLMCallExecutor executor = LLMCallExecutor.create(1, 1, false);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @After
+  public void shutdown() {
+    release.countDown();
+    executor.shutdown();
+  }
+
+  private Supplier<String> blockingCall(CountDownLatch started) {
+    return () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "answer";
+    };
+  }
+
+  @Test
+  public void testCallsBeyondTheQueueAreRejected() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch completed = new CountDownLatch(2);
+    AtomicReference<Throwable> queuedFailure = new AtomicReference<>();
+    executor.execute(blockingCall(started), (value, failure) -> completed.countDown());
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    executor.execute(() -> "queued", (value, failure) -> {
+      queuedFailure.set(failure);
+      completed.countDown();
+    });
+
+    AtomicReference<Throwable> rejection = new AtomicReference<>();
+    executor.execute(() -> "rejected", (value, failure) -> rejection.set(failure));
+
+    Assert.assertTrue("The call is not rejected at once", rejection.get() instanceof ModuleException);
+    Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, ((ModuleException) rejection.get()).getType());
+
+    release.countDown();
+    Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+    Assert.assertNull("The queued call failed", queuedFailure.get());
+  }
+
+  @Test
+  public void testCallsAfterShutdownAreRejectedAsFailures() {
+    executor.shutdown();
+    AtomicReference<Throwable> rejection = new AtomicReference<>();
+
+    executor.execute(() -> "answer", (value, failure) -> rejection.set(failure));
+
+    Assert.assertEquals(MuleChainErrorType.AI_SERVICES_FAILURE, ((ModuleException) rejection.get()).getType());
+  }
+}
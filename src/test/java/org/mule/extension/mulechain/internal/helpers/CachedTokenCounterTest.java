@@ -0,0 +1,52 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.helpers;
+
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedTokenCounterTest {
+
+  public static class CacheReadTokenUsage extends TokenUsage {
+
+    public CacheReadTokenUsage() {
+      super(1200, 20);
+    }
+
+    public Integer cacheReadInputTokens() {
+      return 1024;
+    }
+  }
+
+  public static class InputTokensDetails {
+
+    public Integer cachedTokens() {
+      return 512;
+    }
+  }
+
+  public static class InputDetailsTokenUsage extends TokenUsage {
+
+    public InputDetailsTokenUsage() {
+      super(900, 20);
+    }
+
+    public InputTokensDetails inputTokensDetails() {
+      return new InputTokensDetails();
+    }
+  }
+
+  @Test
+  public void testCachedTokensOfTheProviders() {
+    Assert.assertEquals(1024, CachedTokenCounter.cachedInputTokens(new CacheReadTokenUsage()));
+    Assert.assertEquals(512, CachedTokenCounter.cachedInputTokens(new InputDetailsTokenUsage()));
+  }
+
+  @Test
+  public void testUsagesWithoutCachedTokens() {
+    Assert.assertEquals(0, CachedTokenCounter.cachedInputTokens(new TokenUsage(10, 5)));
+    Assert.assertEquals(0, CachedTokenCounter.cachedInputTokens(null));
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AiServiceCacheTest {
+
+  private static ChatLanguageModel model() {
+    return messages -> Response.from(AiMessage.from("answer"));
+  }
+
+  private static Runnable get(AiServiceCache cache, ChatLanguageModel model, Object variant, AtomicInteger builds) {
+    return cache.get(Runnable.class, model, variant, () -> {
+      builds.incrementAndGet();
+      return () -> {
+      };
+    });
+  }
+
+  @Test
+  public void testUnversionedProxyIsBuiltOncePerVariant() {
+    AiServiceCache cache = new AiServiceCache();
+    ChatLanguageModel model = model();
+    AtomicInteger builds = new AtomicInteger();
+
+    Runnable first = get(cache, model, "tools", builds);
+    Runnable same = get(cache, model, "tools", builds);
+    Runnable other = get(cache, model, "retriever", builds);
+    Runnable withoutVariant = get(cache, model, null, builds);
+
+    Assert.assertSame(first, same);
+    Assert.assertNotSame(first, other);
+    Assert.assertNotSame(first, withoutVariant);
+    Assert.assertSame(withoutVariant, get(cache, model, null, builds));
+    Assert.assertEquals(3, builds.get());
+  }
+
+  @Test
+  public void testProxyOfAnotherModelOrStoreIsNotShared() {
+    AiServiceCache cache = new AiServiceCache();
+    ChatLanguageModel model = model();
+    AtomicInteger builds = new AtomicInteger();
+    Object store = new Object();
+
+    Runnable proxy = get(cache, model, "tools", builds);
+    // a changed configuration creates a new model instance, even when its settings are equal
+    Runnable reconfigured = get(cache, model(), "tools", builds);
+    Runnable onStore = get(cache, model, AiServiceCache.identityOf(store), builds);
+    Runnable onSameStore = get(cache, model, AiServiceCache.identityOf(store), builds);
+    Runnable onOtherStore = get(cache, model, AiServiceCache.identityOf(new Object()), builds);
+
+    Assert.assertNotSame(proxy, reconfigured);
+    Assert.assertSame(onStore, onSameStore);
+    Assert.assertNotSame(onStore, onOtherStore);
+    Assert.assertEquals(4, builds.get());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedProxyIsEvicted() {
+    AiServiceCache cache = new AiServiceCache();
+    ChatLanguageModel model = model();
+    AtomicInteger builds = new AtomicInteger();
+
+    Runnable recentlyUsed = get(cache, model, 0, builds);
+    Runnable leastRecentlyUsed = get(cache, model, 1, builds);
+    for (int variant = 2; variant < 64; variant++) {
+      get(cache, model, variant, builds);
+    }
+    Assert.assertSame(recentlyUsed, get(cache, model, 0, builds));
+    get(cache, model, 64, builds);
+
+    Assert.assertSame("The recently used proxy is evicted", recentlyUsed, get(cache, model, 0, builds));
+    Assert.assertNotSame("The least recently used proxy is kept", leastRecentlyUsed, get(cache, model, 1, builds));
+    Assert.assertEquals(66, builds.get());
+  }
+
+  @Test
+  public void testProxyOfAnotherVersionIsReplaced() {
+    AiServiceCache cache = new AiServiceCache();
+
+    Runnable first = cache.get(Runnable.class, null, "store.json", "v1", () -> () -> {
+    });
+    Runnable same = cache.get(Runnable.class, null, "store.json", "v1", () -> () -> {
+    });
+    Runnable second = cache.get(Runnable.class, null, "store.json", "v2", () -> () -> {
+    });
+    Runnable latest = cache.get(Runnable.class, null, "store.json", "v2", () -> () -> {
+    });
+
+    Assert.assertSame(first, same);
+    Assert.assertNotSame(first, second);
+    Assert.assertSame(second, latest);
+    Assert.assertNotSame("The replaced version must not be served again", first,
+                         cache.get(Runnable.class, null, "store.json", "v1", () -> () -> {
+                         }));
+  }
+}
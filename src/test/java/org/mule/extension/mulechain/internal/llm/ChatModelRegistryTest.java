@@ -0,0 +1,51 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.llm.config.ConfigExtractor;
+import org.mule.extension.mulechain.internal.llm.type.LangchainLLMType;
+
+public class ChatModelRegistryTest {
+
+  private static final ConfigExtractor CONFIG_EXTRACTOR = key -> "key";
+
+  private static ChatLanguageModel get(ChatModelRegistry registry, String modelName) {
+    return registry.getModel(LangchainLLMType.OPENAI, "Environment Variables", "", CONFIG_EXTRACTOR,
+                             new ModelParameters(modelName, 500, 0.7, 0.95, 60));
+  }
+
+  @Test
+  public void testModelIsCreatedOncePerConfigurationAndDroppedWhenCleared() {
+    ChatModelRegistry registry = new ChatModelRegistry();
+
+    ChatLanguageModel model = get(registry, "gpt-4o-mini");
+
+    Assert.assertSame(model, get(registry, "gpt-4o-mini"));
+    Assert.assertNotSame(model, get(registry, "gpt-4o"));
+    Assert.assertNotSame("Models are shared between configurations", model, get(new ChatModelRegistry(), "gpt-4o-mini"));
+    registry.clear();
+    Assert.assertEquals(0, registry.size());
+    Assert.assertNotSame("A cleared model is kept", model, get(registry, "gpt-4o-mini"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedModelIsDropped() {
+    ChatModelRegistry registry = new ChatModelRegistry();
+    ChatLanguageModel recentlyUsed = get(registry, "model-0");
+    ChatLanguageModel leastRecentlyUsed = get(registry, "model-1");
+    for (int i = 2; i < ChatModelRegistry.MAX_MODELS; i++) {
+      get(registry, "model-" + i);
+    }
+    Assert.assertSame(recentlyUsed, get(registry, "model-0"));
+
+    get(registry, "model-" + ChatModelRegistry.MAX_MODELS);
+
+    Assert.assertEquals(ChatModelRegistry.MAX_MODELS, registry.size());
+    Assert.assertSame("The recently used model is dropped", recentlyUsed, get(registry, "model-0"));
+    Assert.assertNotSame("The least recently used model is kept", leastRecentlyUsed, get(registry, "model-1"));
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.helpers.TruncationPolicy;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ContextPlannerTest {
+
+  private static final TokenBudget NO_LIMIT = new TokenBudget(new OpenAiTokenizer(), 0, TruncationPolicy.DROP_LOWEST_SCORING);
+
+  private static EmbeddingMatch<TextSegment> match(double score, String text, float... vector) {
+    return new EmbeddingMatch<>(score, text, Embedding.from(vector), TextSegment.from(text));
+  }
+
+  private static ContextPlanner planner(int maxResults, int maxContextTokens, double duplicateSimilarity) {
+    return new ContextPlanner(null, null, NO_LIMIT, maxResults, 0, maxContextTokens, duplicateSimilarity);
+  }
+
+  private static String[] texts(List<Content> contents) {
+    return contents.stream().map(content -> content.textSegment().text()).toArray(String[]::new);
+  }
+
+  @Test
+  public void testNearDuplicatesOfMoreRelevantSegmentsAreRemoved() {
+    List<EmbeddingMatch<TextSegment>> candidates = Arrays.asList(match(0.9, "refund policy", 1, 0, 0),
+                                                                 match(0.89, "refund policy copy", 0.99f, 0.01f, 0),
+                                                                 match(0.8, "shipping times", 0, 1, 0),
+                                                                 match(0.7, "store hours", 0, 0, 1));
+
+    Assert.assertArrayEquals(new String[] {"refund policy", "shipping times", "store hours"},
+                             texts(planner(3, 0, 0.95).plan(candidates)));
+    Assert.assertArrayEquals(new String[] {"refund policy", "refund policy copy", "shipping times"},
+                             texts(planner(3, 0, 1).plan(candidates)));
+  }
+
+  @Test
+  public void testSegmentsExceedingTheContextTokensAreSkipped() {
+    List<EmbeddingMatch<TextSegment>> candidates = Arrays.asList(match(0.9, "one two three four five", 1, 0, 0),
+                                                                 match(0.8, "one two three four five six seven eight", 0, 1, 0),
+                                                                 match(0.7, "short", 0, 0, 1));
+
+    Assert.assertArrayEquals(new String[] {"one two three four five", "short"}, texts(planner(3, 8, 0.95).plan(candidates)));
+  }
+}
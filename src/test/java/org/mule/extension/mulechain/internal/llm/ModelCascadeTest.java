@@ -0,0 +1,84 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.Result;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.helpers.ConfidenceSignal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ModelCascadeTest {
+
+  private static Result<String> answer(String content, int inputTokens, int outputTokens) {
+    return Result.<String>builder().content(content).tokenUsage(new TokenUsage(inputTokens, outputTokens)).build();
+  }
+
+  @Test
+  public void testConfidentFastAnswerIsKeptWithoutItsConfidenceLine() {
+    ModelCascade cascade = new ModelCascade(ConfidenceSignal.SELF_REPORTED, 0.7);
+    AtomicReference<String> fastPrompt = new AtomicReference<>();
+    AtomicInteger strongCalls = new AtomicInteger();
+
+    ModelCascade.Outcome outcome = cascade.execute("What is the capital of France?", prompt -> {
+      fastPrompt.set(prompt);
+      return answer("Paris.\nConfidence: 0.95", 10, 5);
+    }, () -> {
+      strongCalls.incrementAndGet();
+      return answer("Paris", 10, 2);
+    });
+
+    Assert.assertTrue(fastPrompt.get().startsWith("What is the capital of France?"));
+    Assert.assertTrue(fastPrompt.get().contains("Confidence: "));
+    Assert.assertEquals(ModelCascade.FAST_TIER, outcome.getTier());
+    Assert.assertEquals(0.95, outcome.getConfidence(), 0.0001);
+    Assert.assertEquals("Paris.", outcome.getAnswer().content());
+    Assert.assertEquals(15, outcome.getAnswer().tokenUsage().totalTokenCount().intValue());
+    Assert.assertEquals(0, strongCalls.get());
+    Assert.assertEquals(1, cascade.getFastAnswerCount());
+  }
+
+  @Test
+  public void testUnconfidentFastAnswerIsEscalatedAndBothCallsAreCounted() {
+    ModelCascade cascade = new ModelCascade(ConfidenceSignal.SELF_REPORTED, 0.7);
+
+    ModelCascade.Outcome outcome = cascade.execute("Prove the Riemann hypothesis",
+                                                   prompt -> answer("Maybe.\n**Confidence:** 0.2", 10, 5),
+                                                   () -> answer("It is an open problem", 8, 6));
+
+    Assert.assertEquals(ModelCascade.STRONG_TIER, outcome.getTier());
+    Assert.assertEquals(0.2, outcome.getConfidence(), 0.0001);
+    Assert.assertEquals("It is an open problem", outcome.getAnswer().content());
+    Assert.assertEquals(18, outcome.getAnswer().tokenUsage().inputTokenCount().intValue());
+    Assert.assertEquals(11, outcome.getAnswer().tokenUsage().outputTokenCount().intValue());
+    Assert.assertEquals(1, cascade.getEscalationCount());
+  }
+
+  @Test
+  public void testMissingConfidenceIsEscalated() {
+    ModelCascade cascade = new ModelCascade(ConfidenceSignal.SELF_REPORTED, 0.1);
+
+    ModelCascade.Outcome outcome = cascade.execute("prompt", prompt -> answer("no rating", 1, 1), () -> answer("strong", 1, 1));
+
+    Assert.assertEquals(ModelCascade.STRONG_TIER, outcome.getTier());
+    Assert.assertEquals(0, outcome.getConfidence(), 0);
+  }
+
+  @Test
+  public void testJsonValidity() {
+    ModelCascade cascade = new ModelCascade(ConfidenceSignal.JSON_VALIDITY, 0.5);
+
+    ModelCascade.Outcome fenced = cascade.execute("prompt", prompt -> answer("```json\n{\"a\": 1}\n```", 1, 1),
+                                                  () -> answer("{}", 1, 1));
+    ModelCascade.Outcome invalid = cascade.execute("prompt", prompt -> answer("{\"a\": ", 1, 1), () -> answer("{}", 1, 1));
+
+    Assert.assertEquals(ModelCascade.FAST_TIER, fenced.getTier());
+    Assert.assertEquals("```json\n{\"a\": 1}\n```", fenced.getAnswer().content());
+    Assert.assertEquals(ModelCascade.STRONG_TIER, invalid.getTier());
+    Assert.assertEquals("{}", invalid.getAnswer().content());
+  }
+}
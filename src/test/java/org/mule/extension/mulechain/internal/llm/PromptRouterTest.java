@@ -0,0 +1,89 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.helpers.PromptRoute;
+import org.mule.extension.mulechain.internal.helpers.PromptRoutingStrategy;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class PromptRouterTest {
+
+  // embeds a text as its hashed words, prompts sharing words are similar
+  private static final EmbeddingModel WORD_MODEL = segments -> Response.from(segments.stream().map(segment -> {
+    float[] vector = new float[64];
+    for (String word : segment.text().toLowerCase().split("\\W+")) {
+      if (!word.isEmpty()) {
+        vector[Math.floorMod(word.hashCode(), vector.length)]++;
+      }
+    }
+    return Embedding.from(vector);
+  }).collect(Collectors.toList()));
+
+  private static final PromptRoute SIMPLE = new PromptRoute("simple", "OLLAMA", "llama3.2",
+                                                            Arrays.asList("hello how are you", "what time is it",
+                                                                          "thanks a lot"));
+
+  private static final PromptRoute HARD = new PromptRoute("hard", "OPENAI", "gpt-4o",
+                                                          Arrays.asList("prove the theorem step by step",
+                                                                        "refactor this java class and explain the design",
+                                                                        "analyze the quarterly report and forecast the revenue"));
+
+  private static final List<PromptRoute> ROUTES = Arrays.asList(SIMPLE, HARD);
+
+  @Test
+  public void testNearestCentroid() {
+    PromptRouter router = new PromptRouter(WORD_MODEL, ROUTES, PromptRoutingStrategy.NEAREST_CENTROID, 1);
+
+    PromptRouter.Classification simple = router.classify("hello, what time is it?");
+    PromptRouter.Classification hard = router.classify("explain the design of this java class step by step");
+
+    Assert.assertEquals("simple", simple.getRoute().getLabel());
+    Assert.assertEquals("hard", hard.getRoute().getLabel());
+    Assert.assertTrue(simple.getSimilarity() > 0);
+    Assert.assertEquals(1, router.getRoutedCount(0));
+    Assert.assertEquals(1, router.getRoutedCount(1));
+  }
+
+  @Test
+  public void testKNearestNeighboursMajorityWins() {
+    PromptRouter router = new PromptRouter(WORD_MODEL, ROUTES, PromptRoutingStrategy.K_NEAREST_NEIGHBOURS, 3);
+
+    Assert.assertEquals("hard", router.classify("forecast the revenue of the java design").getRoute().getLabel());
+    Assert.assertEquals("simple", router.classify("thanks, how are you").getRoute().getLabel());
+  }
+
+  @Test
+  public void testRepeatedPromptIsNotEmbeddedAgain() {
+    AtomicInteger embedded = new AtomicInteger();
+    EmbeddingModel countingModel = segments -> {
+      embedded.addAndGet(segments.size());
+      return WORD_MODEL.embedAll(segments);
+    };
+    PromptRouter router = new PromptRouter(countingModel, ROUTES, PromptRoutingStrategy.NEAREST_CENTROID, 1);
+    int examples = embedded.get();
+
+    Assert.assertEquals("simple", router.classify("what time is it").getRoute().getLabel());
+    Assert.assertEquals("simple", router.classify("what time is it").getRoute().getLabel());
+    Assert.assertEquals("Repeated prompt is embedded again", examples + 1, embedded.get());
+    Assert.assertEquals(1, router.getCachedEmbeddingCount());
+    Assert.assertEquals(2, router.getRoutedCount(0));
+  }
+
+  @Test(expected = ModuleException.class)
+  public void testRoutesWithoutExamplesAreRejected() {
+    new PromptRouter(WORD_MODEL, Collections.singletonList(new PromptRoute("empty", "OPENAI", "gpt-4o", null)),
+                     PromptRoutingStrategy.NEAREST_CENTROID, 1);
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.llm;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.rag.content.Content;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.extension.mulechain.internal.helpers.TruncationPolicy;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TokenBudgetTest {
+
+  private static final Tokenizer TOKENIZER = new OpenAiTokenizer();
+
+  private static String words(String prefix, int count) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      text.append(prefix).append(i).append(' ');
+    }
+    return text.toString().trim();
+  }
+
+  private static Content content(String text, String fileName) {
+    return Content.from(TextSegment.from(text, Metadata.from("file_name", fileName)));
+  }
+
+  @Test
+  public void testTextWithinBudgetIsOnlyEstimated() {
+    TokenBudget budget = new TokenBudget(TOKENIZER, 1000, TruncationPolicy.HEAD);
+
+    TokenBudget.Fit fit = budget.fit("a short dataset", 10);
+
+    Assert.assertEquals("a short dataset", fit.getText());
+    Assert.assertEquals(TOKENIZER.estimateTokenCountInText("a short dataset"), fit.getTokens());
+    Assert.assertFalse(fit.isTruncated());
+  }
+
+  @Test
+  public void testNoLimitNeverCuts() {
+    String text = words("word", 500);
+
+    TokenBudget.Fit fit = new TokenBudget(TOKENIZER, 0, TruncationPolicy.HEAD).fit(text, 100);
+
+    Assert.assertEquals(text, fit.getText());
+  }
+
+  @Test
+  public void testHeadTailAndMiddleOut() {
+    String text = words("head", 200) + " " + words("tail", 200);
+
+    TokenBudget.Fit head = new TokenBudget(TOKENIZER, 120, TruncationPolicy.HEAD).fit(text, 20);
+    TokenBudget.Fit tail = new TokenBudget(TOKENIZER, 120, TruncationPolicy.TAIL).fit(text, 20);
+    TokenBudget.Fit middleOut = new TokenBudget(TOKENIZER, 120, TruncationPolicy.MIDDLE_OUT).fit(text, 20);
+
+    for (TokenBudget.Fit fit : Arrays.asList(head, tail, middleOut)) {
+      Assert.assertTrue(fit.isTruncated());
+      Assert.assertTrue(fit.getTokens() <= 100);
+      Assert.assertTrue(fit.getTokens() > 50);
+    }
+    Assert.assertTrue(head.getText().startsWith("head0 head1"));
+    Assert.assertFalse(head.getText().contains("tail"));
+    Assert.assertTrue(tail.getText().endsWith("tail198 tail199"));
+    Assert.assertFalse(tail.getText().contains("head"));
+    Assert.assertTrue(middleOut.getText().startsWith("head0 head1"));
+    Assert.assertTrue(middleOut.getText().contains(TokenBudget.CUT_MARKER));
+    Assert.assertTrue(middleOut.getText().endsWith("tail198 tail199"));
+  }
+
+  @Test
+  public void testPromptExceedingTheBudgetWithoutItsDatasetIsRejected() {
+    try {
+      new TokenBudget(TOKENIZER, 100, TruncationPolicy.HEAD).fit("dataset", 100);
+      Assert.fail();
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.VALIDATION_FAILURE, e.getType());
+    }
+  }
+
+  @Test
+  public void testLowestScoringSegmentsAreDropped() {
+    List<Content> contents = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      contents.add(content(words("segment" + i + "-", 30), "file" + i));
+    }
+    TokenBudget budget = new TokenBudget(TOKENIZER, 320, TruncationPolicy.DROP_LOWEST_SCORING);
+
+    List<Content> fitted = budget.fitContext("What is in the files?", contents);
+
+    Assert.assertFalse(fitted.isEmpty());
+    Assert.assertTrue(fitted.size() < contents.size());
+    Assert.assertEquals(contents.subList(0, fitted.size()), fitted);
+    Assert.assertTrue(budget.estimateContext("What is in the files?", fitted) <= 320);
+  }
+
+  @Test
+  public void testSegmentAtTheEdgeOfTheBudgetIsCutWithItsMetadata() {
+    List<Content> contents = Arrays.asList(content(words("first", 40), "a"), content(words("second", 200), "b"));
+    TokenBudget budget = new TokenBudget(TOKENIZER, 200, TruncationPolicy.HEAD);
+
+    List<Content> fitted = budget.fitContext("question", contents);
+
+    Assert.assertEquals(2, fitted.size());
+    Assert.assertEquals(contents.get(0), fitted.get(0));
+    Assert.assertTrue(fitted.get(1).textSegment().text().startsWith("second0 second1"));
+    Assert.assertEquals("b", fitted.get(1).textSegment().metadata().getString("file_name"));
+    Assert.assertTrue(budget.estimateContext("question", fitted) <= 200);
+  }
+
+  @Test
+  public void testEveryPolicyKeepsTheMostRelevantSegmentsAndOnlyCutsTheOneAtTheEdge() {
+    List<Content> contents = Arrays.asList(content(words("best", 40), "a"),
+                                           content(words("head", 100) + " " + words("tail", 100), "b"),
+                                           content(words("worst", 40), "c"));
+
+    for (TruncationPolicy policy : TruncationPolicy.values()) {
+      TokenBudget budget = new TokenBudget(TOKENIZER, 200, policy);
+      List<Content> fitted = budget.fitContext("question", contents);
+
+      Assert.assertEquals(policy + " drops the most relevant segment", contents.get(0), fitted.get(0));
+      Assert.assertTrue(policy + " exceeds the budget", budget.estimateContext("question", fitted) <= 200);
+      Assert.assertFalse(policy + " keeps the least relevant segment",
+                         fitted.stream().anyMatch(content -> content.textSegment().text().contains("worst")));
+      if (policy == TruncationPolicy.DROP_LOWEST_SCORING) {
+        Assert.assertEquals(1, fitted.size());
+        continue;
+      }
+      Assert.assertEquals(2, fitted.size());
+      String cut = fitted.get(1).textSegment().text();
+      Assert.assertEquals("b", fitted.get(1).textSegment().metadata().getString("file_name"));
+      switch (policy) {
+        case HEAD:
+          Assert.assertTrue(cut.startsWith("head0 head1"));
+          Assert.assertFalse(cut.contains("tail"));
+          break;
+        case TAIL:
+          Assert.assertTrue(cut.endsWith("tail98 tail99"));
+          Assert.assertFalse(cut.contains("head"));
+          break;
+        default:
+          Assert.assertTrue(cut.startsWith("head0 head1"));
+          Assert.assertTrue(cut.contains(TokenBudget.CUT_MARKER));
+          Assert.assertTrue(cut.endsWith("tail98 tail99"));
+      }
+    }
+  }
+}
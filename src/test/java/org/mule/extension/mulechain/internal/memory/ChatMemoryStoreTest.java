@@ -0,0 +1,131 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mule.extension.mulechain.internal.error.exception.ConfigValidationException;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class ChatMemoryStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testMessageCountWindowEvictsOldestMessages() throws Exception {
+    ManagedChatMemoryStore store = new PersistentChatMemoryStore(new File(folder.getRoot(), "memory.db").getAbsolutePath());
+    try {
+      MessageCountChatMemory memory = new MessageCountChatMemory("mule", 2, store, false);
+      memory.add(UserMessage.from("My name is Mulechain"));
+      memory.add(AiMessage.from("Hello Mulechain"));
+      memory.add(UserMessage.from("What is my name?"));
+
+      Assert.assertEquals("Window size is not respected", 2, store.getMessages("mule").size());
+      Assert.assertEquals("Evicted messages are not tracked", 1, memory.getEvictedMessages().size());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testStripedStoreSpreadsAndExpiresMemories() throws Exception {
+    String dbFilePath = new File(folder.getRoot(), "memory.db").getAbsolutePath();
+    ManagedChatMemoryStore store = new StripedChatMemoryStore(dbFilePath, 4);
+    try {
+      for (String memoryId : Arrays.asList("mule", "chain", "agent", "connector")) {
+        store.updateMessages(memoryId, Arrays.asList(UserMessage.from("Hello " + memoryId)));
+      }
+      Assert.assertEquals("Memories are not all persisted", 4, store.getMemoryCount());
+      Assert.assertEquals("Memory is not read from its stripe", 1, store.getMessages("agent").size());
+
+      Assert.assertEquals("Recently accessed memories must not expire", 0,
+                          store.evictExpired(System.currentTimeMillis() - 60_000, 2));
+      Assert.assertEquals("Expired memories are not evicted", 4, store.evictExpired(System.currentTimeMillis() + 1, 2));
+      Assert.assertEquals("Memories are left after expiry", 0, store.getMemoryCount());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testUnstripedMemoriesAreMovedToTheStripes() throws Exception {
+    String dbFilePath = new File(folder.getRoot(), "memory.db").getAbsolutePath();
+    ManagedChatMemoryStore unstriped = new PersistentChatMemoryStore(dbFilePath);
+    try {
+      for (String memoryId : Arrays.asList("mule", "chain", "agent")) {
+        unstriped.updateMessages(memoryId, Arrays.asList(UserMessage.from("Hello " + memoryId)));
+      }
+      unstriped.updateSummary("mule", "Greeted the Mule");
+    } finally {
+      unstriped.close();
+    }
+
+    ManagedChatMemoryStore store = new StripedChatMemoryStore(dbFilePath, 4);
+    try {
+      Assert.assertEquals("Memories are not all moved", 3, store.getMemoryCount());
+      Assert.assertEquals(1, store.getMessages("agent").size());
+      Assert.assertEquals("Greeted the Mule", store.getSummary("mule"));
+      Assert.assertFalse("Unstriped file is left in place", new File(dbFilePath).exists());
+      Assert.assertTrue(new File(dbFilePath + StripedChatMemoryStore.MIGRATED_SUFFIX).exists());
+    } finally {
+      store.close();
+    }
+
+    store = new StripedChatMemoryStore(dbFilePath, 4);
+    try {
+      Assert.assertEquals("Memories are moved twice", 3, store.getMemoryCount());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testNonPositiveBatchSizeStillEvictsEveryExpiredMemory() throws Exception {
+    ManagedChatMemoryStore store = new PersistentChatMemoryStore(new File(folder.getRoot(), "memory.db").getAbsolutePath());
+    try {
+      for (String memoryId : Arrays.asList("mule", "chain", "agent")) {
+        store.updateMessages(memoryId, Arrays.asList(UserMessage.from("Hello " + memoryId)));
+      }
+      Assert.assertEquals(3, store.evictExpired(System.currentTimeMillis() + 1, 0));
+      Assert.assertEquals(0, store.getMemoryCount());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testSweeperDeletesTheMemoriesNotAccessedWithinTheTimeToLive() throws Exception {
+    ChatMemoryManager manager = new ChatMemoryManager();
+    manager.configureExpiry(200, 20, 10);
+    try {
+      ManagedChatMemoryStore store = manager.getStore(new File(folder.getRoot(), "memory.db").getAbsolutePath());
+      store.updateMessages("abandoned", Arrays.asList(UserMessage.from("Hello")));
+      store.updateMessages("active", Arrays.asList(UserMessage.from("Hello")));
+
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (store.getMemoryCount() > 1 && System.currentTimeMillis() < deadline) {
+        // keeps the active memory accessed while the abandoned one expires
+        store.getMessages("active");
+        Thread.sleep(20);
+      }
+
+      Assert.assertEquals("Abandoned memory is not swept", 1, store.getMemoryCount());
+      Assert.assertEquals("Active memory is swept", 1, store.getMessages("active").size());
+    } finally {
+      manager.close();
+    }
+  }
+
+  @Test(expected = ConfigValidationException.class)
+  public void testExpiryWithoutSweepIntervalIsRejected() {
+    new ChatMemoryManager().configureExpiry(60_000, 0, 500);
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ChatMemoryWindowTest {
+
+  private static final Tokenizer TOKENIZER = new OpenAiTokenizer();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ManagedChatMemoryStore store;
+
+  @Before
+  public void openStore() {
+    store = new PersistentChatMemoryStore(new File(folder.getRoot(), "memory.db").getAbsolutePath());
+  }
+
+  @After
+  public void closeStore() {
+    store.close();
+  }
+
+  @Test
+  public void testTokenBudgetWindowKeepsTheNewestMessagesWithinTheBudget() {
+    TokenBudgetChatMemory memory = new TokenBudgetChatMemory("mule", 60, TOKENIZER, store, false);
+    for (int i = 0; i < 10; i++) {
+      memory.add(UserMessage.from("Question number " + i + " about the Mule runtime and its connectors"));
+      memory.add(AiMessage.from("Answer number " + i + " about the Mule runtime and its connectors"));
+    }
+
+    List<ChatMessage> persisted = store.getMessages("mule");
+    Assert.assertTrue("Budget is not respected", TOKENIZER.estimateTokenCountInMessages(persisted) <= 60);
+    Assert.assertTrue("Newest message is evicted", ChatMessageTexts.toText(persisted.get(persisted.size() - 1))
+        .startsWith("Answer number 9"));
+    Assert.assertEquals("Evicted messages are not tracked", 20, persisted.size() + memory.getEvictedMessages().size());
+  }
+
+  @Test
+  public void testTokensSentReportsTheLastWindowOnly() {
+    TokenBudgetChatMemory memory = new TokenBudgetChatMemory("mule", 1000, TOKENIZER, store, false);
+    memory.add(UserMessage.from("What is the weather in Berlin?"));
+
+    // a tool calling turn reads the window once per model call
+    List<ChatMessage> window = memory.messages();
+    memory.messages();
+    memory.messages();
+
+    Assert.assertEquals(TOKENIZER.estimateTokenCountInMessages(window), memory.getTokensSent());
+  }
+
+  @Test
+  public void testEvictedMessagesAreFoldedIntoTheRunningSummary() {
+    List<String> prompts = new CopyOnWriteArrayList<>();
+    ChatLanguageModel model = messages -> {
+      String prompt = ChatMessageTexts.toText(messages.get(messages.size() - 1));
+      prompts.add(prompt);
+      return Response.from(AiMessage.from("summary " + prompts.size()));
+    };
+    ChatMemorySummarizer summarizer = new ChatMemorySummarizer();
+    summarizer.summarize("mule", Arrays.asList(UserMessage.from("My name is Mulechain"), AiMessage.from("Hello")), store,
+                         model);
+    summarizer.summarize("mule", Arrays.asList(UserMessage.from("I live in Berlin"), AiMessage.from("Nice")), store, model);
+    // waits for the pending summaries
+    summarizer.shutdown();
+
+    Assert.assertEquals("summary 2", store.getSummary("mule"));
+    Assert.assertTrue("Summaries are not chained", prompts.get(1).contains("summary 1"));
+    Assert.assertTrue(prompts.get(1).contains("I live in Berlin"));
+
+    store.updateMessages("mule", Arrays.asList(UserMessage.from("Where do I live?")));
+    List<ChatMessage> window = new MessageCountChatMemory("mule", 10, store, true).messages();
+    Assert.assertTrue("Summary is not sent with the window", window.get(0) instanceof SystemMessage
+        && ((SystemMessage) window.get(0)).text().endsWith("summary 2"));
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.memory;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+public class LongTermChatMemoryIndexTest {
+
+  // embeds a text as its hashed words, turns sharing words are similar
+  private static final EmbeddingModel WORD_MODEL = segments -> Response.from(segments.stream().map(segment -> {
+    float[] vector = new float[64];
+    for (String word : segment.text().toLowerCase().split("\\W+")) {
+      if (!word.isEmpty()) {
+        vector[Math.floorMod(word.hashCode(), vector.length)]++;
+      }
+    }
+    return Embedding.from(vector);
+  }).collect(Collectors.toList()));
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testTurnsIndexedInSeveralEvictionsAreRetrieved() {
+    String dbFilePath = new File(folder.getRoot(), "memory.db").getAbsolutePath();
+    ManagedChatMemoryStore store = new PersistentChatMemoryStore(dbFilePath);
+    try {
+      LongTermChatMemoryIndex index = new LongTermChatMemoryIndex(WORD_MODEL, store, 1, 0.5);
+      index.index("mule", Arrays.asList(UserMessage.from("My favourite colour is blue"), AiMessage.from("Noted")));
+      index.index("mule", Arrays.asList(UserMessage.from("I live in Berlin"), AiMessage.from("Nice city")));
+
+      List<String> colour = index.retrieve("mule", "what is my favourite colour");
+      Assert.assertEquals(1, colour.size());
+      Assert.assertTrue("Turn of the first eviction is not retrieved", colour.get(0).contains("blue"));
+      List<String> city = index.retrieve("mule", "where do I live");
+      Assert.assertTrue("Turn of the second eviction is not retrieved", city.get(0).contains("Berlin"));
+      Assert.assertTrue("Turns of another memory are retrieved", index.retrieve("chain", "where do I live").isEmpty());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testIndexSurvivesReopenAndIsDeletedWithTheMemory() {
+    String dbFilePath = new File(folder.getRoot(), "memory.db").getAbsolutePath();
+    ManagedChatMemoryStore store = new PersistentChatMemoryStore(dbFilePath);
+    try {
+      new LongTermChatMemoryIndex(WORD_MODEL, store, 3, 0.0)
+          .index("mule", Arrays.asList(UserMessage.from("My favourite colour is blue"), AiMessage.from("Noted")));
+    } finally {
+      store.close();
+    }
+
+    store = new PersistentChatMemoryStore(dbFilePath);
+    try {
+      LongTermChatMemoryIndex index = new LongTermChatMemoryIndex(WORD_MODEL, store, 3, 0.0);
+      index.index("mule", Arrays.asList(UserMessage.from("I live in Berlin"), AiMessage.from("Nice city")));
+      Assert.assertEquals("Indexed turns are not persisted", 2, index.retrieve("mule", "colour and city").size());
+
+      store.deleteMessages("mule");
+      Assert.assertNull("Index is left after the memory was deleted", store.getEmbeddings("mule"));
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testTurnsIndexedConcurrentlyAreAllKept() throws Exception {
+    String dbFilePath = new File(folder.getRoot(), "memory.db").getAbsolutePath();
+    ManagedChatMemoryStore store = new PersistentChatMemoryStore(dbFilePath);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      LongTermChatMemoryIndex index = new LongTermChatMemoryIndex(WORD_MODEL, store, 100, 0.0);
+      index.index("mule", Arrays.asList(UserMessage.from("Turn 0"), AiMessage.from("Ok")));
+      InMemoryEmbeddingStore<TextSegment> cached = store.getEmbeddings("mule");
+      List<Future<?>> turns = new ArrayList<>();
+      for (int i = 1; i < 40; i++) {
+        String turn = "Turn " + i;
+        turns.add(executor.submit(() -> index.index("mule", Arrays.asList(UserMessage.from(turn), AiMessage.from("Ok")))));
+      }
+      for (Future<?> turn : turns) {
+        turn.get();
+      }
+
+      Assert.assertSame("Index is read again", cached, store.getEmbeddings("mule"));
+      Assert.assertEquals("Turns overwrite each other", 40, index.retrieve("mule", "turn").size());
+    } finally {
+      executor.shutdownNow();
+      store.close();
+    }
+
+    store = new PersistentChatMemoryStore(dbFilePath);
+    try {
+      Assert.assertEquals("Turns are not all persisted", 40,
+                          new LongTermChatMemoryIndex(WORD_MODEL, store, 100, 0.0).retrieve("mule", "turn").size());
+    } finally {
+      store.close();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveRateLimiterTest {
+
+  private static final long MAX_WAIT = TimeUnit.MILLISECONDS.toNanos(50);
+
+  @Test
+  public void testConcurrencyLimitIsHalvedOnThrottlingAndGrowsBack() {
+    AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(0, 0, 8, 0, MAX_WAIT);
+
+    rateLimiter.release(rateLimiter.acquire(0), -1, new RuntimeException("status code: 429, Too Many Requests"));
+    Assert.assertEquals(4, rateLimiter.getConcurrencyLimit());
+    Assert.assertEquals(1, rateLimiter.getThrottledCount());
+
+    // additive increase: one more slot after about limit successful calls
+    for (int i = 0; i < 5; i++) {
+      rateLimiter.release(rateLimiter.acquire(0), 10, null);
+    }
+    Assert.assertEquals(5, rateLimiter.getConcurrencyLimit());
+    Assert.assertEquals(0, rateLimiter.getInFlight());
+  }
+
+  @Test
+  public void testOtherFailuresKeepTheConcurrencyLimit() {
+    AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(0, 0, 8, 0, MAX_WAIT);
+
+    rateLimiter.release(rateLimiter.acquire(0), -1, new IllegalStateException("connection reset"));
+
+    Assert.assertEquals(8, rateLimiter.getConcurrencyLimit());
+    Assert.assertEquals(0, rateLimiter.getThrottledCount());
+  }
+
+  @Test
+  public void testCallsBeyondTheConcurrencyLimitAreRejectedAfterTheMaxWait() {
+    AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(0, 0, 1, 0, MAX_WAIT);
+    rateLimiter.acquire(0);
+
+    try {
+      rateLimiter.acquire(0);
+      Assert.fail("The second call should not get a slot");
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, e.getType());
+    }
+    Assert.assertEquals(1, rateLimiter.getRejectedCount());
+    Assert.assertEquals(0, rateLimiter.getQueued());
+  }
+
+  @Test
+  public void testTokensUsedAboveTheReservationAreTakenFromTheBucket() {
+    AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(0, 1000, 4, 0, MAX_WAIT);
+
+    rateLimiter.release(rateLimiter.acquire(100), 900, null);
+
+    // refilled at 1000 per minute, a few tokens at most during the test
+    Assert.assertTrue(rateLimiter.getAvailableTokens() < 150);
+    try {
+      rateLimiter.acquire(500);
+      Assert.fail("The tokens per minute are used up");
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, e.getType());
+    }
+  }
+
+  @Test
+  public void testRequestsPerMinuteLimit() {
+    AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(2, 0, 4, 0, MAX_WAIT);
+
+    rateLimiter.release(rateLimiter.acquire(0), -1, null);
+    rateLimiter.release(rateLimiter.acquire(0), -1, null);
+
+    try {
+      rateLimiter.acquire(0);
+      Assert.fail("The requests per minute are used up");
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, e.getType());
+    }
+    Assert.assertEquals(2, rateLimiter.getAcquiredCount());
+  }
+}
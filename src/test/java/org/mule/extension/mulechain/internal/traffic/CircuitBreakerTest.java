@@ -0,0 +1,149 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest {
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(3, TimeUnit.MINUTES.toNanos(1), 1);
+
+    fail(circuitBreaker);
+    fail(circuitBreaker);
+    succeed(circuitBreaker);
+    fail(circuitBreaker);
+    fail(circuitBreaker);
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+    fail(circuitBreaker);
+    Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    Assert.assertFalse(circuitBreaker.tryAcquire());
+    Assert.assertEquals(1, circuitBreaker.getRejectedCount());
+    Assert.assertEquals(1, circuitBreaker.getOpenedCount());
+  }
+
+  @Test
+  public void testHalfOpenProbesCloseTheCircuit() throws InterruptedException {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MILLISECONDS.toNanos(20), 2);
+    fail(circuitBreaker);
+    Thread.sleep(40);
+
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    Assert.assertTrue(circuitBreaker.tryAcquire());
+    Assert.assertTrue(circuitBreaker.tryAcquire());
+    // only the probes go through while half-open
+    Assert.assertFalse(circuitBreaker.tryAcquire());
+    circuitBreaker.onSuccess();
+    circuitBreaker.onSuccess();
+
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    Assert.assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testFailedProbeOpensTheCircuitAgain() throws InterruptedException {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MILLISECONDS.toNanos(20), 1);
+    fail(circuitBreaker);
+    Thread.sleep(40);
+
+    fail(circuitBreaker);
+
+    Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    Assert.assertEquals(2, circuitBreaker.getOpenedCount());
+  }
+
+  @Test
+  public void testOpenCircuitFailsFastWithCircuitOpen() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MINUTES.toNanos(1), 1);
+    try {
+      circuitBreaker.call("OPENAI:gpt-4o-mini", () -> {
+        throw new IllegalStateException("timeout");
+      });
+      Assert.fail("The call failed");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    try {
+      circuitBreaker.call("OPENAI:gpt-4o-mini", () -> "answer");
+      Assert.fail("The circuit is open");
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.CIRCUIT_OPEN, e.getType());
+    }
+  }
+
+  @Test
+  public void testConnectorErrorsAreNotCountedAsFailures() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MINUTES.toNanos(1), 1);
+    try {
+      circuitBreaker.call("OPENAI:gpt-4o-mini", () -> {
+        throw new ModuleException("rate limited", MuleChainErrorType.RATE_LIMIT_EXCEEDED);
+      });
+      Assert.fail("The call failed");
+    } catch (ModuleException e) {
+      Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, e.getType());
+    }
+
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    Assert.assertEquals("answer", circuitBreaker.call("OPENAI:gpt-4o-mini", () -> "answer"));
+  }
+
+  @Test
+  public void testClientErrorsOfTheProviderLeaveTheCircuitClosed() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, TimeUnit.MINUTES.toNanos(1), 1);
+    for (int i = 0; i < 3; i++) {
+      try {
+        circuitBreaker.call("OPENAI:gpt-4o-mini", () -> {
+          throw new RuntimeException(new HttpStatusException(400));
+        });
+        Assert.fail("The call failed");
+      } catch (RuntimeException e) {
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+      }
+    }
+
+    try {
+      circuitBreaker.call("OPENAI:gpt-4o-mini", () -> {
+        throw new HttpStatusException(503);
+      });
+      Assert.fail("The call failed");
+    } catch (HttpStatusException e) {
+      Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+  }
+
+  /**
+   * Reports its HTTP status like the exceptions of the provider libraries.
+   */
+  public static final class HttpStatusException extends RuntimeException {
+
+    private final int code;
+
+    public HttpStatusException(int code) {
+      super("status " + code);
+      this.code = code;
+    }
+
+    public int code() {
+      return code;
+    }
+  }
+
+  private static void fail(CircuitBreaker circuitBreaker) {
+    Assert.assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+  }
+
+  private static void succeed(CircuitBreaker circuitBreaker) {
+    Assert.assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onSuccess();
+  }
+}
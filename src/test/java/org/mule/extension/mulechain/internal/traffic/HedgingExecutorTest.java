@@ -0,0 +1,153 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mule.extension.mulechain.internal.error.MuleChainErrorType;
+import org.mule.runtime.extension.api.exception.ModuleException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgingExecutorTest {
+
+  private final HedgingExecutor hedgingExecutor = new HedgingExecutor(95, TimeUnit.MILLISECONDS.toNanos(20), 3,
+                                                                      TimeUnit.MILLISECONDS.toNanos(10),
+                                                                      TimeUnit.SECONDS.toNanos(5), 16);
+
+  @After
+  public void shutdown() {
+    hedgingExecutor.shutdown();
+  }
+
+  @Test
+  public void testFastCallIsNotHedged() {
+    HedgingExecutor.Outcome<String> outcome = hedgingExecutor.execute("model", () -> "primary", () -> "hedge");
+
+    Assert.assertEquals("primary", outcome.getValue());
+    Assert.assertEquals(1, outcome.getAttempt());
+    Assert.assertEquals(1, outcome.getAttempts());
+    Assert.assertFalse(outcome.isHedge());
+  }
+
+  @Test
+  public void testHedgeWinsOverStalledCallWhichIsCancelled() throws Exception {
+    CountDownLatch primaryInterrupted = new CountDownLatch(1);
+
+    HedgingExecutor.Outcome<String> outcome = hedgingExecutor.execute("model", () -> {
+      try {
+        Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        primaryInterrupted.countDown();
+      }
+      return "primary";
+    }, () -> "hedge");
+
+    Assert.assertEquals("hedge", outcome.getValue());
+    Assert.assertEquals(2, outcome.getAttempt());
+    Assert.assertTrue(outcome.isHedge());
+    Assert.assertTrue(primaryInterrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFailedRoundIsRetried() {
+    AtomicInteger calls = new AtomicInteger();
+
+    HedgingExecutor.Outcome<String> outcome = hedgingExecutor.execute("model", () -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalStateException("provider unavailable");
+      }
+      return "answer";
+    }, () -> "hedge");
+
+    Assert.assertEquals("answer", outcome.getValue());
+    Assert.assertEquals(2, outcome.getAttempt());
+    Assert.assertFalse(outcome.isHedge());
+  }
+
+  @Test
+  public void testLastFailureIsThrownOnceTheRoundsAreUsedUp() {
+    try {
+      hedgingExecutor.execute("model", () -> {
+        throw new IllegalStateException("provider unavailable");
+      }, () -> "hedge");
+      Assert.fail("Every round failed");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("provider unavailable", e.getMessage());
+    }
+  }
+
+  @Test(expected = ModuleException.class)
+  public void testConnectorErrorsAreNotRetried() {
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      hedgingExecutor.execute("model", () -> {
+        calls.incrementAndGet();
+        throw new ModuleException("rate limited", MuleChainErrorType.RATE_LIMIT_EXCEEDED);
+      }, () -> "hedge");
+    } finally {
+      Assert.assertEquals(1, calls.get());
+    }
+  }
+
+  @Test
+  public void testConnectorErrorOfOneAttemptWaitsForThePendingHedge() {
+    HedgingExecutor.Outcome<String> outcome = hedgingExecutor.execute("model", () -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      throw new ModuleException("circuit open", MuleChainErrorType.AI_SERVICES_FAILURE);
+    }, () -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "hedge";
+    });
+
+    Assert.assertEquals("hedge", outcome.getValue());
+    Assert.assertTrue(outcome.isHedge());
+  }
+
+  @Test
+  public void testCallsBeyondTheMaxConcurrencyAreNotHedgedOrAreRejected() throws Exception {
+    HedgingExecutor boundedExecutor = new HedgingExecutor(95, TimeUnit.MILLISECONDS.toNanos(20), 1, 0,
+                                                          TimeUnit.SECONDS.toNanos(5), 1);
+    CountDownLatch primaryStarted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger hedges = new AtomicInteger();
+    Thread caller = new Thread(() -> boundedExecutor.execute("model", () -> {
+      primaryStarted.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "primary";
+    }, () -> "hedge" + hedges.incrementAndGet()));
+    try {
+      caller.start();
+      Assert.assertTrue(primaryStarted.await(5, TimeUnit.SECONDS));
+      try {
+        boundedExecutor.execute("model", () -> "other", () -> "hedge");
+        Assert.fail("The call is accepted beyond the max concurrency");
+      } catch (ModuleException e) {
+        Assert.assertEquals(MuleChainErrorType.RATE_LIMIT_EXCEEDED, e.getType());
+      }
+      Thread.sleep(100);
+      release.countDown();
+      caller.join(TimeUnit.SECONDS.toMillis(5));
+      Assert.assertEquals("A hedge is started beyond the max concurrency", 0, hedges.get());
+    } finally {
+      release.countDown();
+      boundedExecutor.shutdown();
+    }
+  }
+}
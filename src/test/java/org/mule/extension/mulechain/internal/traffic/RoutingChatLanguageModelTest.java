@@ -0,0 +1,112 @@
+/**
+ * (c) 2003-2024 MuleSoft, Inc. The software in this package is published under the terms of the Commercial Free Software license V.1 a copy of which has been included with this distribution in the LICENSE.md file.
+ */
+package org.mule.extension.mulechain.internal.traffic;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoutingChatLanguageModelTest {
+
+  private static final ChatLanguageModel FAILING_MODEL = messages -> {
+    throw new IllegalStateException("503 Service Unavailable");
+  };
+
+  // picked first on almost every call while its circuit is closed
+  private static final double PREFERRED_WEIGHT = 1_000_000;
+
+  @Test
+  public void testFailsOverToTheHealthyTarget() {
+    RoutingChatLanguageModel.Target failing = new RoutingChatLanguageModel.Target("OPENAI:gpt-4o-mini", FAILING_MODEL,
+                                                                                  PREFERRED_WEIGHT, circuitBreaker());
+    RoutingChatLanguageModel.Target healthy = new RoutingChatLanguageModel.Target("ANTHROPIC:claude-3-haiku",
+                                                                                  answering("answer"), 1, circuitBreaker());
+    RoutingChatLanguageModel router = new RoutingChatLanguageModel(Arrays.asList(failing, healthy));
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("answer", router.generate("question"));
+    }
+    Assert.assertTrue(failing.getErrorRateEwma() > 0);
+    Assert.assertEquals(0, healthy.getErrorRateEwma(), 0);
+  }
+
+  @Test
+  public void testTargetWithOpenCircuitIsNotCalled() {
+    AtomicInteger failingCalls = new AtomicInteger();
+    ChatLanguageModel countingFailingModel = messages -> {
+      failingCalls.incrementAndGet();
+      return FAILING_MODEL.generate(messages);
+    };
+    RoutingChatLanguageModel.Target failing = new RoutingChatLanguageModel.Target("OPENAI:gpt-4o-mini", countingFailingModel,
+                                                                                  PREFERRED_WEIGHT, circuitBreaker());
+    RoutingChatLanguageModel.Target healthy = new RoutingChatLanguageModel.Target("MISTRAL_AI:mistral-small-latest",
+                                                                                  answering("answer"), 1, circuitBreaker());
+    RoutingChatLanguageModel router = new RoutingChatLanguageModel(Arrays.asList(failing, healthy));
+
+    for (int i = 0; i < 50; i++) {
+      router.generate("question");
+    }
+
+    // the circuit opens after 2 failures and stays open for the test
+    Assert.assertEquals(2, failingCalls.get());
+    Assert.assertEquals(CircuitBreaker.State.OPEN, failing.getCircuitBreaker().getState());
+  }
+
+  @Test
+  public void testLastFailureIsThrownWhenEveryTargetFails() {
+    RoutingChatLanguageModel router =
+        new RoutingChatLanguageModel(Arrays.asList(new RoutingChatLanguageModel.Target("a", FAILING_MODEL, 1, circuitBreaker()),
+                                                   new RoutingChatLanguageModel.Target("b", FAILING_MODEL, 1,
+                                                                                       circuitBreaker())));
+    try {
+      router.generate("question");
+      Assert.fail("Every target failed");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("503 Service Unavailable", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testClientErrorIsThrownWithoutFailingOver() {
+    AtomicInteger otherCalls = new AtomicInteger();
+    ChatLanguageModel rejecting = messages -> {
+      throw new CircuitBreakerTest.HttpStatusException(400);
+    };
+    ChatLanguageModel other = messages -> {
+      otherCalls.incrementAndGet();
+      return Response.from(AiMessage.from("answer"));
+    };
+    RoutingChatLanguageModel.Target first = new RoutingChatLanguageModel.Target("a", rejecting, PREFERRED_WEIGHT,
+                                                                                circuitBreaker());
+    RoutingChatLanguageModel.Target second = new RoutingChatLanguageModel.Target("b", other, 1, circuitBreaker());
+    RoutingChatLanguageModel router = new RoutingChatLanguageModel(Arrays.asList(first, second));
+
+    int rejected = 0;
+    for (int i = 0; i < 20; i++) {
+      try {
+        router.generate("question");
+      } catch (CircuitBreakerTest.HttpStatusException e) {
+        rejected++;
+      }
+    }
+
+    Assert.assertEquals(20, rejected);
+    Assert.assertEquals("The invalid request was failed over", 0, otherCalls.get());
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, first.getCircuitBreaker().getState());
+  }
+
+  private static CircuitBreaker circuitBreaker() {
+    return new CircuitBreaker(2, TimeUnit.MINUTES.toNanos(1), 1);
+  }
+
+  private static ChatLanguageModel answering(String answer) {
+    return messages -> Response.from(AiMessage.from(answer));
+  }
+}